@@ -0,0 +1,63 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.builder;
+
+import org.teamapps.message.protocol.file.FileDataReader;
+import org.teamapps.message.protocol.message.Message;
+import org.teamapps.message.protocol.model.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Base class of the codecs created by {@link MessageCodecCompiler}.
+ */
+public abstract class CompiledMessageCodec implements MessageCodec {
+
+	private final MessageModel model;
+	private final ModelRegistry modelRegistry;
+
+	protected CompiledMessageCodec(MessageModel model, ModelRegistry modelRegistry) {
+		this.model = model;
+		this.modelRegistry = modelRegistry;
+	}
+
+	@Override
+	public MessageModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Decodes a referenced message with the decoder of the registry if there is one, otherwise with the codec of the
+	 * referenced model.
+	 */
+	protected Message readReference(AttributeDefinition definition, ByteBuffer buffer, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		MessageModel referencedModel = definition.getReferencedObject();
+		PojoObjectDecoder<? extends Message> messageDecoder = decoderRegistry != null ? decoderRegistry.getMessageDecoder(referencedModel.getObjectUuid()) : null;
+		if (messageDecoder != null) {
+			return messageDecoder.decode(buffer, fileDataReader);
+		}
+		MessageCodec codec = modelRegistry.getMessageCodec(referencedModel);
+		if (codec != null) {
+			return codec.decode(buffer, fileDataReader, decoderRegistry);
+		}
+		return new Message(buffer, referencedModel, fileDataReader, decoderRegistry);
+	}
+}
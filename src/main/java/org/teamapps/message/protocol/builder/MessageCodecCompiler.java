@@ -0,0 +1,131 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.builder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.teamapps.message.protocol.message.MessageModelRegistry;
+import org.teamapps.message.protocol.model.MessageCodec;
+import org.teamapps.message.protocol.model.MessageModel;
+import org.teamapps.message.protocol.model.ModelRegistry;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Compiles codecs for models that are only known at runtime. The codec source is created with the same expressions
+ * as the generated codecs, compiled in memory and defined as hidden class, so it can be unloaded together with the
+ * codec instance. Compiling requires the system java compiler, without it no codec is created.
+ * <p>
+ * Compiling is opt-in: {@link #enable(MessageModelRegistry)} lets a registry compile the codec of each model in the
+ * background when it is first needed.
+ */
+public class MessageCodecCompiler {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final String CLASS_NAME = "org.teamapps.message.protocol.builder.RuntimeMessageCodec";
+	private static final Executor COMPILE_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "message-codec-compiler");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public static void enable(MessageModelRegistry registry) {
+		enable(registry, COMPILE_EXECUTOR);
+	}
+
+	public static void enable(MessageModelRegistry registry, Executor executor) {
+		registry.setMessageCodecFactory(model -> compile(model, registry), executor);
+	}
+
+	/**
+	 * Returns the compiled codec or null if it could not be compiled.
+	 */
+	public static MessageCodec compile(MessageModel model, ModelRegistry modelRegistry) {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			LOGGER.info("No java compiler available, using generic decoding for model {}", model.getName());
+			return null;
+		}
+		try {
+			byte[] classBytes = compile(compiler, MessagePojoBuilder.createRuntimeCodecSource(model));
+			if (classBytes == null) {
+				return null;
+			}
+			MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classBytes, true);
+			MethodHandle constructor = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, MessageModel.class, ModelRegistry.class));
+			return (MessageCodec) constructor.invoke(model, modelRegistry);
+		} catch (Throwable e) {
+			LOGGER.warn("Error compiling codec for model {}", model.getName(), e);
+			return null;
+		}
+	}
+
+	private static byte[] compile(JavaCompiler compiler, String source) throws Exception {
+		JavaFileObject sourceFile = new SimpleJavaFileObject(URI.create("string:///" + CLASS_NAME.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return source;
+			}
+		};
+		ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		try (StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+			JavaFileManager fileManager = new ForwardingJavaFileManager<>(standardFileManager) {
+				@Override
+				public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+					return new SimpleJavaFileObject(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind) {
+						@Override
+						public OutputStream openOutputStream() {
+							return classBytes;
+						}
+					};
+				}
+			};
+			List<String> options = List.of("-classpath", getClassPath(), "-proc:none", "-g:none");
+			if (!compiler.getTask(null, fileManager, diagnostics, options, null, List.of(sourceFile)).call()) {
+				LOGGER.warn("Error compiling codec: {}", diagnostics.getDiagnostics());
+				return null;
+			}
+		}
+		return classBytes.toByteArray();
+	}
+
+	private static String getClassPath() throws Exception {
+		String classPath = System.getProperty("java.class.path");
+		CodeSource codeSource = MessageCodec.class.getProtectionDomain().getCodeSource();
+		if (codeSource != null && codeSource.getLocation() != null) {
+			classPath = Path.of(codeSource.getLocation().toURI()) + File.pathSeparator + classPath;
+		}
+		return classPath;
+	}
+}
@@ -24,6 +24,7 @@ import org.teamapps.message.protocol.message.Message;
 import org.teamapps.message.protocol.message.MessageModelCollection;
 import org.teamapps.message.protocol.model.MessageModel;
 import org.teamapps.message.protocol.model.ModelCollection;
+import org.teamapps.message.protocol.message.AttributeEncoding;
 import org.teamapps.message.protocol.message.AttributeType;
 import org.teamapps.message.protocol.message.MessageDefinition;
 import org.teamapps.message.protocol.model.AttributeDefinition;
@@ -54,6 +55,10 @@ public class MessagePojoBuilder {
 		createSchemaPojo(modelCollection, dir);
 		for (MessageModel model : modelCollection.getModels()) {
 			createMessagePojoSave(modelCollection, model, dir);
+			createMessageCodec(modelCollection, model, dir);
+			if (model.isFieldBacked()) {
+				createMessageRecord(modelCollection, model, dir);
+			}
 		}
 
 		for (EnumDefinition enumDefinition : modelCollection.getEnums()) {
@@ -213,7 +218,9 @@ public class MessagePojoBuilder {
 							.append(base64EncodedReader(propDef.getSpecificType())).append(", ")
 							.append(propDef.getDefaultValue() != null ? withQuotes(propDef.getDefaultValue()) : null).append(", ")
 							.append(propDef.getComment() != null ? withQuotes(propDef.getComment()) : null)
-							.append(");\n");
+							.append(")")
+							.append(encodingSetter(propDef))
+							.append(";\n");
 				}
 
 			}
@@ -303,7 +310,9 @@ public class MessagePojoBuilder {
 							.append(base64EncodedReader(propDef.getSpecificType())).append(", ")
 							.append(propDef.getDefaultValue() != null ? withQuotes(propDef.getDefaultValue()) : null).append(", ")
 							.append(propDef.getComment() != null ? withQuotes(propDef.getComment()) : null)
-							.append(");\n");
+							.append(")")
+							.append(encodingSetter(propDef))
+							.append(";\n");
 				}
 
 			}
@@ -386,6 +395,18 @@ public class MessagePojoBuilder {
 						.append("return this;\n")
 						.append(getTabs(1))
 						.append("}\n\n");
+
+				data.append(getTabs(1))
+						.append("public ")
+						.append(firstUpperCase(model.getName())).append(" ")
+						.append("with")
+						.append(firstUpperCase(propDef.getName())).append("(")
+						.append(getReturnType(propDef)).append(" value) {\n")
+						.append(getTabs(2))
+						.append("return (").append(firstUpperCase(model.getName())).append(") with(")
+						.append(withQuotes(propDef.getName())).append(", value != null ? value.getId() : 0);\n")
+						.append(getTabs(1))
+						.append("}\n\n");
 				continue;
 			}
 			String objectReferenceWithType = propDef.isReferenceProperty() ? "AsType" : "";
@@ -414,6 +435,18 @@ public class MessagePojoBuilder {
 					.append(getTabs(1))
 					.append("}\n\n");
 
+			data.append(getTabs(1))
+					.append("public ")
+					.append(firstUpperCase(model.getName())).append(" ")
+					.append("with")
+					.append(firstUpperCase(propDef.getName())).append("(")
+					.append(getReturnType(propDef)).append(" value) {\n")
+					.append(getTabs(2))
+					.append("return (").append(firstUpperCase(model.getName())).append(") with(")
+					.append(withQuotes(propDef.getName())).append(", value);\n")
+					.append(getTabs(1))
+					.append("}\n\n");
+
 			if (propDef.getType() == AttributeType.FILE) {
 				data.append(getTabs(1))
 						.append("public File get")
@@ -523,6 +556,325 @@ public class MessagePojoBuilder {
 		System.out.println("Write pojo:" + file.getPath());
 	}
 
+	private static void createMessageCodec(ModelCollection modelCollection, MessageModel model, File directory) throws IOException {
+		String type = firstUpperCase(model.getName());
+		String tpl = readTemplate("messageCodec.tpl");
+		tpl = setValue(tpl, "package", modelCollection.getNamespace());
+		tpl = setValue(tpl, "type", type);
+		StringBuilder definitions = new StringBuilder();
+		StringBuilder predictedDecodes = new StringBuilder();
+		StringBuilder decodeCases = new StringBuilder();
+		StringBuilder predictedWrites = new StringBuilder();
+
+		for (AttributeDefinition propDef : model.getAttributeDefinitions()) {
+			if (propDef.getType() == AttributeType.OBJECT) {
+				continue;
+			}
+			String constant = createConstantName(propDef.getName());
+			String caseLabel = "case (" + propDef.getKey() + " << 8) | " + propDef.getType().getId() + " -> ";
+			definitions.append(getTabs(1))
+					.append("private static final AttributeDefinition ").append(constant).append(" = ")
+					.append(type).append(".getMessageModel().getAttributeDefinitionByKey(").append(propDef.getKey()).append(");\n");
+
+			if (propDef.getType() == AttributeType.OBJECT_MULTI_REFERENCE) {
+				String referencedType = firstUpperCase(propDef.getReferencedObject().getName());
+				appendDecode(predictedDecodes, decodeCases, propDef, caseLabel,
+						"int count = MessageUtils.readReferenceCount(buffer, format);",
+						"List<" + referencedType + "> messages = new ArrayList<>(count);",
+						"for (int n = 0; n < count; n++) {",
+						"\tmessages.add(" + referencedType + "Codec.decode(MessageUtils.readMessageFrame(buffer, format), fileDataReader, decoderRegistry));",
+						"}",
+						"message.addDecodedAttribute(new MessageAttributeImpl(" + constant + ", messages));");
+			} else {
+				appendDecode(predictedDecodes, decodeCases, propDef, caseLabel,
+						"message.addDecodedAttribute(" + getAttributeDecodeExpression(propDef, constant) + ");");
+			}
+
+			appendWrite(predictedWrites, propDef, constant);
+		}
+
+		tpl = setValue(tpl, "definitions", definitions.toString());
+		tpl = setValue(tpl, "predictedDecodes", predictedDecodes.toString());
+		tpl = setValue(tpl, "decodeCases", decodeCases.toString());
+		tpl = setValue(tpl, "predictedWrites", predictedWrites.toString());
+		File file = new File(directory, type + "Codec.java");
+		Files.writeString(file.toPath(), tpl);
+		System.out.println("Write codec:" + file.getPath());
+	}
+
+	/**
+	 * Attributes are usually written in model order, so each one is first expected at the current position and
+	 * decoded without dispatching. The switch case handles attributes that are missing from that order.
+	 */
+	private static void appendDecode(StringBuilder predictedDecodes, StringBuilder decodeCases, AttributeDefinition propDef, String caseLabel, String... statements) {
+		predictedDecodes.append(getTabs(2)).append("if (i < attributesCount && MessageUtils.readAttributeHeader(buffer, ")
+				.append(propDef.getType().getId()).append(", ").append(propDef.getKey()).append(", format)) {\n");
+		for (String statement : statements) {
+			predictedDecodes.append(getTabs(3)).append(statement).append("\n");
+		}
+		predictedDecodes.append(getTabs(3)).append("i++;\n")
+				.append(getTabs(2)).append("}\n");
+		if (statements.length == 1) {
+			decodeCases.append(getTabs(4)).append(caseLabel).append(statements[0]).append("\n");
+			return;
+		}
+		decodeCases.append(getTabs(4)).append(caseLabel).append("{\n");
+		for (String statement : statements) {
+			decodeCases.append(getTabs(5)).append(statement).append("\n");
+		}
+		decodeCases.append(getTabs(4)).append("}\n");
+	}
+
+	/**
+	 * Writes mirror the predicted decodes: each attribute is expected at the current position of the attribute list
+	 * and written without dispatching, attributes out of model order are left to the attribute implementation.
+	 * Timestamps are written from their stored epoch value without creating an {@code Instant}.
+	 */
+	private static void appendWrite(StringBuilder predictedWrites, AttributeDefinition propDef, String definition) {
+		AttributeType type = propDef.getType();
+		String writeStatement = switch (type) {
+			case TIMESTAMP_32 -> "MessageUtils.writeInt(buffer, (int) attribute.getLongAttribute(), format)";
+			case TIMESTAMP_64 -> "MessageUtils.writeLong(buffer, attribute.getLongAttribute(), format)";
+			default -> getWriteStatement(propDef, "attribute.get" + getGetterSetterMethodName(propDef) + "()");
+		};
+		predictedWrites.append(getTabs(2)).append("if (i < attributesCount && (attribute = attributes.get(i)).getAttributeDefinition() == ")
+				.append(definition).append(") {\n")
+				.append(getTabs(3)).append("buffer.put((byte) ").append(type.getId()).append(");\n")
+				.append(getTabs(3)).append("MessageUtils.writeShort(buffer, ").append(propDef.getKey()).append(", format);\n")
+				.append(getTabs(3)).append(writeStatement).append(";\n")
+				.append(getTabs(3)).append("i++;\n")
+				.append(getTabs(2)).append("}\n");
+	}
+
+	static String createRuntimeCodecSource(MessageModel model) throws IOException {
+		String tpl = readTemplate("runtimeCodec.tpl");
+		StringBuilder definitions = new StringBuilder();
+		StringBuilder assignments = new StringBuilder();
+		StringBuilder predictedDecodes = new StringBuilder();
+		StringBuilder decodeCases = new StringBuilder();
+		StringBuilder predictedWrites = new StringBuilder();
+
+		for (AttributeDefinition propDef : model.getAttributeDefinitions()) {
+			if (propDef.getType() == AttributeType.OBJECT) {
+				continue;
+			}
+			String field = "attribute" + propDef.getKey();
+			String caseLabel = "case (" + propDef.getKey() + " << 8) | " + propDef.getType().getId() + " -> ";
+			String frame = "MessageUtils.readMessageFrame(buffer, format)";
+			definitions.append(getTabs(1)).append("private final AttributeDefinition ").append(field).append(";\n");
+			assignments.append(getTabs(2)).append(field).append(" = model.getAttributeDefinitionByKey(").append(propDef.getKey()).append(");\n");
+
+			if (propDef.getType() == AttributeType.OBJECT_MULTI_REFERENCE) {
+				appendDecode(predictedDecodes, decodeCases, propDef, caseLabel,
+						"int count = MessageUtils.readReferenceCount(buffer, format);",
+						"List<Message> messages = new ArrayList<>(count);",
+						"for (int n = 0; n < count; n++) {",
+						"\tmessages.add(readReference(" + field + ", " + frame + ", fileDataReader, decoderRegistry));",
+						"}",
+						"message.addDecodedAttribute(new MessageAttributeImpl(" + field + ", messages));");
+			} else if (propDef.getType() == AttributeType.OBJECT_SINGLE_REFERENCE) {
+				appendDecode(predictedDecodes, decodeCases, propDef, caseLabel,
+						"message.addDecodedAttribute(new MessageAttributeImpl(" + field + ", readReference(" + field + ", " + frame + ", fileDataReader, decoderRegistry)));");
+			} else {
+				appendDecode(predictedDecodes, decodeCases, propDef, caseLabel,
+						"message.addDecodedAttribute(" + getAttributeDecodeExpression(propDef, field) + ");");
+			}
+			appendWrite(predictedWrites, propDef, field);
+		}
+
+		tpl = setValue(tpl, "definitions", definitions.toString());
+		tpl = setValue(tpl, "assignments", assignments.toString());
+		tpl = setValue(tpl, "predictedDecodes", predictedDecodes.toString());
+		tpl = setValue(tpl, "decodeCases", decodeCases.toString());
+		tpl = setValue(tpl, "predictedWrites", predictedWrites.toString());
+		return tpl;
+	}
+
+	private static void createMessageRecord(ModelCollection modelCollection, MessageModel model, File directory) throws IOException {
+		String type = firstUpperCase(model.getName());
+		String recordType = type + "Record";
+		String tpl = readTemplate("messageRecord.tpl");
+		tpl = setValue(tpl, "package", modelCollection.getNamespace());
+		tpl = setValue(tpl, "type", type);
+		StringBuilder definitions = new StringBuilder();
+		StringBuilder fields = new StringBuilder();
+		StringBuilder decodeCases = new StringBuilder();
+		StringBuilder attributes = new StringBuilder();
+		StringBuilder attributeCases = new StringBuilder();
+		StringBuilder writes = new StringBuilder();
+		StringBuilder sizes = new StringBuilder();
+		StringBuilder counts = new StringBuilder();
+		StringBuilder methods = new StringBuilder();
+		int presenceBits = 0;
+
+		for (AttributeDefinition propDef : model.getAttributeDefinitions()) {
+			if (propDef.getType() == AttributeType.OBJECT) {
+				continue;
+			}
+			String name = propDef.getName();
+			String field = "this." + name;
+			String constant = createConstantName(name);
+			String fieldType = getRecordFieldType(propDef);
+			String caseLabel = "case (" + propDef.getKey() + " << 8) | " + propDef.getType().getId() + " -> ";
+			boolean primitive = isPrimitive(propDef.getType());
+			String presenceField = "presence" + (presenceBits / 64);
+			String presenceMask = "(1L << " + (presenceBits % 64) + ")";
+			String present = primitive ? "(" + presenceField + " & " + presenceMask + ") != 0" : field + " != null";
+			String setPresent = primitive ? getTabs(2) + presenceField + " |= " + presenceMask + ";\n" : "";
+			if (primitive && presenceBits % 64 == 0) {
+				fields.append(getTabs(1)).append("private long ").append(presenceField).append(";\n");
+			}
+			if (primitive) {
+				presenceBits++;
+			}
+
+			definitions.append(getTabs(1))
+					.append("private static final AttributeDefinition ").append(constant).append(" = ")
+					.append(type).append(".getMessageModel().getAttributeDefinitionByKey(").append(propDef.getKey()).append(");\n");
+			fields.append(getTabs(1)).append("private ").append(fieldType).append(" ").append(name).append(";\n");
+
+			String attributeValue = field;
+			String writeValue = field;
+			if (propDef.getType() == AttributeType.ENUM) {
+				String enumType = firstUpperCase(propDef.getEnumDefinition().getName());
+				definitions.append(getTabs(1))
+						.append("private static final ").append(enumType).append("[] ").append(constant).append("_VALUES = ")
+						.append(enumType).append(".values();\n");
+				decodeCases.append(getTabs(4)).append(caseLabel).append("{\n")
+						.append(getTabs(5)).append("int id = MessageUtils.readInt(buffer, format);\n")
+						.append(getTabs(5)).append(field).append(" = id > 0 ? ").append(constant).append("_VALUES[id - 1] : null;\n")
+						.append(getTabs(4)).append("}\n");
+				attributeValue = field + ".getId()";
+				writeValue = field + ".getId()";
+			} else if (propDef.getType() == AttributeType.OBJECT_SINGLE_REFERENCE) {
+				decodeCases.append(getTabs(4)).append(caseLabel).append(field).append(" = ")
+						.append(getRecordReferenceDecodeExpression(modelCollection, propDef)).append(";\n");
+				if (propDef.getReferencedObject().isFieldBacked()) {
+					attributeValue = field + ".toMessage()";
+				}
+			} else if (propDef.getType() == AttributeType.OBJECT_MULTI_REFERENCE) {
+				String referenceType = getRecordReferenceType(propDef);
+				decodeCases.append(getTabs(4)).append(caseLabel).append("{\n")
+						.append(getTabs(5)).append("int count = MessageUtils.readReferenceCount(buffer, format);\n")
+						.append(getTabs(5)).append(field).append(" = new ArrayList<>(count);\n")
+						.append(getTabs(5)).append("for (int n = 0; n < count; n++) {\n")
+						.append(getTabs(6)).append(field).append(".add(").append(getRecordReferenceDecodeExpression(modelCollection, propDef)).append(");\n")
+						.append(getTabs(5)).append("}\n")
+						.append(getTabs(4)).append("}\n");
+				if (propDef.getReferencedObject().isFieldBacked()) {
+					attributeValue = field + ".stream().map(" + referenceType + "::toMessage).collect(Collectors.toCollection(ArrayList::new))";
+				}
+			} else if (primitive) {
+				decodeCases.append(getTabs(4)).append(caseLabel).append("{\n")
+						.append(getTabs(5)).append(field).append(" = ").append(getDecodeExpression(propDef)).append(";\n")
+						.append(getTabs(5)).append(presenceField).append(" |= ").append(presenceMask).append(";\n")
+						.append(getTabs(4)).append("}\n");
+			} else {
+				decodeCases.append(getTabs(4)).append(caseLabel).append(field).append(" = ").append(getDecodeExpression(propDef)).append(";\n");
+			}
+
+			String attribute = "new MessageAttributeImpl(" + constant + ", " + attributeValue + ")";
+			attributes.append(getTabs(2)).append("if (").append(present).append(") {\n")
+					.append(getTabs(3)).append("attributes.add(").append(attribute).append(");\n")
+					.append(getTabs(2)).append("}\n");
+			attributeCases.append(getTabs(3)).append("case \"").append(name).append("\" -> ")
+					.append(present).append(" ? ").append(attribute).append(" : null;\n");
+			writes.append(getTabs(2)).append("if (").append(present).append(") {\n")
+					.append(getTabs(3)).append("buffer.put((byte) ").append(propDef.getType().getId()).append(");\n")
+					.append(getTabs(3)).append("MessageUtils.writeShort(buffer, ").append(propDef.getKey()).append(", format);\n")
+					.append(getTabs(3)).append(getWriteStatement(propDef, writeValue)).append(";\n")
+					.append(getTabs(2)).append("}\n");
+			sizes.append(getTabs(2)).append("if (").append(present).append(") {\n")
+					.append(getTabs(3)).append("size += 1 + MessageUtils.getShortSize(").append(propDef.getKey()).append(", format) + ")
+					.append(getValueSizeExpression(propDef, writeValue)).append(";\n")
+					.append(getTabs(2)).append("}\n");
+			if (!primitive) {
+				counts.append(getTabs(2)).append("if (").append(present).append(") {\n")
+						.append(getTabs(3)).append("count++;\n")
+						.append(getTabs(2)).append("}\n");
+			}
+
+			String getterPrefix = propDef.getType() == AttributeType.BOOLEAN ? "is" : "get";
+			methods.append(getTabs(1)).append("public ").append(fieldType).append(" ").append(getterPrefix).append(firstUpperCase(name)).append("() {\n")
+					.append(getTabs(2)).append("return ").append(name).append(";\n")
+					.append(getTabs(1)).append("}\n\n");
+			methods.append(getTabs(1)).append("public ").append(recordType).append(" set").append(firstUpperCase(name)).append("(").append(fieldType).append(" value) {\n")
+					.append(getTabs(2)).append("this.").append(name).append(" = value;\n")
+					.append(setPresent)
+					.append(getTabs(2)).append("return this;\n")
+					.append(getTabs(1)).append("}\n\n");
+			if (propDef.getType() == AttributeType.OBJECT_MULTI_REFERENCE) {
+				methods.append(getTabs(1)).append("public ").append(recordType).append(" add").append(firstUpperCase(name)).append("(").append(getRecordReferenceType(propDef)).append(" value) {\n")
+						.append(getTabs(2)).append("if (").append(field).append(" == null) {\n")
+						.append(getTabs(3)).append(field).append(" = new ArrayList<>();\n")
+						.append(getTabs(2)).append("}\n")
+						.append(getTabs(2)).append(field).append(".add(value);\n")
+						.append(getTabs(2)).append("return this;\n")
+						.append(getTabs(1)).append("}\n\n");
+			}
+		}
+		for (int i = 0; i < presenceBits; i += 64) {
+			counts.insert(0, getTabs(2) + "count += Long.bitCount(presence" + (i / 64) + ");\n");
+		}
+
+		if (!model.isMessageRecord()) {
+			methods.append(getTabs(1)).append("@Override\n")
+					.append(getTabs(1)).append("public int getRecordId() {\n")
+					.append(getTabs(2)).append("return 0;\n")
+					.append(getTabs(1)).append("}\n\n");
+			methods.append(getTabs(1)).append("@Override\n")
+					.append(getTabs(1)).append("public ").append(recordType).append(" setRecordId(int recordId) {\n")
+					.append(getTabs(2)).append("throw new RuntimeException(\"Message model does not contain a field with name:\" + MessageDefinition.META_RECORD_ID);\n")
+					.append(getTabs(1)).append("}\n\n");
+			methods.append(getTabs(1)).append("@Override\n")
+					.append(getTabs(1)).append("public ").append(recordType).append(" setRecordModificationDate(Instant instant) {\n")
+					.append(getTabs(2)).append("throw new RuntimeException(\"Message model does not contain a field with name:\" + MessageDefinition.META_MODIFICATION_DATE);\n")
+					.append(getTabs(1)).append("}\n\n");
+		}
+
+		tpl = setValue(tpl, "definitions", definitions.toString());
+		tpl = setValue(tpl, "fields", fields.toString());
+		tpl = setValue(tpl, "decodeCases", decodeCases.toString());
+		tpl = setValue(tpl, "attributes", attributes.toString());
+		tpl = setValue(tpl, "attributeCases", attributeCases.toString());
+		tpl = setValue(tpl, "writes", writes.toString());
+		tpl = setValue(tpl, "sizes", sizes.toString());
+		tpl = setValue(tpl, "counts", counts.toString());
+		tpl = setValue(tpl, "methods", methods.toString());
+		File file = new File(directory, recordType + ".java");
+		Files.writeString(file.toPath(), tpl);
+		System.out.println("Write record:" + file.getPath());
+	}
+
+	private static boolean isPrimitive(AttributeType type) {
+		return switch (type) {
+			case BOOLEAN, BYTE, INT, LONG, FLOAT, DOUBLE -> true;
+			default -> false;
+		};
+	}
+
+	private static String getRecordReferenceType(AttributeDefinition propDef) {
+		MessageModel referencedModel = propDef.getReferencedObject();
+		return firstUpperCase(referencedModel.getName()) + (referencedModel.isFieldBacked() ? "Record" : "");
+	}
+
+	private static String getRecordFieldType(AttributeDefinition propDef) {
+		return switch (propDef.getType()) {
+			case OBJECT_SINGLE_REFERENCE -> getRecordReferenceType(propDef);
+			case OBJECT_MULTI_REFERENCE -> "List<" + getRecordReferenceType(propDef) + ">";
+			default -> getReturnType(propDef);
+		};
+	}
+
+	private static String getRecordReferenceDecodeExpression(ModelCollection modelCollection, AttributeDefinition propDef) {
+		String frame = "MessageUtils.readMessageFrame(buffer, format)";
+		if (propDef.getReferencedObject().isFieldBacked()) {
+			return "new " + getRecordReferenceType(propDef) + "(" + frame + ", fileDataReader)";
+		} else {
+			return getRecordReferenceType(propDef) + "Codec.decode(" + frame + ", fileDataReader, " + firstUpperCase(modelCollection.getName()) + ".MODEL_COLLECTION)";
+		}
+	}
+
 	private static String readTemplate(String name) throws IOException {
 		InputStream inputStream = MessagePojoBuilder.class.getResourceAsStream("/org/teamapps/message/templates/" + name);
 		return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
@@ -558,6 +910,11 @@ public class MessagePojoBuilder {
 		return "\t".repeat(count);
 	}
 
+	private static String encodingSetter(AttributeDefinition attributeDefinition) {
+		AttributeEncoding encoding = attributeDefinition.getEncoding();
+		return encoding == null || encoding == AttributeEncoding.DEFAULT ? "" : ".setEncoding(AttributeEncoding." + encoding + ")";
+	}
+
 	private static String withQuotes(String value) {
 		return value != null ? "\"" + value + "\"" : "null";
 	}
@@ -600,6 +957,110 @@ public class MessagePojoBuilder {
 		};
 	}
 
+	private static String getDecodeExpression(AttributeDefinition propDef) {
+		return switch (propDef.getType()) {
+			case OBJECT, OBJECT_MULTI_REFERENCE -> throw new IllegalArgumentException("No single value expression for " + propDef.getType());
+			case OBJECT_SINGLE_REFERENCE -> firstUpperCase(propDef.getReferencedObject().getName()) + "Codec.decode(MessageUtils.readMessageFrame(buffer, format), fileDataReader, decoderRegistry)";
+			case BOOLEAN -> "MessageUtils.readBoolean(buffer)";
+			case BYTE -> "buffer.get()";
+			case INT, ENUM -> "MessageUtils.readInt(buffer, format)";
+			case LONG -> "MessageUtils.readLong(buffer, format)";
+			case FLOAT -> "buffer.getFloat()";
+			case DOUBLE -> "buffer.getDouble()";
+			case STRING -> "MessageUtils.readString(buffer, format)";
+			case BITSET -> "MessageUtils.readBitSet(buffer, format)";
+			case BYTE_ARRAY -> "MessageUtils.readByteArray(buffer, format)";
+			case INT_ARRAY -> "MessageUtils.readIntArray(buffer, format)";
+			case LONG_ARRAY -> "MessageUtils.readLongArray(buffer, format)";
+			case FLOAT_ARRAY -> "MessageUtils.readFloatArray(buffer, format)";
+			case DOUBLE_ARRAY -> "MessageUtils.readDoubleArray(buffer, format)";
+			case STRING_ARRAY -> "MessageUtils.readStringArray(buffer, format)";
+			case FILE -> "MessageUtils.readFile(buffer, fileDataReader, format)";
+			case TIMESTAMP_32 -> "MessageUtils.readInstant32(buffer, format)";
+			case TIMESTAMP_64 -> "MessageUtils.readInstant64(buffer, format)";
+			case DATE_TIME -> "MessageUtils.readLocalDateTime(buffer, format)";
+			case DATE -> "MessageUtils.readLocalDate(buffer, format)";
+			case TIME -> "MessageUtils.readLocalTime(buffer, format)";
+			case GENERIC_MESSAGE -> "MessageUtils.readGenericMessage(buffer, fileDataReader, format)";
+		};
+	}
+
+	private static String getAttributeDecodeExpression(AttributeDefinition propDef, String definition) {
+		return switch (propDef.getType()) {
+			case BOOLEAN -> "MessageAttributeImpl.ofBoolean(" + definition + ", " + getDecodeExpression(propDef) + ")";
+			case BYTE -> "MessageAttributeImpl.ofByte(" + definition + ", " + getDecodeExpression(propDef) + ")";
+			case INT, ENUM -> "MessageAttributeImpl.ofInt(" + definition + ", " + getDecodeExpression(propDef) + ")";
+			case LONG -> "MessageAttributeImpl.ofLong(" + definition + ", " + getDecodeExpression(propDef) + ")";
+			case FLOAT -> "MessageAttributeImpl.ofFloat(" + definition + ", " + getDecodeExpression(propDef) + ")";
+			case DOUBLE -> "MessageAttributeImpl.ofDouble(" + definition + ", " + getDecodeExpression(propDef) + ")";
+			case TIMESTAMP_32 -> "MessageAttributeImpl.ofTimestamp(" + definition + ", MessageUtils.readInt(buffer, format))";
+			case TIMESTAMP_64 -> "MessageAttributeImpl.ofTimestamp(" + definition + ", MessageUtils.readLong(buffer, format))";
+			default -> "new MessageAttributeImpl(" + definition + ", " + getDecodeExpression(propDef) + ")";
+		};
+	}
+
+	private static String getWriteStatement(AttributeDefinition propDef, String value) {
+		return switch (propDef.getType()) {
+			case OBJECT -> throw new IllegalArgumentException("No write statement for " + propDef.getType());
+			case OBJECT_SINGLE_REFERENCE -> "MessageUtils.writeReference(buffer, " + value + ", format)";
+			case OBJECT_MULTI_REFERENCE -> "MessageUtils.writeReferences(buffer, " + value + ", format)";
+			case BOOLEAN -> "MessageUtils.writeBoolean(buffer, " + value + ")";
+			case BYTE -> "buffer.put(" + value + ")";
+			case INT, ENUM -> "MessageUtils.writeInt(buffer, " + value + ", format)";
+			case LONG -> "MessageUtils.writeLong(buffer, " + value + ", format)";
+			case FLOAT -> "buffer.putFloat(" + value + ")";
+			case DOUBLE -> "buffer.putDouble(" + value + ")";
+			case STRING -> "MessageUtils.writeString(buffer, " + value + ", format)";
+			case BITSET -> "MessageUtils.writeBitSet(buffer, " + value + ", format)";
+			case BYTE_ARRAY -> "MessageUtils.writeByteArray(buffer, " + value + ", format)";
+			case INT_ARRAY -> "MessageUtils.writeIntArray(buffer, " + value + ", format, " + getEncodingConstant(propDef) + ")";
+			case LONG_ARRAY -> "MessageUtils.writeLongArray(buffer, " + value + ", format, " + getEncodingConstant(propDef) + ")";
+			case FLOAT_ARRAY -> "MessageUtils.writeFloatArray(buffer, " + value + ", format)";
+			case DOUBLE_ARRAY -> "MessageUtils.writeDoubleArray(buffer, " + value + ", format)";
+			case STRING_ARRAY -> "MessageUtils.writeStringArray(buffer, " + value + ", format)";
+			case FILE -> "MessageUtils.writeFile(buffer, " + value + ", format)";
+			case TIMESTAMP_32 -> "MessageUtils.writeInstant32(buffer, " + value + ", format)";
+			case TIMESTAMP_64 -> "MessageUtils.writeInstant64(buffer, " + value + ", format)";
+			case DATE_TIME -> "MessageUtils.writeLocalDateTime(buffer, " + value + ", format)";
+			case DATE -> "MessageUtils.writeLocalDate(buffer, " + value + ", format)";
+			case TIME -> "MessageUtils.writeLocalTime(buffer, " + value + ", format)";
+			case GENERIC_MESSAGE -> "MessageUtils.writeGenericMessage(buffer, " + value + ", format)";
+		};
+	}
+
+	private static String getValueSizeExpression(AttributeDefinition propDef, String value) {
+		return switch (propDef.getType()) {
+			case OBJECT -> throw new IllegalArgumentException("No size expression for " + propDef.getType());
+			case OBJECT_SINGLE_REFERENCE -> "MessageUtils.getReferenceSize(" + value + ", format)";
+			case OBJECT_MULTI_REFERENCE -> "MessageUtils.getReferencesSize(" + value + ", format)";
+			case BOOLEAN, BYTE -> "1";
+			case INT, ENUM -> "MessageUtils.getIntSize(" + value + ", format)";
+			case LONG -> "MessageUtils.getLongSize(" + value + ", format)";
+			case FLOAT -> "4";
+			case DOUBLE -> "8";
+			case STRING -> "MessageUtils.getStringSize(" + value + ", format)";
+			case BITSET -> "MessageUtils.getBitSetSize(" + value + ", format)";
+			case BYTE_ARRAY -> "MessageUtils.getByteArraySize(" + value + ", format)";
+			case INT_ARRAY -> "MessageUtils.getIntArraySize(" + value + ", format, " + getEncodingConstant(propDef) + ")";
+			case LONG_ARRAY -> "MessageUtils.getLongArraySize(" + value + ", format, " + getEncodingConstant(propDef) + ")";
+			case FLOAT_ARRAY -> "MessageUtils.getFloatArraySize(" + value + ", format)";
+			case DOUBLE_ARRAY -> "MessageUtils.getDoubleArraySize(" + value + ", format)";
+			case STRING_ARRAY -> "MessageUtils.getStringArraySize(" + value + ", format)";
+			case FILE -> "MessageUtils.getFileSize(" + value + ", format)";
+			case TIMESTAMP_32 -> "MessageUtils.getInstant32Size(" + value + ", format)";
+			case TIMESTAMP_64 -> "MessageUtils.getInstant64Size(" + value + ", format)";
+			case DATE_TIME -> "MessageUtils.getLocalDateTimeSize(" + value + ", format)";
+			case DATE -> "MessageUtils.getLocalDateSize(" + value + ", format)";
+			case TIME -> "MessageUtils.getLocalTimeSize(" + value + ", format)";
+			case GENERIC_MESSAGE -> "MessageUtils.getGenericMessageSize(" + value + ", format)";
+		};
+	}
+
+	private static String getEncodingConstant(AttributeDefinition propDef) {
+		AttributeEncoding encoding = propDef.getEncoding() != null ? propDef.getEncoding() : AttributeEncoding.DEFAULT;
+		return "AttributeEncoding." + encoding;
+	}
+
 	private static String getGetterSetterMethodName(AttributeDefinition propDef) {
 		return switch (propDef.getType()) {
 			case OBJECT -> "Message";
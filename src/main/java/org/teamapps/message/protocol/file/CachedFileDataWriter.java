@@ -0,0 +1,55 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.file;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Writes each file data instance only once and returns the same result for repeated calls, so that the size of a
+ * message can be computed with the written file data before the message itself is written.
+ */
+public class CachedFileDataWriter implements FileDataWriter {
+
+	private final FileDataWriter fileDataWriter;
+	private final Map<FileData, FileData> writtenFileData = new IdentityHashMap<>();
+
+	private CachedFileDataWriter(FileDataWriter fileDataWriter) {
+		this.fileDataWriter = fileDataWriter;
+	}
+
+	public static FileDataWriter of(FileDataWriter fileDataWriter) {
+		if (fileDataWriter == null || fileDataWriter instanceof CachedFileDataWriter) {
+			return fileDataWriter;
+		}
+		return new CachedFileDataWriter(fileDataWriter);
+	}
+
+	@Override
+	public FileData writeFileData(FileData fileData) throws IOException {
+		FileData writtenData = writtenFileData.get(fileData);
+		if (writtenData == null) {
+			writtenData = fileDataWriter.writeFileData(fileData);
+			writtenFileData.put(fileData, writtenData);
+		}
+		return writtenData;
+	}
+}
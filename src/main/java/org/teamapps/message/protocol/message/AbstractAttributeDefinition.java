@@ -33,6 +33,14 @@ import java.util.List;
 import java.util.Set;
 
 public class AbstractAttributeDefinition implements AttributeDefinition, ExtendedAttributesUpdater {
+
+	/**
+	 * The serialized type id carries the encoding hint in its upper half, definitions with the default encoding
+	 * keep the format of older model versions.
+	 */
+	private static final int ENCODING_SHIFT = 16;
+	private static final int TYPE_ID_MASK = 0xFFFF;
+
 	private final MessageModel parent;
 	private final String name;
 	private final int key;
@@ -40,8 +48,10 @@ public class AbstractAttributeDefinition implements AttributeDefinition, Extende
 	private String defaultValue;
 	private String comment;
 	private Message specificType;
+	private AttributeEncoding encoding = AttributeEncoding.DEFAULT;
 	private final MessageModel referencedObject;
 	private final EnumDefinition enumDefinition;
+	private int ordinal = -1;
 
 	public AbstractAttributeDefinition(MessageModel parent, String name, int key, AttributeType type, Message specificType){
 		this(parent, name, key, type, specificType, null, null);
@@ -99,7 +109,12 @@ public class AbstractAttributeDefinition implements AttributeDefinition, Extende
 		this.parent = parent;
 		this.name = MessageUtils.readString(dis);
 		this.key = dis.readInt();
-		this.type = AttributeType.getById(dis.readInt());
+		int typeId = dis.readInt();
+		this.type = AttributeType.getById(typeId & TYPE_ID_MASK);
+		this.encoding = AttributeEncoding.getById(typeId >>> ENCODING_SHIFT);
+		if (encoding == null) {
+			throw new RuntimeException("Unknown attribute encoding:" + (typeId >>> ENCODING_SHIFT));
+		}
 		this.specificType = MessageUtils.readMessageOrNull(dis);
 		this.defaultValue = MessageUtils.readString(dis);
 		this.comment = MessageUtils.readString(dis);
@@ -140,7 +155,7 @@ public class AbstractAttributeDefinition implements AttributeDefinition, Extende
 	public void write(DataOutputStream dos, DefinitionCache definitionCache) throws IOException {
 		MessageUtils.writeString(dos, name);
 		dos.writeInt(key);
-		dos.writeInt(type.getId());
+		dos.writeInt(encoding.getId() << ENCODING_SHIFT | type.getId());
 		MessageUtils.writeNullableMessage(dos, specificType);
 		MessageUtils.writeString(dos, defaultValue);
 		MessageUtils.writeString(dos, comment);
@@ -185,6 +200,11 @@ public class AbstractAttributeDefinition implements AttributeDefinition, Extende
 		return this;
 	}
 
+	public ExtendedAttributesUpdater setEncoding(AttributeEncoding encoding) {
+		this.encoding = encoding != null ? encoding : AttributeEncoding.DEFAULT;
+		return this;
+	}
+
 	@Override
 	public byte[] toBytes() throws IOException {
 		ByteArrayOutputStream bos = new ByteArrayOutputStream();
@@ -209,11 +229,25 @@ public class AbstractAttributeDefinition implements AttributeDefinition, Extende
 		return key;
 	}
 
+	@Override
+	public int getOrdinal() {
+		return ordinal;
+	}
+
+	void setOrdinal(int ordinal) {
+		this.ordinal = ordinal;
+	}
+
 	@Override
 	public AttributeType getType() {
 		return type;
 	}
 
+	@Override
+	public AttributeEncoding getEncoding() {
+		return encoding;
+	}
+
 	@Override
 	public Message getSpecificType() {
 		return specificType;
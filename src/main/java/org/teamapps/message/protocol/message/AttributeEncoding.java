@@ -0,0 +1,52 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.message;
+
+/**
+ * Optional value encoding hint for {@link AttributeType#INT_ARRAY} and {@link AttributeType#LONG_ARRAY} attributes.
+ * The hint only affects writing in compact formats, the encoding is stored with each value so readers do not need it.
+ * A value is stored raw whenever the hinted encoding would not be smaller.
+ */
+public enum AttributeEncoding {
+
+	DEFAULT(0),
+	DELTA_VARINT(1),
+	FRAME_OF_REFERENCE(2),
+	;
+
+	private final int id;
+
+	AttributeEncoding(int id) {
+		this.id = id;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public static AttributeEncoding getById(int id) {
+		return switch (id) {
+			case 0 -> DEFAULT;
+			case 1 -> DELTA_VARINT;
+			case 2 -> FRAME_OF_REFERENCE;
+			default -> null;
+		};
+	}
+}
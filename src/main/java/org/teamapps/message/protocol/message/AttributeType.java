@@ -64,6 +64,16 @@ public enum AttributeType {
 		return this == OBJECT_SINGLE_REFERENCE || this == OBJECT_MULTI_REFERENCE;
 	}
 
+	/**
+	 * True for types whose value fits into a long and is kept without boxing.
+	 */
+	public boolean isPrimitive() {
+		return switch (this) {
+			case BOOLEAN, BYTE, INT, ENUM, LONG, FLOAT, DOUBLE, TIMESTAMP_32, TIMESTAMP_64 -> true;
+			default -> false;
+		};
+	}
+
 	public static AttributeType getById(int id) {
 		return switch (id) {
 			case 1 -> OBJECT;
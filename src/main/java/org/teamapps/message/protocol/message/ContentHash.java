@@ -0,0 +1,319 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.message;
+
+import org.teamapps.message.protocol.file.FileData;
+import org.teamapps.message.protocol.model.AttributeDefinition;
+import org.teamapps.message.protocol.utils.MessageUtils;
+
+import java.nio.ByteBuffer;
+import java.time.ZoneOffset;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 64 bit hash of the content of a message, computed either from the decoded message or from its encoded bytes with
+ * the same result. Values are hashed in the form they are encoded in, independent of the message format and of the
+ * attribute encoding, so values that encode the same (e.g. null and empty strings) have the same hash. Attributes are
+ * combined independent of their order, the model version is not part of the hash.
+ */
+final class ContentHash {
+
+	private static final long SEED = 0x27D4EB2F165667C5L;
+	private static final long PRIME_1 = 0x9E3779B97F4A7C15L;
+	private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+	private static final long FNV_PRIME = 0x100000001B3L;
+
+	private ContentHash() {
+	}
+
+	static long of(Message message) {
+		long sum = 0;
+		for (MessageAttribute attribute : message.getAttributes()) {
+			AttributeDefinition definition = attribute.getAttributeDefinition();
+			sum += attributeHash(definition.getKey(), definition.getType(), ((MessageAttributeImpl) attribute).getContentHash());
+		}
+		return mix(add(add(stringHash(message.getModel().getObjectUuid()), sum), message.getAttributes().size()));
+	}
+
+	/**
+	 * Hashes the encoded message at the current position of the buffer and advances over it.
+	 */
+	static long of(ByteBuffer buffer) {
+		MessageFormat format = Message.readMessageFormat(buffer);
+		long uuidHash = readStringHash(buffer, format);
+		MessageUtils.readShort(buffer, format);
+		int attributesCount = MessageUtils.readShort(buffer, format);
+		long sum = 0;
+		for (int i = 0; i < attributesCount; i++) {
+			AttributeType type = AttributeType.getById(buffer.get());
+			int key = MessageUtils.readShort(buffer, format);
+			sum += attributeHash(key, type, readValueHash(buffer, type, format));
+		}
+		return mix(add(add(uuidHash, sum), attributesCount));
+	}
+
+	static long valueHash(MessageAttributeImpl attribute) {
+		return switch (attribute.getAttributeDefinition().getType()) {
+			case OBJECT_SINGLE_REFERENCE, GENERIC_MESSAGE -> messageHash(attribute.getReferencedObject());
+			case OBJECT_MULTI_REFERENCE -> {
+				List<Message> messages = attribute.getReferencedObjects();
+				int count = messages == null ? 0 : messages.size();
+				long hash = SEED;
+				for (int i = 0; i < count; i++) {
+					hash = add(hash, messageHash(messages.get(i)));
+				}
+				yield add(hash, count);
+			}
+			case BOOLEAN, BYTE, INT, ENUM, TIMESTAMP_32 -> mix((int) attribute.getBits());
+			case LONG, TIMESTAMP_64 -> mix(attribute.getBits());
+			case FLOAT -> mix(Float.floatToIntBits(attribute.getFloatAttribute()));
+			case DOUBLE -> mix(Double.doubleToLongBits(attribute.getDoubleAttribute()));
+			case STRING -> stringHash(attribute.getStringAttribute());
+			case BITSET -> bitSetHash(attribute.getBitSetAttribute());
+			case BYTE_ARRAY -> bytesHash(attribute.getByteArrayAttribute());
+			case INT_ARRAY -> intsHash(attribute.getIntArrayAttribute());
+			case LONG_ARRAY -> longsHash(attribute.getLongArrayAttribute());
+			case FLOAT_ARRAY -> floatsHash(attribute.getFloatArrayAttribute());
+			case DOUBLE_ARRAY -> doublesHash(attribute.getDoubleArrayAttribute());
+			case STRING_ARRAY -> stringsHash(attribute.getStringArrayAttribute());
+			case FILE -> fileHash(attribute.getFileData());
+			case DATE_TIME -> mix(attribute.getDateTimeAttribute() == null ? 0 : attribute.getDateTimeAttribute().toInstant(ZoneOffset.UTC).toEpochMilli());
+			case DATE -> mix(attribute.getDateAttribute() == null ? 0 : attribute.getDateAttribute().toEpochDay());
+			case TIME -> mix(attribute.getTimeAttribute() == null ? 0 : attribute.getTimeAttribute().toSecondOfDay());
+			case OBJECT -> 0;
+		};
+	}
+
+	/**
+	 * Hashes the encoded attribute value at the current position of the buffer and advances over it.
+	 */
+	static long readValueHash(ByteBuffer buffer, AttributeType type, MessageFormat format) {
+		return switch (type) {
+			case OBJECT_SINGLE_REFERENCE -> of(MessageUtils.readMessageFrame(buffer, format));
+			case OBJECT_MULTI_REFERENCE -> {
+				int count = MessageUtils.readReferenceCount(buffer, format);
+				long hash = SEED;
+				for (int i = 0; i < count; i++) {
+					hash = add(hash, of(MessageUtils.readMessageFrame(buffer, format)));
+				}
+				yield add(hash, count);
+			}
+			case GENERIC_MESSAGE -> {
+				int length = MessageUtils.readLength(buffer, format);
+				if (length == 0) {
+					yield 0;
+				}
+				int position = buffer.position();
+				buffer.position(position + length);
+				yield of(buffer.slice(position, length));
+			}
+			case BOOLEAN, BYTE -> mix(buffer.get());
+			case INT, ENUM, TIMESTAMP_32, TIME -> mix(MessageUtils.readInt(buffer, format));
+			case LONG, TIMESTAMP_64, DATE_TIME, DATE -> mix(MessageUtils.readLong(buffer, format));
+			case FLOAT -> mix(Float.floatToIntBits(buffer.getFloat()));
+			case DOUBLE -> mix(Double.doubleToLongBits(buffer.getDouble()));
+			case STRING -> readStringHash(buffer, format);
+			case BITSET -> bitSetHash(MessageUtils.readBitSet(buffer, format));
+			case BYTE_ARRAY -> readBytesHash(buffer, MessageUtils.readLength(buffer, format));
+			case INT_ARRAY -> intsHash(MessageUtils.readIntArray(buffer, format));
+			case LONG_ARRAY -> longsHash(MessageUtils.readLongArray(buffer, format));
+			case FLOAT_ARRAY -> floatsHash(MessageUtils.readFloatArray(buffer, format));
+			case DOUBLE_ARRAY -> doublesHash(MessageUtils.readDoubleArray(buffer, format));
+			case STRING_ARRAY -> {
+				int count = MessageUtils.readLength(buffer, format);
+				long hash = SEED;
+				for (int i = 0; i < count; i++) {
+					hash = add(hash, readStringHash(buffer, format));
+				}
+				yield add(hash, count);
+			}
+			case FILE -> {
+				long length = MessageUtils.readLong(buffer, format);
+				long hash = add(SEED, length);
+				if (length != 0) {
+					hash = add(hash, MessageUtils.readByteAsInt(buffer));
+					hash = add(hash, readStringHash(buffer, format));
+					hash = add(hash, readStringHash(buffer, format));
+					boolean encrypted = MessageUtils.readBoolean(buffer);
+					hash = add(hash, encrypted ? 1 : 0);
+					if (encrypted) {
+						hash = add(hash, readStringHash(buffer, format));
+					}
+				}
+				yield hash;
+			}
+			case OBJECT -> 0;
+		};
+	}
+
+	private static long attributeHash(int key, AttributeType type, long valueHash) {
+		return mix(add(add(SEED, ((long) key << 8) | type.getId()), valueHash));
+	}
+
+	private static long messageHash(Message message) {
+		return message == null ? 0 : message.contentHash();
+	}
+
+	private static long stringHash(String value) {
+		if (value == null) {
+			return add(FNV_OFFSET, 0);
+		}
+		long hash = FNV_OFFSET;
+		int length = value.length();
+		int utf8Length = 0;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				hash = (hash ^ c) * FNV_PRIME;
+				utf8Length++;
+			} else if (c < 0x800) {
+				hash = (hash ^ (0xC0 | (c >> 6))) * FNV_PRIME;
+				hash = (hash ^ (0x80 | (c & 0x3F))) * FNV_PRIME;
+				utf8Length += 2;
+			} else if (!Character.isSurrogate(c)) {
+				hash = (hash ^ (0xE0 | (c >> 12))) * FNV_PRIME;
+				hash = (hash ^ (0x80 | ((c >> 6) & 0x3F))) * FNV_PRIME;
+				hash = (hash ^ (0x80 | (c & 0x3F))) * FNV_PRIME;
+				utf8Length += 3;
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				hash = (hash ^ (0xF0 | (codePoint >> 18))) * FNV_PRIME;
+				hash = (hash ^ (0x80 | ((codePoint >> 12) & 0x3F))) * FNV_PRIME;
+				hash = (hash ^ (0x80 | ((codePoint >> 6) & 0x3F))) * FNV_PRIME;
+				hash = (hash ^ (0x80 | (codePoint & 0x3F))) * FNV_PRIME;
+				utf8Length += 4;
+			} else {
+				hash = (hash ^ '?') * FNV_PRIME;
+				utf8Length++;
+			}
+		}
+		return add(hash, utf8Length);
+	}
+
+	private static long readStringHash(ByteBuffer buffer, MessageFormat format) {
+		return readBytesHash(buffer, MessageUtils.readLength(buffer, format));
+	}
+
+	private static long readBytesHash(ByteBuffer buffer, int length) {
+		long hash = FNV_OFFSET;
+		int position = buffer.position();
+		for (int i = 0; i < length; i++) {
+			hash = (hash ^ (buffer.get(position + i) & 0xFF)) * FNV_PRIME;
+		}
+		buffer.position(position + length);
+		return add(hash, length);
+	}
+
+	private static long bytesHash(byte[] bytes) {
+		long hash = FNV_OFFSET;
+		int length = bytes == null ? 0 : bytes.length;
+		for (int i = 0; i < length; i++) {
+			hash = (hash ^ (bytes[i] & 0xFF)) * FNV_PRIME;
+		}
+		return add(hash, length);
+	}
+
+	private static long stringsHash(String[] values) {
+		int count = values == null ? 0 : values.length;
+		long hash = SEED;
+		for (int i = 0; i < count; i++) {
+			hash = add(hash, stringHash(values[i]));
+		}
+		return add(hash, count);
+	}
+
+	private static long intsHash(int[] values) {
+		int count = values == null ? 0 : values.length;
+		long hash = SEED;
+		for (int i = 0; i < count; i++) {
+			hash = add(hash, values[i]);
+		}
+		return add(hash, count);
+	}
+
+	private static long longsHash(long[] values) {
+		int count = values == null ? 0 : values.length;
+		long hash = SEED;
+		for (int i = 0; i < count; i++) {
+			hash = add(hash, values[i]);
+		}
+		return add(hash, count);
+	}
+
+	private static long floatsHash(float[] values) {
+		int count = values == null ? 0 : values.length;
+		long hash = SEED;
+		for (int i = 0; i < count; i++) {
+			hash = add(hash, Float.floatToIntBits(values[i]));
+		}
+		return add(hash, count);
+	}
+
+	private static long doublesHash(double[] values) {
+		int count = values == null ? 0 : values.length;
+		long hash = SEED;
+		for (int i = 0; i < count; i++) {
+			hash = add(hash, Double.doubleToLongBits(values[i]));
+		}
+		return add(hash, count);
+	}
+
+	private static long bitSetHash(BitSet bitSet) {
+		long hash = SEED;
+		int count = 0;
+		if (bitSet != null) {
+			for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1)) {
+				hash = add(hash, i);
+				count++;
+			}
+		}
+		return add(hash, count);
+	}
+
+	private static long fileHash(FileData fileData) {
+		long length = fileData == null ? 0 : fileData.getLength();
+		long hash = add(SEED, length);
+		if (length != 0) {
+			hash = add(hash, fileData.getType().getId());
+			hash = add(hash, stringHash(fileData.getFileName()));
+			hash = add(hash, stringHash(fileData.getDescriptor()));
+			hash = add(hash, fileData.isEncrypted() ? 1 : 0);
+			if (fileData.isEncrypted()) {
+				hash = add(hash, stringHash(fileData.getEncryptionKey()));
+			}
+		}
+		return hash;
+	}
+
+	private static long add(long hash, long value) {
+		return Long.rotateLeft(hash + value * PRIME_2, 31) * PRIME_1;
+	}
+
+	private static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xFF51AFD7ED558CCDL;
+		value ^= value >>> 33;
+		value *= 0xC4CEB9FE1A85EC53L;
+		value ^= value >>> 33;
+		return value;
+	}
+}
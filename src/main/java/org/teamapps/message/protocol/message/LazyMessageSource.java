@@ -0,0 +1,59 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.message;
+
+import org.teamapps.message.protocol.file.FileDataReader;
+import org.teamapps.message.protocol.model.PojoObjectDecoderRegistry;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encoded data of a lazily decoded message, shared by all of its attributes.
+ */
+final class LazyMessageSource {
+
+	private final ByteBuffer buffer;
+	private final FileDataReader fileDataReader;
+	private final PojoObjectDecoderRegistry decoderRegistry;
+	private final MessageFormat format;
+
+	LazyMessageSource(ByteBuffer buffer, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry, MessageFormat format) {
+		this.buffer = buffer;
+		this.fileDataReader = fileDataReader;
+		this.decoderRegistry = decoderRegistry;
+		this.format = format;
+	}
+
+	ByteBuffer getBuffer(int position) {
+		return buffer.duplicate().position(position);
+	}
+
+	FileDataReader getFileDataReader() {
+		return fileDataReader;
+	}
+
+	PojoObjectDecoderRegistry getDecoderRegistry() {
+		return decoderRegistry;
+	}
+
+	MessageFormat getFormat() {
+		return format;
+	}
+}
@@ -20,11 +20,15 @@
 package org.teamapps.message.protocol.message;
 
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.teamapps.message.protocol.file.CachedFileDataWriter;
 import org.teamapps.message.protocol.file.FileData;
 import org.teamapps.message.protocol.file.FileDataReader;
 import org.teamapps.message.protocol.file.FileDataType;
 import org.teamapps.message.protocol.file.FileDataWriter;
 import org.teamapps.message.protocol.model.*;
+import org.teamapps.message.protocol.utils.MessageEncoder;
 import org.teamapps.message.protocol.utils.MessageUtils;
 import org.teamapps.message.protocol.xml.XmlBuilder;
 import org.teamapps.message.protocol.xml.XmlNode;
@@ -36,14 +40,26 @@ import org.xml.sax.InputSource;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
 import java.time.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class Message implements MessageRecord {
+public class Message implements MessageRecord, Cloneable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
 	private final MessageModel messageModel;
-	private final List<MessageAttribute> attributes = new ArrayList<>();
-	private final Map<String, MessageAttribute> attributesByName = new HashMap<>();
+	private static final int[] NO_POSITIONS = new int[0];
+	private static final AtomicLong ENCODING_STAMPS = new AtomicLong();
+
+	private List<MessageAttribute> attributes = new ArrayList<>();
+	private int[] attributePositions = NO_POSITIONS;
+	private boolean detachedAttributes;
+	private volatile Encoding encoding;
+	private SerializedSize serializedSize;
+	private boolean frozen;
+	private long contentHash;
 
 	public Message(MessageModel messageModel) {
 		this.messageModel = messageModel;
@@ -54,69 +70,287 @@ public class Message implements MessageRecord {
 		for (MessageAttribute attribute : message.getAttributes()) {
 			AttributeDefinition remappedDefinition = messageModel.getAttributeDefinitionByKey(attribute.getAttributeDefinition().getKey());
 			MessageAttribute messageAttribute = remappedDefinition == null ? attribute : new MessageAttributeImpl((MessageAttributeImpl) attribute, remappedDefinition, modelCollection);
-			attributes.add(messageAttribute);
-			attributesByName.put(messageAttribute.getAttributeDefinition().getName(), messageAttribute);
+			addDecodedAttribute(messageAttribute);
 		}
 	}
 
 	public Message(byte[] bytes, MessageModel model, FileDataReader fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
-		this(new DataInputStream(new ByteArrayInputStream(bytes)), model, fileProvider, decoderRegistry);
+		this(ByteBuffer.wrap(bytes), model, fileProvider, decoderRegistry);
 	}
 
 	public Message(byte[] bytes, ModelRegistry modelRegistry, FileDataReader fileProvider, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
-		this(new DataInputStream(new ByteArrayInputStream(bytes)), modelRegistry, fileProvider, decoderRegistry);
+		this(ByteBuffer.wrap(bytes), modelRegistry, fileProvider, decoderRegistry);
+	}
+
+	public Message(byte[] bytes, MessageModel model, FileDataReader fileProvider, PojoObjectDecoderRegistry decoderRegistry, boolean lazy) throws IOException {
+		this(ByteBuffer.wrap(bytes), model, fileProvider, decoderRegistry, lazy);
 	}
 
 	public Message(DataInputStream dis, ModelRegistry modelRegistry, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
-		String objectUuid = MessageUtils.readString(dis);
-		short modelVersion = dis.readShort();
+		int marker = dis.readUnsignedByte();
+		MessageFormat format = MessageFormat.getByMarker(marker);
+		String objectUuid = readObjectUuid(dis, marker, format);
+		short modelVersion = MessageUtils.readShort(dis, format);
 		this.messageModel = modelRegistry.getModel(objectUuid, modelVersion);
-		int attributesCount = dis.readShort();
-		for (int i = 0; i < attributesCount; i++) {
-			MessageAttributeImpl messageAttribute = new MessageAttributeImpl(dis, messageModel, fileDataReader, decoderRegistry);
-			attributes.add(messageAttribute);
-			attributesByName.put(messageAttribute.getAttributeDefinition().getName(), messageAttribute);
-		}
+		readAttributes(dis, fileDataReader, decoderRegistry, format);
 	}
 
 	public Message(DataInputStream dis, MessageModel model, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
 		this.messageModel = model;
-		String objectUuid = MessageUtils.readString(dis);
+		int marker = dis.readUnsignedByte();
+		MessageFormat format = MessageFormat.getByMarker(marker);
+		String objectUuid = readObjectUuid(dis, marker, format);
 		if (!model.getObjectUuid().equals(objectUuid)) {
 			throw new RuntimeException("Cannot parse message with wrong model:" + objectUuid + ", expected:" + messageModel.getObjectUuid());
 		}
-		short modelVersion = dis.readShort();
-		if (model.getModelVersion() != modelVersion) {
-			System.out.println("Wrong model version " + model + ", expected: " + model.getModelVersion());
-		}
-		int attributesCount = dis.readShort();
-		for (int i = 0; i < attributesCount; i++) {
-			MessageAttributeImpl messageAttribute = new MessageAttributeImpl(dis, messageModel, fileDataReader, decoderRegistry);
-			attributes.add(messageAttribute);
-			attributesByName.put(messageAttribute.getAttributeDefinition().getName(), messageAttribute);
-		}
+		short modelVersion = MessageUtils.readShort(dis, format);
+		checkModelVersion(model, modelVersion);
+		readAttributes(dis, fileDataReader, decoderRegistry, format);
 	}
 
 	public Message(byte[] bytes) throws IOException {
-		this(new DataInputStream(new ByteArrayInputStream(bytes)), null);
+		this(ByteBuffer.wrap(bytes), null);
 	}
 
 	public Message(byte[] bytes, FileDataReader fileDataReader) throws IOException {
-		this(new DataInputStream(new ByteArrayInputStream(bytes)), fileDataReader);
+		this(ByteBuffer.wrap(bytes), fileDataReader);
 	}
 
 	public Message(DataInputStream dis, FileDataReader fileDataReader) throws IOException {
-		String objectUuid = MessageUtils.readString(dis);
-		short modelVersion = dis.readShort();
+		int marker = dis.readUnsignedByte();
+		MessageFormat format = MessageFormat.getByMarker(marker);
+		String objectUuid = readObjectUuid(dis, marker, format);
+		short modelVersion = MessageUtils.readShort(dis, format);
 		messageModel = new MessageDefinition(objectUuid, null, false, modelVersion);
-		int attributesCount = dis.readShort();
+		readAttributes(dis, fileDataReader, null, format);
+	}
+
+	public Message(ByteBuffer buffer, ModelRegistry modelRegistry, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		MessageFormat format = readMessageFormat(buffer);
+		String objectUuid = MessageUtils.readString(buffer, format);
+		short modelVersion = MessageUtils.readShort(buffer, format);
+		this.messageModel = modelRegistry.getModel(objectUuid, modelVersion);
+		MessageCodec codec = messageModel != null ? modelRegistry.getMessageCodec(messageModel) : null;
+		if (codec != null) {
+			codec.readAttributes(this, buffer, fileDataReader, decoderRegistry, format);
+		} else {
+			readAttributes(buffer, fileDataReader, decoderRegistry, format);
+		}
+	}
+
+	public Message(ByteBuffer buffer, MessageModel model, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this(buffer, model, fileDataReader, decoderRegistry, false);
+	}
+
+	/**
+	 * In lazy mode only the attribute keys are indexed, values are decoded from the buffer when they are first accessed.
+	 * The buffer content must not change while the message is in use. As long as the message is not modified,
+	 * {@link #toBytes()} returns a copy of the original bytes without re-encoding them.
+	 */
+	public Message(ByteBuffer buffer, MessageModel model, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry, boolean lazy) throws IOException {
+		this.messageModel = model;
+		int start = buffer.position();
+		MessageFormat format = readHeader(buffer, model);
+		if (lazy) {
+			readLazyAttributes(buffer, new LazyMessageSource(buffer, fileDataReader, decoderRegistry, format));
+			encoding = new Encoding(buffer.slice(start, buffer.position() - start), format, 0);
+		} else {
+			readAttributes(buffer, fileDataReader, decoderRegistry, format);
+		}
+	}
+
+	/**
+	 * Decodes only the attributes selected by the projection, all other attributes are skipped without decoding them.
+	 */
+	public Message(ByteBuffer buffer, MessageModel model, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry, Projection projection) throws IOException {
+		this.messageModel = model;
+		MessageFormat format = readHeader(buffer, model);
+		int attributesCount = MessageUtils.readShort(buffer, format);
 		for (int i = 0; i < attributesCount; i++) {
-			MessageAttributeImpl messageAttribute = new MessageAttributeImpl(dis, messageModel, fileDataReader, null);
-			attributes.add(messageAttribute);
-			attributesByName.put(messageAttribute.getAttributeDefinition().getName(), messageAttribute);
+			int attributeStart = buffer.position();
+			AttributeType type = AttributeType.getById(buffer.get());
+			int key = MessageUtils.readShort(buffer, format);
+			AttributeDefinition definition = model.getAttributeDefinitionByKey(key);
+			if (definition == null ? !projection.contains(key) : !projection.contains(definition)) {
+				MessageUtils.skipValue(buffer, type, format);
+				continue;
+			}
+			MessageAttributeImpl messageAttribute;
+			Projection referenceProjection = definition != null && type == definition.getType() ? projection.getReferenceProjection(definition) : null;
+			if (referenceProjection != null && type.isReference()) {
+				messageAttribute = new MessageAttributeImpl(buffer, definition, fileDataReader, decoderRegistry, format, referenceProjection);
+			} else {
+				buffer.position(attributeStart);
+				messageAttribute = new MessageAttributeImpl(buffer, model, fileDataReader, decoderRegistry, format);
+			}
+			addDecodedAttribute(messageAttribute);
 		}
 	}
 
+	public static Message decode(byte[] bytes, MessageModel model, Projection projection) throws IOException {
+		return new Message(ByteBuffer.wrap(bytes), model, null, null, projection);
+	}
+
+	public static Message decode(ByteBuffer buffer, MessageModel model, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry, Projection projection) throws IOException {
+		return new Message(buffer, model, fileDataReader, decoderRegistry, projection);
+	}
+
+	public Message(ByteBuffer buffer, FileDataReader fileDataReader) throws IOException {
+		this(buffer, fileDataReader, false);
+	}
+
+	/**
+	 * Without a model all attributes are decoded directly. In lazy mode the message still keeps its source bytes so
+	 * that it can be written without re-encoding as long as it is not modified.
+	 */
+	public Message(ByteBuffer buffer, FileDataReader fileDataReader, boolean lazy) throws IOException {
+		int start = buffer.position();
+		MessageFormat format = readMessageFormat(buffer);
+		String objectUuid = MessageUtils.readString(buffer, format);
+		short modelVersion = MessageUtils.readShort(buffer, format);
+		messageModel = new MessageDefinition(objectUuid, null, false, modelVersion);
+		int attributesCount = MessageUtils.readShort(buffer, format);
+		for (int i = 0; i < attributesCount; i++) {
+			MessageAttributeImpl messageAttribute = new MessageAttributeImpl(buffer, messageModel, fileDataReader, null, format, lazy);
+			addDecodedAttribute(messageAttribute);
+		}
+		if (lazy) {
+			encoding = new Encoding(buffer.slice(start, buffer.position() - start), format, 0);
+		}
+	}
+
+	/**
+	 * Reads the format, object uuid and model version of an encoded message and checks that it was written with the
+	 * given model. The buffer is left at the attribute count.
+	 */
+	public static MessageFormat readHeader(ByteBuffer buffer, MessageModel model) {
+		MessageFormat format = readMessageFormat(buffer);
+		String objectUuid = MessageUtils.readString(buffer, format);
+		if (!model.getObjectUuid().equals(objectUuid)) {
+			throw new RuntimeException("Cannot parse message with wrong model:" + objectUuid + ", expected:" + model.getObjectUuid());
+		}
+		short modelVersion = MessageUtils.readShort(buffer, format);
+		checkModelVersion(model, modelVersion);
+		return format;
+	}
+
+	private static void checkModelVersion(MessageModel model, int modelVersion) {
+		if (model.getModelVersion() != modelVersion) {
+			LOGGER.warn("Wrong model version {} of {}, expected: {}", modelVersion, model.getObjectUuid(), model.getModelVersion());
+		}
+	}
+
+	private static String readObjectUuid(DataInputStream dis, int marker, MessageFormat format) throws IOException {
+		if (format.isCompact()) {
+			return MessageUtils.readString(dis, format);
+		}
+		int length = (marker << 24) | (dis.readUnsignedByte() << 16) | dis.readUnsignedShort();
+		return MessageUtils.readString(dis, length);
+	}
+
+	private void readAttributes(DataInputStream dis, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry, MessageFormat format) throws IOException {
+		int attributesCount = MessageUtils.readShort(dis, format);
+		for (int i = 0; i < attributesCount; i++) {
+			MessageAttributeImpl messageAttribute = new MessageAttributeImpl(dis, messageModel, fileDataReader, decoderRegistry, format);
+			addDecodedAttribute(messageAttribute);
+		}
+	}
+
+	private void readAttributes(ByteBuffer buffer, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry, MessageFormat format) throws IOException {
+		int attributesCount = MessageUtils.readShort(buffer, format);
+		for (int i = 0; i < attributesCount; i++) {
+			MessageAttributeImpl messageAttribute = new MessageAttributeImpl(buffer, messageModel, fileDataReader, decoderRegistry, format);
+			addDecodedAttribute(messageAttribute);
+		}
+	}
+
+	private void readLazyAttributes(ByteBuffer buffer, LazyMessageSource lazySource) throws IOException {
+		MessageFormat format = lazySource.getFormat();
+		int attributesCount = MessageUtils.readShort(buffer, format);
+		for (int i = 0; i < attributesCount; i++) {
+			int attributeStart = buffer.position();
+			AttributeType type = AttributeType.getById(buffer.get());
+			AttributeDefinition definition = messageModel.getAttributeDefinitionByKey(MessageUtils.readShort(buffer, format));
+			MessageAttributeImpl messageAttribute;
+			if (definition == null) {
+				buffer.position(attributeStart);
+				messageAttribute = new MessageAttributeImpl(buffer, messageModel, lazySource.getFileDataReader(), lazySource.getDecoderRegistry(), format, true);
+			} else if (type != definition.getType()) {
+				throw new RuntimeException("Message parsing error - property type mismatch: " + type + " <-> " + definition.getType());
+			} else {
+				messageAttribute = new MessageAttributeImpl(buffer, definition, lazySource);
+			}
+			addDecodedAttribute(messageAttribute);
+		}
+	}
+
+	/**
+	 * True if the encoding of this message is known, either from the bytes it was lazily decoded from or from a previous
+	 * {@link #toBytes()}, and neither this message nor any of its decoded nested messages has been modified since.
+	 * Arrays and bit sets of a mutable message may be changed in place, so a mutable message with a decoded array or
+	 * bit set is encoded again on every call.
+	 * Setters only drop the encoding of their own message, a change of a nested message invalidates the encodings of
+	 * its parents through this check. Encodings are stamped when they are cached, a nested message that is shared with
+	 * another parent may have been encoded again since, so its encoding must not be newer than that of the parent.
+	 */
+	boolean isEncodingCached() {
+		return isEncodingCached(Long.MAX_VALUE);
+	}
+
+	boolean isEncodingCached(long parentStamp) {
+		Encoding encoding = this.encoding;
+		return encoding != null && isEncodingValid(encoding, parentStamp);
+	}
+
+	private boolean isEncodingValid(Encoding encoding, long parentStamp) {
+		if (frozen) {
+			return true;
+		}
+		if (encoding.stamp() > parentStamp) {
+			return false;
+		}
+		for (MessageAttribute attribute : attributes) {
+			if (!(attribute instanceof MessageAttributeImpl attributeImpl) || !attributeImpl.isEncodingCached(encoding.stamp())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Encoding getCachedEncoding(MessageFormat format) {
+		Encoding encoding = this.encoding;
+		return encoding != null && encoding.format() == format && isEncodingValid(encoding, Long.MAX_VALUE) ? encoding : null;
+	}
+
+	/**
+	 * Keeps the encoded message at the current position of the buffer as encoding of this message and of all of its
+	 * decoded nested messages, the buffer is advanced over the message. The buffer must contain exactly what
+	 * {@link #write(ByteBuffer, MessageFormat)} wrote for this message.
+	 */
+	void cacheEncoding(ByteBuffer buffer, MessageFormat format, long stamp) {
+		int start = buffer.position();
+		readMessageFormat(buffer);
+		MessageUtils.readString(buffer, format);
+		MessageUtils.readShort(buffer, format);
+		MessageUtils.readShort(buffer, format);
+		for (MessageAttribute attribute : attributes) {
+			buffer.get();
+			MessageUtils.readShort(buffer, format);
+			((MessageAttributeImpl) attribute).cacheEncoding(buffer, format, stamp);
+		}
+		encoding = new Encoding(buffer.slice(start, buffer.position() - start), format, stamp);
+	}
+
+	/**
+	 * Returns a copy of the encoding, so that neither the source bytes of a lazily decoded message nor a cached
+	 * encoding are shared with the caller.
+	 */
+	private static byte[] getEncodedBytes(ByteBuffer encodedMessage) {
+		byte[] bytes = new byte[encodedMessage.remaining()];
+		encodedMessage.get(encodedMessage.position(), bytes);
+		return bytes;
+	}
+
 	public Message(String xml, MessageModel model, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry) throws Exception {
 		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 		DocumentBuilder builder = factory.newDocumentBuilder();
@@ -127,8 +361,7 @@ public class Message implements MessageRecord {
 			Element childElement = XmlUtils.readChildElement(xmlNode, definition.getName());
 			if (childElement != null) {
 				MessageAttributeImpl messageAttribute = new MessageAttributeImpl(childElement, definition, fileDataReader, decoderRegistry);
-				attributes.add(messageAttribute);
-				attributesByName.put(messageAttribute.getAttributeDefinition().getName(), messageAttribute);
+				addDecodedAttribute(messageAttribute);
 			}
 		}
 	}
@@ -139,14 +372,29 @@ public class Message implements MessageRecord {
 			Element childElement = XmlUtils.readChildElement(xmlNode, definition.getName());
 			if (childElement != null) {
 				MessageAttributeImpl messageAttribute = new MessageAttributeImpl(childElement, definition, fileDataReader, decoderRegistry);
-				attributes.add(messageAttribute);
-				attributesByName.put(messageAttribute.getAttributeDefinition().getName(), messageAttribute);
+				addDecodedAttribute(messageAttribute);
 			}
 		}
 	}
 
 	public static String readMessageUuid(byte[] bytes) throws IOException {
-		return MessageUtils.readString(bytes, 0);
+		MessageFormat format = readMessageFormat(bytes);
+		return MessageUtils.readString(bytes, format.isCompact() ? 1 : 0, format);
+	}
+
+	public static MessageFormat readMessageFormat(byte[] bytes) {
+		return MessageFormat.getByMarker(bytes[0]);
+	}
+
+	/**
+	 * Reads the format marker of the message at the current position and skips it if the message is compact.
+	 */
+	public static MessageFormat readMessageFormat(ByteBuffer buffer) {
+		MessageFormat format = MessageFormat.getByMarker(buffer.get(buffer.position()));
+		if (format.isCompact()) {
+			buffer.get();
+		}
+		return format;
 	}
 
 	public static Message readXml(String xml, MessageModel model, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry) throws Exception {
@@ -247,14 +495,118 @@ public class Message implements MessageRecord {
 	}
 
 	public void write(DataOutputStream dos, FileDataWriter fileDataWriter, boolean updateFileData) throws IOException {
-		MessageUtils.writeString(dos, messageModel.getObjectUuid());
-		dos.writeShort(messageModel.getModelVersion());
-		dos.writeShort(attributes.size());
+		write(dos, fileDataWriter, updateFileData, MessageFormat.FIXED_WIDTH);
+	}
+
+	public void write(DataOutputStream dos, FileDataWriter fileDataWriter, boolean updateFileData, MessageFormat format) throws IOException {
+		if (fileDataWriter == null) {
+			dos.write(toBytes(null, false, format));
+			return;
+		}
+		fileDataWriter = CachedFileDataWriter.of(fileDataWriter);
+		writeHeader(dos, attributes.size(), format);
+		for (MessageAttribute field : attributes) {
+			field.write(dos, fileDataWriter, updateFileData && !frozen, format);
+		}
+	}
+
+	/**
+	 * Writes the message without a file data writer. The buffer must be big-endian and have at least
+	 * {@link #getSerializedSize(MessageFormat)} bytes remaining.
+	 */
+	public void write(ByteBuffer buffer) {
+		write(buffer, MessageFormat.FIXED_WIDTH);
+	}
+
+	public void write(ByteBuffer buffer, MessageFormat format) {
+		Encoding encoding = getCachedEncoding(format);
+		if (encoding != null) {
+			buffer.put(encoding.buffer().duplicate());
+			return;
+		}
+		writeHeader(buffer, attributes.size(), format);
+		writeAttributes(buffer, format);
+	}
+
+	/**
+	 * Writes the format marker, model uuid, model version and attribute count that precede the attributes, for
+	 * writers that encode the attributes themselves.
+	 */
+	public void writeHeader(DataOutputStream dos, int attributeCount, MessageFormat format) throws IOException {
+		if (format.isCompact()) {
+			dos.writeByte(format.getMarker());
+		}
+		MessageUtils.writeString(dos, messageModel.getObjectUuid(), format);
+		MessageUtils.writeShort(dos, messageModel.getModelVersion(), format);
+		MessageUtils.writeShort(dos, attributeCount, format);
+	}
+
+	public void writeHeader(ByteBuffer buffer, int attributeCount, MessageFormat format) {
+		MessageUtils.writeMessageHeader(buffer, messageModel, attributeCount, format);
+	}
+
+	/**
+	 * Writes all attributes in their order, generated messages override this with the code of their codec.
+	 */
+	protected void writeAttributes(ByteBuffer buffer, MessageFormat format) {
 		for (MessageAttribute field : attributes) {
-			field.write(dos, fileDataWriter, updateFileData);
+			field.write(buffer, format);
 		}
 	}
 
+	/**
+	 * Exact number of bytes {@link #toBytes()} produces, including all referenced and generic messages.
+	 */
+	public int getSerializedSize() {
+		return getSerializedSize(MessageFormat.FIXED_WIDTH);
+	}
+
+	public int getSerializedSize(MessageFormat format) {
+		Encoding encoding = getCachedEncoding(format);
+		int size;
+		if (encoding != null) {
+			size = encoding.buffer().remaining();
+		} else {
+			size = getHeaderSize(format);
+			for (MessageAttribute field : attributes) {
+				size += field.getSerializedSize(format);
+			}
+		}
+		serializedSize = new SerializedSize(format, size);
+		return size;
+	}
+
+	/**
+	 * Returns the size of the last {@link #getSerializedSize(MessageFormat)} call for the format, which sized all
+	 * nested messages as well. A nested message that has been changed since is detected by the writer, which then
+	 * fails with a size mismatch.
+	 */
+	@Override
+	public int getWrittenSize(MessageFormat format) {
+		SerializedSize serializedSize = this.serializedSize;
+		return serializedSize != null && serializedSize.format() == format ? serializedSize.size() : getSerializedSize(format);
+	}
+
+	/**
+	 * Exact number of bytes {@link #write(DataOutputStream, FileDataWriter, boolean, MessageFormat)} produces with the
+	 * file data writer. The writer is called for the file data of the message and must return the same file data for
+	 * repeated calls, see {@link CachedFileDataWriter}.
+	 */
+	public int getSerializedSize(MessageFormat format, FileDataWriter fileDataWriter) throws IOException {
+		if (fileDataWriter == null) {
+			return getSerializedSize(format);
+		}
+		int size = getHeaderSize(format);
+		for (MessageAttribute field : attributes) {
+			size += field instanceof MessageAttributeImpl attribute ? attribute.getSerializedSize(format, fileDataWriter) : field.getSerializedSize(format);
+		}
+		return size;
+	}
+
+	private int getHeaderSize(MessageFormat format) {
+		return MessageUtils.getMessageHeaderSize(messageModel, attributes.size(), format);
+	}
+
 	@Override
 	public byte[] toBytes() throws IOException {
 		return toBytes(null);
@@ -267,11 +619,31 @@ public class Message implements MessageRecord {
 
 	@Override
 	public byte[] toBytes(FileDataWriter fileDataWriter, boolean updateFileData) throws IOException {
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		DataOutputStream dos = new DataOutputStream(bos);
-		write(dos, fileDataWriter, updateFileData);
-		dos.close();
-		return bos.toByteArray();
+		return toBytes(fileDataWriter, updateFileData, MessageFormat.FIXED_WIDTH);
+	}
+
+	/**
+	 * Without a file data writer the message keeps its encoding, so further calls and the encoding of parents that
+	 * reference this message only copy the cached bytes until this message or one of its nested messages is modified,
+	 * see {@link #isEncodingCached()}.
+	 */
+	public byte[] toBytes(FileDataWriter fileDataWriter, boolean updateFileData, MessageFormat format) throws IOException {
+		Encoding encoding = fileDataWriter == null ? getCachedEncoding(format) : null;
+		if (encoding != null) {
+			return getEncodedBytes(encoding.buffer());
+		}
+		if (fileDataWriter == null) {
+			byte[] bytes = new byte[getSerializedSize(format)];
+			write(ByteBuffer.wrap(bytes), format);
+			cacheEncoding(ByteBuffer.wrap(bytes).asReadOnlyBuffer(), format, ENCODING_STAMPS.incrementAndGet());
+			return bytes.clone();
+		}
+		try (MessageEncoder encoder = MessageEncoder.acquire()) {
+			ByteBuffer encoded = encoder.encode(this, fileDataWriter, updateFileData, format);
+			byte[] bytes = new byte[encoded.remaining()];
+			encoded.get(bytes);
+			return bytes;
+		}
 	}
 
 	@Override
@@ -361,37 +733,37 @@ public class Message implements MessageRecord {
 	}
 
 	public Message setBooleanAttribute(String name, boolean value) {
-		setAttribute(name, value);
+		setPrimitiveAttribute(name, value ? 1 : 0, AttributeType.BOOLEAN);
 		return this;
 	}
 
 
 	public Message setByteAttribute(String name, byte value) {
-		setAttribute(name, value);
+		setPrimitiveAttribute(name, value, AttributeType.BYTE);
 		return this;
 	}
 
 
 	public Message setIntAttribute(String name, int value) {
-		setAttribute(name, value);
+		setPrimitiveAttribute(name, value, AttributeType.INT);
 		return this;
 	}
 
 
 	public Message setLongAttribute(String name, long value) {
-		setAttribute(name, value);
+		setPrimitiveAttribute(name, value, AttributeType.LONG);
 		return this;
 	}
 
 
 	public Message setFloatAttribute(String name, float value) {
-		setAttribute(name, value);
+		setPrimitiveAttribute(name, Float.floatToRawIntBits(value), AttributeType.FLOAT);
 		return this;
 	}
 
 
 	public Message setDoubleAttribute(String name, double value) {
-		setAttribute(name, value);
+		setPrimitiveAttribute(name, Double.doubleToRawLongBits(value), AttributeType.DOUBLE);
 		return this;
 	}
 
@@ -464,6 +836,11 @@ public class Message implements MessageRecord {
 		return this;
 	}
 
+	/**
+	 * Timestamps are stored as they are encoded, in epoch seconds for {@link AttributeType#TIMESTAMP_32} and in epoch
+	 * milliseconds for {@link AttributeType#TIMESTAMP_64} attributes. The value reads back truncated to that precision
+	 * right away, and {@link Instant#EPOCH}, which is encoded like a missing value, reads back as null.
+	 */
 	public Message setTimestampAttribute(String name, Instant value) {
 		setAttribute(name, value);
 		return this;
@@ -774,7 +1151,7 @@ public class Message implements MessageRecord {
 	}
 
 	public Message setRecordId(int id) {
-		setAttribute(MessageDefinition.META_RECORD_ID, id);
+		setIntAttribute(MessageDefinition.META_RECORD_ID, id);
 		return this;
 	}
 
@@ -816,7 +1193,7 @@ public class Message implements MessageRecord {
 	}
 
 	public Message setRecordCreatedBy(int userId) {
-		setAttribute(MessageDefinition.META_CREATED_BY, userId);
+		setIntAttribute(MessageDefinition.META_CREATED_BY, userId);
 		return this;
 	}
 
@@ -830,12 +1207,13 @@ public class Message implements MessageRecord {
 	}
 
 	public Message setRecordModifiedBy(int userId) {
-		setAttribute(MessageDefinition.META_MODIFIED_BY, userId);
+		setIntAttribute(MessageDefinition.META_MODIFIED_BY, userId);
 		return this;
 	}
 
 
 	public void addReference(String name, Message message) {
+		checkNotFrozen();
 		AttributeDefinition attributeDefinition = messageModel.getAttributeDefinitionByName(name);
 		if (attributeDefinition == null) {
 			throw new RuntimeException("Message model does not contain a field with name:" + name);
@@ -843,6 +1221,7 @@ public class Message implements MessageRecord {
 		if (attributeDefinition.getType() == AttributeType.OBJECT_SINGLE_REFERENCE) {
 			setAttribute(name, message);
 		} else if (attributeDefinition.getType() == AttributeType.OBJECT_MULTI_REFERENCE) {
+			encoding = null;
 			MessageAttribute messageAttribute = getAttribute(name);
 			if (messageAttribute == null) {
 				List<Message> messages = new ArrayList<>();
@@ -855,42 +1234,171 @@ public class Message implements MessageRecord {
 		}
 	}
 
-	public void setAttribute(String name, Object value) {
-		if (value == null && isEmpty(name)) {
+	/**
+	 * Appends an attribute that has been decoded by a generated codec, the attribute must belong to the model of this message.
+	 */
+	public void addDecodedAttribute(MessageAttribute attribute) {
+		checkNotFrozen();
+		attributes.add(attribute);
+		int ordinal = getOrdinal(attribute.getAttributeDefinition());
+		if (ordinal < 0) {
+			detachedAttributes = true;
 			return;
 		}
+		if (ordinal >= attributePositions.length) {
+			attributePositions = Arrays.copyOf(attributePositions, Math.max(ordinal + 1, messageModel.getAttributeDefinitions().size()));
+		}
+		attributePositions[ordinal] = attributes.size();
+	}
+
+	public void setAttribute(String name, Object value) {
 		AttributeDefinition attributeDefinition = messageModel.getAttributeDefinitionByName(name);
 		if (attributeDefinition == null) {
+			if (value == null) {
+				return;
+			}
 			throw new RuntimeException("Message model does not contain a field with name:" + name);
 		}
-		MessageAttribute existingField = attributesByName.get(name);
-		if (existingField != null) {
-			attributes.remove(existingField);
+		setAttribute(attributeDefinition, value);
+	}
+
+	public void setAttributeByKey(int key, Object value) {
+		AttributeDefinition attributeDefinition = messageModel.getAttributeDefinitionByKey(key);
+		if (attributeDefinition == null) {
+			throw new RuntimeException("Message model does not contain a field with key:" + key);
+		}
+		setAttribute(attributeDefinition, value);
+	}
+
+	public void setAttributeByOrdinal(int ordinal, Object value) {
+		setAttribute(messageModel.getAttributeDefinitions().get(ordinal), value);
+	}
+
+	/**
+	 * Sets, replaces or with a null value removes the attribute. An existing attribute keeps its position.
+	 */
+	public void setAttribute(AttributeDefinition attributeDefinition, Object value) {
+		checkNotFrozen();
+		int ordinal = getOrdinal(attributeDefinition);
+		if (ordinal < 0) {
+			throw new RuntimeException("Message model does not contain the field:" + attributeDefinition.getName() + "->" + attributeDefinition.getKey());
+		}
+		int position = getPosition(ordinal);
+		if (position < 0) {
 			if (value != null) {
-				MessageAttribute messageAttribute = new MessageAttributeImpl(attributeDefinition, value);
-				attributes.add(messageAttribute);
-				attributesByName.put(name, messageAttribute);
+				encoding = null;
+				addDecodedAttribute(new MessageAttributeImpl(attributeDefinition, value));
+			}
+		} else if (value == null) {
+			encoding = null;
+			removeAttribute(position);
+		} else {
+			encoding = null;
+			if (attributes.get(position) instanceof MessageAttributeImpl attribute) {
+				attribute.setValue(value);
 			} else {
-				attributesByName.remove(name);
+				attributes.set(position, new MessageAttributeImpl(attributeDefinition, value));
 			}
-		} else if (value != null) {
-			MessageAttribute messageAttribute = new MessageAttributeImpl(attributeDefinition, value);
-			attributes.add(messageAttribute);
-			attributesByName.put(name, messageAttribute);
+		}
+	}
+
+	/**
+	 * Sets the value of a primitive attribute without boxing it, see {@link MessageAttributeImpl#getBits()}. The bits
+	 * are only meaningful for the type of the setter, int values can also be set on enum attributes.
+	 */
+	private void setPrimitiveAttribute(String name, long bits, AttributeType valueType) {
+		checkNotFrozen();
+		AttributeDefinition attributeDefinition = messageModel.getAttributeDefinitionByName(name);
+		if (attributeDefinition == null) {
+			throw new RuntimeException("Message model does not contain a field with name:" + name);
+		}
+		AttributeType type = attributeDefinition.getType();
+		if (type != valueType && !(type == AttributeType.ENUM && valueType == AttributeType.INT)) {
+			throw new ClassCastException("Cannot set " + valueType + " value on field " + name + " of type:" + type);
+		}
+		int position = getPosition(getOrdinal(attributeDefinition));
+		encoding = null;
+		if (position < 0) {
+			addDecodedAttribute(MessageAttributeImpl.ofBits(attributeDefinition, bits));
+		} else if (attributes.get(position) instanceof MessageAttributeImpl attribute) {
+			attribute.setBits(bits);
+		} else {
+			attributes.set(position, MessageAttributeImpl.ofBits(attributeDefinition, bits));
 		}
 	}
 
 	public void removeField(AttributeDefinition attributeDefinition) {
-		MessageAttribute existingField = attributesByName.get(attributeDefinition);
-		if (existingField != null) {
-			attributes.remove(existingField);
-			attributesByName.remove(attributeDefinition);
+		checkNotFrozen();
+		int ordinal = getOrdinal(attributeDefinition);
+		int position = ordinal >= 0 ? getPosition(ordinal) : attributes.indexOf(findDetachedAttribute(attributeDefinition.getName(), attributeDefinition.getKey()));
+		if (position >= 0) {
+			encoding = null;
+			removeAttribute(position);
 		}
 	}
 
 	@Override
 	public MessageAttribute getAttribute(String name) {
-		return attributesByName.get(name);
+		AttributeDefinition attributeDefinition = messageModel != null ? messageModel.getAttributeDefinitionByName(name) : null;
+		MessageAttribute attribute = attributeDefinition != null ? getAttribute(attributeDefinition) : null;
+		if (attribute == null && detachedAttributes) {
+			return findDetachedAttribute(name, -1);
+		}
+		return attribute;
+	}
+
+	public MessageAttribute getAttributeByKey(int key) {
+		AttributeDefinition attributeDefinition = messageModel != null ? messageModel.getAttributeDefinitionByKey(key) : null;
+		MessageAttribute attribute = attributeDefinition != null ? getAttribute(attributeDefinition) : null;
+		if (attribute == null && detachedAttributes) {
+			return findDetachedAttribute(null, key);
+		}
+		return attribute;
+	}
+
+	public MessageAttribute getAttributeByOrdinal(int ordinal) {
+		int position = getPosition(ordinal);
+		return position >= 0 ? attributes.get(position) : null;
+	}
+
+	public MessageAttribute getAttribute(AttributeDefinition attributeDefinition) {
+		int ordinal = getOrdinal(attributeDefinition);
+		if (ordinal < 0) {
+			return detachedAttributes ? findDetachedAttribute(attributeDefinition.getName(), attributeDefinition.getKey()) : null;
+		}
+		return getAttributeByOrdinal(ordinal);
+	}
+
+	private int getOrdinal(AttributeDefinition attributeDefinition) {
+		return attributeDefinition.getParent() == messageModel ? attributeDefinition.getOrdinal() : -1;
+	}
+
+	private int getPosition(int ordinal) {
+		return ordinal >= 0 && ordinal < attributePositions.length ? attributePositions[ordinal] - 1 : -1;
+	}
+
+	/**
+	 * Finds the last attribute that is not part of the model, by name or if the name is null by key.
+	 */
+	private MessageAttribute findDetachedAttribute(String name, int key) {
+		for (int i = attributes.size() - 1; i >= 0; i--) {
+			AttributeDefinition definition = attributes.get(i).getAttributeDefinition();
+			if (getOrdinal(definition) < 0 && (name != null ? name.equals(definition.getName()) : key == definition.getKey())) {
+				return attributes.get(i);
+			}
+		}
+		return null;
+	}
+
+	private void removeAttribute(int position) {
+		attributes.remove(position);
+		for (int i = 0; i < attributePositions.length; i++) {
+			if (attributePositions[i] == position + 1) {
+				attributePositions[i] = 0;
+			} else if (attributePositions[i] > position + 1) {
+				attributePositions[i]--;
+			}
+		}
 	}
 
 	protected String explain(int level) {
@@ -909,16 +1417,197 @@ public class Message implements MessageRecord {
 		return explain(0);
 	}
 
+	/**
+	 * Makes this message and all of its nested messages immutable. Lazily decoded attributes are decoded, lists of
+	 * references become unmodifiable and the content hash is computed, so a frozen message can be read by several
+	 * threads without copying it. Setters of a frozen message throw an exception, changed copies are created with
+	 * {@link #with(AttributeDefinition, Object)}. Arrays and bit sets of a frozen message must not be modified.
+	 * <p>
+	 * The fields of a message are not final, so other threads only see the frozen state if the message is published
+	 * safely after this call, e.g. through a volatile or final field, a concurrent collection or a lock. Passing a
+	 * message through a data race may expose a partially frozen message.
+	 */
+	public Message freeze() {
+		if (!frozen) {
+			for (MessageAttribute attribute : attributes) {
+				((MessageAttributeImpl) attribute).freeze();
+			}
+			if (encoding != null && !isEncodingCached()) {
+				encoding = null;
+			}
+			contentHash = ContentHash.of(this);
+			frozen = true;
+		}
+		return this;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * See {@link #with(AttributeDefinition, Object)}.
+	 */
+	public Message with(String name, Object value) {
+		AttributeDefinition attributeDefinition = messageModel.getAttributeDefinitionByName(name);
+		if (attributeDefinition == null) {
+			throw new RuntimeException("Message model does not contain a field with name:" + name);
+		}
+		return with(attributeDefinition, value);
+	}
+
+	/**
+	 * Returns a frozen copy without the attribute, see {@link #with(AttributeDefinition, Object)}.
+	 */
+	public Message without(String name) {
+		return with(name, null);
+	}
+
+	/**
+	 * Returns a frozen copy of this message with the attribute set to the value, or removed if the value is null. This
+	 * message is not changed. The copy of a frozen message shares all other attributes and nested messages with it,
+	 * the copy of a mutable message shares only its frozen nested messages and copies all mutable parts. A mutable
+	 * message passed as value is copied as well.
+	 */
+	public Message with(AttributeDefinition attributeDefinition, Object value) {
+		int ordinal = getOrdinal(attributeDefinition);
+		if (ordinal < 0) {
+			throw new RuntimeException("Message model does not contain the field:" + attributeDefinition.getName() + "->" + attributeDefinition.getKey());
+		}
+		Message message = copy();
+		if (!frozen) {
+			message.copyAttributes();
+		}
+		message.replaceAttribute(attributeDefinition, value != null ? new MessageAttributeImpl(attributeDefinition, value).frozenCopy() : null);
+		return message.freeze();
+	}
+
+	/**
+	 * Returns this message if it is frozen, otherwise a frozen deep copy that shares only the frozen nested messages.
+	 */
+	Message frozenCopy() {
+		if (frozen) {
+			return this;
+		}
+		Message message = copy();
+		message.copyAttributes();
+		return message.freeze();
+	}
+
+	private void copyAttributes() {
+		attributes.replaceAll(attribute -> ((MessageAttributeImpl) attribute).frozenCopy());
+	}
+
+	/**
+	 * Mutable copy of the same class that shares the attributes of this message, the shared attributes are replaced
+	 * and never changed in place.
+	 */
+	Message copy() {
+		try {
+			Message message = (Message) super.clone();
+			message.attributes = new ArrayList<>(attributes);
+			message.attributePositions = attributePositions.clone();
+			message.encoding = null;
+			message.frozen = false;
+			return message;
+		} catch (CloneNotSupportedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Sets or replaces the attribute object, or removes the attribute of the definition if the attribute is null.
+	 */
+	void replaceAttribute(AttributeDefinition attributeDefinition, MessageAttribute attribute) {
+		checkNotFrozen();
+		int ordinal = getOrdinal(attributeDefinition);
+		if (ordinal < 0) {
+			throw new RuntimeException("Message model does not contain the field:" + attributeDefinition.getName() + "->" + attributeDefinition.getKey());
+		}
+		int position = getPosition(ordinal);
+		encoding = null;
+		if (attribute == null) {
+			if (position >= 0) {
+				removeAttribute(position);
+			}
+		} else if (position < 0) {
+			addDecodedAttribute(attribute);
+		} else {
+			attributes.set(position, attribute);
+		}
+	}
+
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new RuntimeException("Message is frozen:" + messageModel.getName());
+		}
+	}
+
+	/**
+	 * 64 bit hash of the content of this message, the same as {@link #contentHash(byte[])} of its encoded bytes in any
+	 * format. Messages that are equal by content have the same hash, the order of the attributes does not matter.
+	 */
+	public long contentHash() {
+		return frozen ? contentHash : ContentHash.of(this);
+	}
+
+	/**
+	 * Content hash of an encoded message, computed without decoding it.
+	 */
+	public static long contentHash(byte[] bytes) {
+		return ContentHash.of(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * Content hash of the encoded message at the current position of the buffer, the buffer is advanced over the
+	 * message.
+	 */
+	public static long contentHash(ByteBuffer buffer) {
+		return ContentHash.of(buffer);
+	}
+
+	/**
+	 * Compares two messages by model and attribute values regardless of their class and of the order of their
+	 * attributes.
+	 */
+	public static boolean contentEquals(Message message, Message otherMessage) {
+		if (message == otherMessage) {
+			return true;
+		}
+		if (message == null || otherMessage == null || message.attributes.size() != otherMessage.attributes.size()
+				|| !message.messageModel.getObjectUuid().equals(otherMessage.messageModel.getObjectUuid())) {
+			return false;
+		}
+		for (MessageAttribute attribute : message.attributes) {
+			MessageAttribute otherAttribute = otherMessage.getAttributeByKey(attribute.getAttributeDefinition().getKey());
+			if (otherAttribute == null || !((MessageAttributeImpl) attribute).contentEquals((MessageAttributeImpl) otherAttribute)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
-		Message message = (Message) o;
-		return toString().equals(message.toString());
+		return contentEquals(this, (Message) o);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(messageModel, attributes, attributesByName);
+		return Long.hashCode(contentHash());
+	}
+
+	/**
+	 * Encoded form of a message, replaced as a whole so that frozen messages can cache it while they are shared.
+	 */
+	private record Encoding(ByteBuffer buffer, MessageFormat format, long stamp) {
+	}
+
+	/**
+	 * Size computed by the last {@link #getSerializedSize(MessageFormat)}, replaced as a whole like the encoding.
+	 */
+	private record SerializedSize(MessageFormat format, int size) {
 	}
 }
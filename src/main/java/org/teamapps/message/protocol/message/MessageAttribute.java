@@ -25,6 +25,7 @@ import org.teamapps.message.protocol.model.AttributeDefinition;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -78,6 +79,10 @@ public interface MessageAttribute {
 
 	String[] getStringArrayAttribute();
 
+	/**
+	 * Returns the timestamp truncated to the precision of the attribute type, null for a missing value and for
+	 * {@link Instant#EPOCH}, see {@link Message#setTimestampAttribute(String, Instant)}.
+	 */
 	Instant getTimestampAttribute();
 
 	LocalDateTime getDateTimeAttribute();
@@ -90,7 +95,22 @@ public interface MessageAttribute {
 
 	String getAsString();
 
-	void write(DataOutputStream dos, FileDataWriter fileDataWriter, boolean updateFileData) throws IOException;
+	default void write(DataOutputStream dos, FileDataWriter fileDataWriter, boolean updateFileData) throws IOException {
+		write(dos, fileDataWriter, updateFileData, MessageFormat.FIXED_WIDTH);
+	}
+
+	void write(DataOutputStream dos, FileDataWriter fileDataWriter, boolean updateFileData, MessageFormat format) throws IOException;
+
+	/**
+	 * Writes the attribute without a file data writer. The buffer must have at least {@link #getSerializedSize(MessageFormat)} bytes remaining.
+	 */
+	void write(ByteBuffer buffer, MessageFormat format);
+
+	default int getSerializedSize() {
+		return getSerializedSize(MessageFormat.FIXED_WIDTH);
+	}
+
+	int getSerializedSize(MessageFormat format);
 
 	byte[] toBytes() throws IOException;
 
@@ -98,5 +118,7 @@ public interface MessageAttribute {
 
 	byte[] toBytes(FileDataWriter fileDataWriter, boolean updateFileData) throws IOException;
 
+	byte[] toBytes(FileDataWriter fileDataWriter, boolean updateFileData, MessageFormat format) throws IOException;
+
 	String explain(int level);
 }
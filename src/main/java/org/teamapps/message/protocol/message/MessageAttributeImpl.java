@@ -19,35 +19,90 @@
  */
 package org.teamapps.message.protocol.message;
 
+import org.teamapps.message.protocol.file.CachedFileDataWriter;
 import org.teamapps.message.protocol.file.FileData;
 import org.teamapps.message.protocol.file.FileDataReader;
 import org.teamapps.message.protocol.file.FileDataWriter;
 import org.teamapps.message.protocol.model.*;
+import org.teamapps.message.protocol.utils.MessageEncoder;
 import org.teamapps.message.protocol.utils.MessageUtils;
 import org.teamapps.message.protocol.xml.XmlUtils;
 import org.teamapps.message.protocol.xml.XmlNode;
 import org.w3c.dom.Element;
 
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 public class MessageAttributeImpl implements MessageAttribute {
 
 	private final AttributeDefinition attributeDefinition;
 	private Object value;
+	private long bits;
+	private LazyMessageSource lazySource;
+	private int valueOffset;
+	private boolean decoded;
+	private Message[] encodedReferences;
 
 	public MessageAttributeImpl(AttributeDefinition attributeDefinition, Object value) {
 		this.attributeDefinition = attributeDefinition;
-		this.value = value;
+		setDecodedValue(value);
+	}
+
+	/**
+	 * Creates an attribute of a {@link AttributeType#isPrimitive() primitive} type from the bits of its value, see
+	 * {@link #getBits()}.
+	 */
+	private MessageAttributeImpl(AttributeDefinition attributeDefinition, long bits) {
+		this.attributeDefinition = attributeDefinition;
+		this.bits = bits;
+	}
+
+	public static MessageAttributeImpl ofBoolean(AttributeDefinition attributeDefinition, boolean value) {
+		return new MessageAttributeImpl(attributeDefinition, value ? 1L : 0L);
+	}
+
+	public static MessageAttributeImpl ofByte(AttributeDefinition attributeDefinition, byte value) {
+		return new MessageAttributeImpl(attributeDefinition, (long) value);
+	}
+
+	public static MessageAttributeImpl ofInt(AttributeDefinition attributeDefinition, int value) {
+		return new MessageAttributeImpl(attributeDefinition, (long) value);
+	}
+
+	public static MessageAttributeImpl ofLong(AttributeDefinition attributeDefinition, long value) {
+		return new MessageAttributeImpl(attributeDefinition, value);
+	}
+
+	public static MessageAttributeImpl ofFloat(AttributeDefinition attributeDefinition, float value) {
+		return new MessageAttributeImpl(attributeDefinition, (long) Float.floatToRawIntBits(value));
+	}
+
+	public static MessageAttributeImpl ofDouble(AttributeDefinition attributeDefinition, double value) {
+		return new MessageAttributeImpl(attributeDefinition, Double.doubleToRawLongBits(value));
+	}
+
+	/**
+	 * Creates a timestamp attribute from its encoded value, seconds for {@link AttributeType#TIMESTAMP_32} and
+	 * milliseconds for {@link AttributeType#TIMESTAMP_64}. Zero stands for no timestamp.
+	 */
+	public static MessageAttributeImpl ofTimestamp(AttributeDefinition attributeDefinition, long epochValue) {
+		return new MessageAttributeImpl(attributeDefinition, epochValue);
+	}
+
+	static MessageAttributeImpl ofBits(AttributeDefinition attributeDefinition, long bits) {
+		return new MessageAttributeImpl(attributeDefinition, bits);
 	}
 
 	public MessageAttributeImpl(MessageAttributeImpl attribute, AttributeDefinition remappedDefinition, ModelCollection modelCollection) {
@@ -56,37 +111,45 @@ public class MessageAttributeImpl implements MessageAttribute {
 			MessageModel referencedObjectDefinition = attributeDefinition.getReferencedObject();
 			PojoObjectDecoder<? extends Message> messageDecoder = modelCollection.getMessageDecoder(referencedObjectDefinition.getObjectUuid());
 			if (attributeDefinition.isMultiReference()) {
-				List<Message> messages = (List<Message>) attribute.value;
+				List<Message> messages = (List<Message>) attribute.getValue();
 				List<Message> remappedMessages = new ArrayList<>();
 				for (Message message : messages) {
 					remappedMessages.add(messageDecoder.remap(message));
 				}
 				this.value = remappedMessages;
 			} else {
-				Message message = (Message) attribute.value;
+				Message message = (Message) attribute.getValue();
 				this.value = messageDecoder.remap(message);
 			}
+		} else if (attributeDefinition.getType().isPrimitive() && attributeDefinition.getType() == attribute.getAttributeDefinition().getType()) {
+			this.bits = attribute.getBits();
 		} else {
-			this.value = attribute.value;
+			setDecodedValue(attribute.getValue());
 		}
 	}
 
 	public MessageAttributeImpl(DataInputStream dis, MessageModel model, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		this(dis, model, fileDataReader, decoderRegistry, MessageFormat.FIXED_WIDTH);
+	}
+
+	public MessageAttributeImpl(DataInputStream dis, MessageModel model, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry, MessageFormat format) throws IOException {
 		AttributeType type = AttributeType.getById(dis.readByte());
-		int key = dis.readShort();
+		int key = MessageUtils.readShort(dis, format);
 		AttributeDefinition modelDef = model == null ? null : model.getAttributeDefinitionByKey(key);
 		if (modelDef == null) {
 			if (type.isReference()) {
 				if (type == AttributeType.OBJECT_SINGLE_REFERENCE) {
+					MessageUtils.skipMessageFrameLength(dis, format);
 					Message message = new Message(dis, fileDataReader);
 					MessageModel definition = message.getModel();
 					this.attributeDefinition = new AbstractAttributeDefinition(model, null, key, null, definition, false);
 					value = message;
 				} else {
 					List<Message> messages = new ArrayList<>();
-					int messageCount = dis.readInt();
+					int messageCount = MessageUtils.readReferenceCount(dis, format);
 					MessageModel definition = null;
 					for (int i = 0; i < messageCount; i++) {
+						MessageUtils.skipMessageFrameLength(dis, format);
 						Message message = new Message(dis, fileDataReader);
 						if (definition == null) {
 							definition = message.getModel();
@@ -98,7 +161,7 @@ public class MessageAttributeImpl implements MessageAttribute {
 				}
 			} else {
 				this.attributeDefinition = new AbstractAttributeDefinition(model, null, key, type, null);
-				this.value = readValue(dis, attributeDefinition.getType(), fileDataReader);
+				decodeValue(dis, fileDataReader, format);
 			}
 		} else {
 			this.attributeDefinition = modelDef;
@@ -108,6 +171,7 @@ public class MessageAttributeImpl implements MessageAttribute {
 			if (attributeDefinition.getType().isReference()) {
 				if (type == AttributeType.OBJECT_SINGLE_REFERENCE) {
 					MessageModel referencedObjectDefinition = attributeDefinition.getReferencedObject();
+					MessageUtils.skipMessageFrameLength(dis, format);
 					if (decoderRegistry != null && decoderRegistry.containsDecoder(referencedObjectDefinition.getObjectUuid())) {
 						PojoObjectDecoder<? extends Message> messageDecoder = decoderRegistry.getMessageDecoder(referencedObjectDefinition.getObjectUuid());
 						value = messageDecoder.decode(dis, fileDataReader);
@@ -117,22 +181,292 @@ public class MessageAttributeImpl implements MessageAttribute {
 				} else {
 					MessageModel referencedObjectDefinition = attributeDefinition.getReferencedObject();
 					List<Message> messages = new ArrayList<>();
-					int messageCount = dis.readInt();
+					int messageCount = MessageUtils.readReferenceCount(dis, format);
 					if (decoderRegistry != null && decoderRegistry.containsDecoder(referencedObjectDefinition.getObjectUuid())) {
 						PojoObjectDecoder<? extends Message> messageDecoder = decoderRegistry.getMessageDecoder(referencedObjectDefinition.getObjectUuid());
 						for (int i = 0; i < messageCount; i++) {
+							MessageUtils.skipMessageFrameLength(dis, format);
 							messages.add(messageDecoder.decode(dis, fileDataReader));
 						}
 					} else {
 						for (int i = 0; i < messageCount; i++) {
+							MessageUtils.skipMessageFrameLength(dis, format);
 							messages.add(new Message(dis, referencedObjectDefinition, fileDataReader, decoderRegistry));
 						}
 					}
 					value = messages;
 				}
 			} else {
-				value = readValue(dis, attributeDefinition.getType(), fileDataReader);
+				decodeValue(dis, fileDataReader, format);
+			}
+		}
+	}
+
+	public MessageAttributeImpl(ByteBuffer buffer, MessageModel model, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry, MessageFormat format) throws IOException {
+		this(buffer, model, fileDataReader, decoderRegistry, format, false);
+	}
+
+	MessageAttributeImpl(ByteBuffer buffer, MessageModel model, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry, MessageFormat format, boolean lazy) throws IOException {
+		AttributeType type = AttributeType.getById(buffer.get());
+		int key = MessageUtils.readShort(buffer, format);
+		AttributeDefinition modelDef = model == null ? null : model.getAttributeDefinitionByKey(key);
+		if (modelDef == null) {
+			if (type.isReference()) {
+				if (type == AttributeType.OBJECT_SINGLE_REFERENCE) {
+					Message message = new Message(MessageUtils.readMessageFrame(buffer, format), fileDataReader, lazy);
+					MessageModel definition = message.getModel();
+					this.attributeDefinition = new AbstractAttributeDefinition(model, null, key, null, definition, false);
+					value = message;
+				} else {
+					List<Message> messages = new ArrayList<>();
+					int messageCount = MessageUtils.readReferenceCount(buffer, format);
+					MessageModel definition = null;
+					for (int i = 0; i < messageCount; i++) {
+						Message message = new Message(MessageUtils.readMessageFrame(buffer, format), fileDataReader, lazy);
+						if (definition == null) {
+							definition = message.getModel();
+						}
+						messages.add(message);
+					}
+					this.attributeDefinition = new AbstractAttributeDefinition(model, null, key, null, definition, true);
+					value = messages;
+				}
+			} else {
+				this.attributeDefinition = new AbstractAttributeDefinition(model, null, key, type, null);
+				decodeValue(buffer, fileDataReader, format, lazy);
+			}
+		} else {
+			this.attributeDefinition = modelDef;
+			if (type != attributeDefinition.getType()) {
+				throw new RuntimeException("Message parsing error - property type mismatch: " + type + " <-> " + attributeDefinition.getType());
+			}
+			if (attributeDefinition.getType().isReference()) {
+				value = readReferences(buffer, fileDataReader, decoderRegistry, format, lazy);
+			} else {
+				decodeValue(buffer, fileDataReader, format, lazy);
+			}
+		}
+	}
+
+	/**
+	 * Creates an attribute that decodes its value from the source on first access. The buffer must be positioned at
+	 * the value and is advanced over it.
+	 */
+	MessageAttributeImpl(ByteBuffer buffer, AttributeDefinition attributeDefinition, LazyMessageSource lazySource) {
+		this.attributeDefinition = attributeDefinition;
+		this.lazySource = lazySource;
+		this.valueOffset = buffer.position();
+		MessageUtils.skipValue(buffer, attributeDefinition.getType(), lazySource.getFormat());
+	}
+
+	/**
+	 * Decodes the referenced messages of the attribute with only the attributes selected by the projection. The buffer
+	 * must be positioned at the value.
+	 */
+	MessageAttributeImpl(ByteBuffer buffer, AttributeDefinition attributeDefinition, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry, MessageFormat format, Projection projection) throws IOException {
+		this.attributeDefinition = attributeDefinition;
+		MessageModel referencedObjectDefinition = attributeDefinition.getReferencedObject();
+		PojoObjectDecoder<? extends Message> messageDecoder = decoderRegistry != null ? decoderRegistry.getMessageDecoder(referencedObjectDefinition.getObjectUuid()) : null;
+		if (attributeDefinition.getType() == AttributeType.OBJECT_SINGLE_REFERENCE) {
+			value = readReference(MessageUtils.readMessageFrame(buffer, format), referencedObjectDefinition, messageDecoder, fileDataReader, decoderRegistry, projection);
+		} else {
+			int messageCount = MessageUtils.readReferenceCount(buffer, format);
+			List<Message> messages = new ArrayList<>(messageCount);
+			for (int i = 0; i < messageCount; i++) {
+				messages.add(readReference(MessageUtils.readMessageFrame(buffer, format), referencedObjectDefinition, messageDecoder, fileDataReader, decoderRegistry, projection));
+			}
+			value = messages;
+		}
+	}
+
+	private static Message readReference(ByteBuffer buffer, MessageModel model, PojoObjectDecoder<? extends Message> messageDecoder, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry, Projection projection) throws IOException {
+		if (messageDecoder != null) {
+			return messageDecoder.decode(buffer, fileDataReader, projection);
+		} else {
+			return new Message(buffer, model, fileDataReader, decoderRegistry, projection);
+		}
+	}
+
+	private Object readReferences(ByteBuffer buffer, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry, MessageFormat format, boolean lazy) throws IOException {
+		MessageModel referencedObjectDefinition = attributeDefinition.getReferencedObject();
+		PojoObjectDecoder<? extends Message> messageDecoder = decoderRegistry != null ? decoderRegistry.getMessageDecoder(referencedObjectDefinition.getObjectUuid()) : null;
+		if (attributeDefinition.getType() == AttributeType.OBJECT_SINGLE_REFERENCE) {
+			return readReference(MessageUtils.readMessageFrame(buffer, format), referencedObjectDefinition, messageDecoder, fileDataReader, decoderRegistry, lazy);
+		} else {
+			int messageCount = MessageUtils.readReferenceCount(buffer, format);
+			List<Message> messages = new ArrayList<>(messageCount);
+			for (int i = 0; i < messageCount; i++) {
+				messages.add(readReference(MessageUtils.readMessageFrame(buffer, format), referencedObjectDefinition, messageDecoder, fileDataReader, decoderRegistry, lazy));
+			}
+			return messages;
+		}
+	}
+
+	static Message readReference(ByteBuffer buffer, MessageModel model, PojoObjectDecoder<? extends Message> messageDecoder, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry, boolean lazy) throws IOException {
+		if (messageDecoder != null) {
+			return lazy ? messageDecoder.decodeLazy(buffer, fileDataReader) : messageDecoder.decode(buffer, fileDataReader);
+		} else {
+			return new Message(buffer, model, fileDataReader, decoderRegistry, lazy);
+		}
+	}
+
+	private void decodeLazyValue() {
+		if (lazySource != null && !decoded) {
+			ByteBuffer buffer = lazySource.getBuffer(valueOffset);
+			try {
+				if (attributeDefinition.getType().isReference()) {
+					value = readReferences(buffer, lazySource.getFileDataReader(), lazySource.getDecoderRegistry(), lazySource.getFormat(), true);
+					if (value instanceof List<?> messages) {
+						encodedReferences = messages.toArray(new Message[0]);
+					}
+				} else {
+					decodeValue(buffer, lazySource.getFileDataReader(), lazySource.getFormat(), true);
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("Message parsing error - " + e.getMessage(), e);
+			}
+			decoded = true;
+		}
+	}
+
+	/**
+	 * Returns the value as object, values of primitive types are boxed.
+	 */
+	private Object getValue() {
+		decodeLazyValue();
+		if (attributeDefinition.getType().isPrimitive()) {
+			return switch (attributeDefinition.getType()) {
+				case BOOLEAN -> bits != 0;
+				case BYTE -> (byte) bits;
+				case INT, ENUM -> (int) bits;
+				case FLOAT -> Float.intBitsToFloat((int) bits);
+				case DOUBLE -> Double.longBitsToDouble(bits);
+				case TIMESTAMP_32, TIMESTAMP_64 -> getTimestampAttribute();
+				default -> bits;
+			};
+		}
+		return value;
+	}
+
+	private void setDecodedValue(Object value) {
+		if (attributeDefinition.getType().isPrimitive()) {
+			this.value = null;
+			this.bits = value == null ? 0 : switch (attributeDefinition.getType()) {
+				case BOOLEAN -> (Boolean) value ? 1 : 0;
+				case FLOAT -> Float.floatToRawIntBits((Float) value);
+				case DOUBLE -> Double.doubleToRawLongBits((Double) value);
+				case TIMESTAMP_32 -> ((Instant) value).getEpochSecond();
+				case TIMESTAMP_64 -> ((Instant) value).toEpochMilli();
+				default -> ((Number) value).longValue();
+			};
+		} else {
+			this.value = value;
+		}
+	}
+
+	private void decodeValue(ByteBuffer buffer, FileDataReader fileDataReader, MessageFormat format, boolean lazy) throws IOException {
+		switch (attributeDefinition.getType()) {
+			case BOOLEAN, BYTE -> bits = buffer.get();
+			case INT, ENUM, TIMESTAMP_32 -> bits = MessageUtils.readInt(buffer, format);
+			case LONG, TIMESTAMP_64 -> bits = MessageUtils.readLong(buffer, format);
+			case FLOAT -> bits = buffer.getInt();
+			case DOUBLE -> bits = buffer.getLong();
+			default -> value = readValue(buffer, attributeDefinition.getType(), fileDataReader, format, lazy);
+		}
+	}
+
+	private void decodeValue(DataInputStream dis, FileDataReader fileDataReader, MessageFormat format) throws IOException {
+		switch (attributeDefinition.getType()) {
+			case BOOLEAN, BYTE -> bits = dis.readByte();
+			case INT, ENUM, TIMESTAMP_32 -> bits = MessageUtils.readInt(dis, format);
+			case LONG, TIMESTAMP_64 -> bits = MessageUtils.readLong(dis, format);
+			case FLOAT -> bits = dis.readInt();
+			case DOUBLE -> bits = dis.readLong();
+			default -> value = readValue(dis, attributeDefinition.getType(), fileDataReader, format);
+		}
+	}
+
+	/**
+	 * Returns the value of a {@link AttributeType#isPrimitive() primitive} attribute as it is stored: integral values
+	 * and booleans (1 or 0) as long, floats and doubles as their raw bits and timestamps as epoch seconds or
+	 * milliseconds.
+	 */
+	long getBits() {
+		decodeLazyValue();
+		return bits;
+	}
+
+	/**
+	 * Replaces the value of an attribute that is owned by a single message, a lazily decoded value is dropped.
+	 */
+	void setValue(Object value) {
+		setDecodedValue(value);
+		this.lazySource = null;
+	}
+
+	void setBits(long bits) {
+		this.bits = bits;
+		this.lazySource = null;
+	}
+
+	/**
+	 * True if the attribute still matches the cached encoding of its message, see {@link Message#isEncodingCached()}.
+	 * Nested messages must not have been encoded after the given stamp of that encoding. Lists of references must
+	 * still contain the same messages in the same order. Decoded arrays and bit sets of a message that is not frozen
+	 * may have been changed in place, so they never match.
+	 */
+	boolean isEncodingCached(long stamp) {
+		if (lazySource != null && !decoded) {
+			return true;
+		}
+		return switch (attributeDefinition.getType()) {
+			case OBJECT_SINGLE_REFERENCE, GENERIC_MESSAGE -> value == null || ((Message) value).isEncodingCached(stamp);
+			case OBJECT_MULTI_REFERENCE -> {
+				List<Message> messages = getReferencedObjects();
+				if (encodedReferences == null || (messages == null ? 0 : messages.size()) != encodedReferences.length) {
+					yield false;
+				}
+				for (int i = 0; i < encodedReferences.length; i++) {
+					Message message = messages.get(i);
+					if (message != encodedReferences[i] || !message.isEncodingCached(stamp)) {
+						yield false;
+					}
+				}
+				yield true;
+			}
+			case BYTE_ARRAY, INT_ARRAY, LONG_ARRAY, FLOAT_ARRAY, DOUBLE_ARRAY, STRING_ARRAY, BITSET -> value == null;
+			default -> true;
+		};
+	}
+
+	/**
+	 * Advances the buffer over the encoded value and passes the encodings of decoded referenced messages to them.
+	 */
+	void cacheEncoding(ByteBuffer buffer, MessageFormat format, long stamp) {
+		AttributeType type = attributeDefinition.getType();
+		if (lazySource != null && !decoded) {
+			MessageUtils.skipValue(buffer, type, format);
+			return;
+		}
+		switch (type) {
+			case OBJECT_SINGLE_REFERENCE -> getReferencedObject().cacheEncoding(MessageUtils.readMessageFrame(buffer, format), format, stamp);
+			case OBJECT_MULTI_REFERENCE -> {
+				List<Message> messages = getReferencedObjects();
+				int count = MessageUtils.readReferenceCount(buffer, format);
+				for (int i = 0; i < count; i++) {
+					messages.get(i).cacheEncoding(MessageUtils.readMessageFrame(buffer, format), format, stamp);
+				}
+				encodedReferences = count > 0 ? messages.toArray(new Message[0]) : new Message[0];
+			}
+			case GENERIC_MESSAGE -> {
+				int length = MessageUtils.readLength(buffer, format);
+				if (length > 0) {
+					int position = buffer.position();
+					getGenericMessageAttribute().cacheEncoding(buffer.slice(position, length), format, stamp);
+					buffer.position(position + length);
+				}
 			}
+			default -> MessageUtils.skipValue(buffer, type, format);
 		}
 	}
 
@@ -170,33 +504,220 @@ public class MessageAttributeImpl implements MessageAttribute {
 				value = messages;
 			}
 		} else {
-			value = readValue(element, type, fileDataReader);
+			setDecodedValue(readValue(element, type, fileDataReader));
 		}
 	}
 
-	private Object readValue(DataInputStream dis, AttributeType type, FileDataReader fileDataReader) throws IOException {
+	private Object readValue(DataInputStream dis, AttributeType type, FileDataReader fileDataReader, MessageFormat format) throws IOException {
 		return switch (attributeDefinition.getType()) {
 			case BOOLEAN -> dis.readBoolean();
 			case BYTE -> dis.readByte();
-			case INT, ENUM -> dis.readInt();
-			case LONG -> dis.readLong();
+			case INT, ENUM -> MessageUtils.readInt(dis, format);
+			case LONG -> MessageUtils.readLong(dis, format);
 			case FLOAT -> dis.readFloat();
 			case DOUBLE -> dis.readDouble();
-			case STRING -> MessageUtils.readString(dis);
-			case BITSET -> MessageUtils.readBitSet(dis);
-			case BYTE_ARRAY -> MessageUtils.readByteArray(dis);
-			case INT_ARRAY -> MessageUtils.readIntArray(dis);
-			case LONG_ARRAY -> MessageUtils.readLongArray(dis);
-			case FLOAT_ARRAY -> MessageUtils.readFloatArray(dis);
-			case DOUBLE_ARRAY -> MessageUtils.readDoubleArray(dis);
-			case STRING_ARRAY -> MessageUtils.readStringArray(dis);
-			case FILE -> MessageUtils.readFile(dis, fileDataReader);
-			case TIMESTAMP_32 -> MessageUtils.readInstant32(dis);
-			case TIMESTAMP_64 -> MessageUtils.readInstant64(dis);
-			case DATE_TIME -> MessageUtils.readLocalDateTime(dis);
-			case DATE -> MessageUtils.readLocalDate(dis);
-			case TIME -> MessageUtils.readLocalTime(dis);
-			case GENERIC_MESSAGE -> MessageUtils.readGenericMessage(dis, fileDataReader);
+			case STRING -> MessageUtils.readString(dis, format);
+			case BITSET -> MessageUtils.readBitSet(dis, format);
+			case BYTE_ARRAY -> MessageUtils.readByteArray(dis, format);
+			case INT_ARRAY -> MessageUtils.readIntArray(dis, format);
+			case LONG_ARRAY -> MessageUtils.readLongArray(dis, format);
+			case FLOAT_ARRAY -> MessageUtils.readFloatArray(dis, format);
+			case DOUBLE_ARRAY -> MessageUtils.readDoubleArray(dis, format);
+			case STRING_ARRAY -> MessageUtils.readStringArray(dis, format);
+			case FILE -> MessageUtils.readFile(dis, fileDataReader, format);
+			case TIMESTAMP_32 -> MessageUtils.readInstant32(dis, format);
+			case TIMESTAMP_64 -> MessageUtils.readInstant64(dis, format);
+			case DATE_TIME -> MessageUtils.readLocalDateTime(dis, format);
+			case DATE -> MessageUtils.readLocalDate(dis, format);
+			case TIME -> MessageUtils.readLocalTime(dis, format);
+			case GENERIC_MESSAGE -> MessageUtils.readGenericMessage(dis, fileDataReader, format);
+			default ->
+					throw new RuntimeException("Message parsing error - property type unknown:" + attributeDefinition.getType());
+		};
+	}
+
+	/**
+	 * Decodes a lazy value and freezes referenced messages, see {@link Message#freeze()}.
+	 */
+	void freeze() {
+		switch (attributeDefinition.getType()) {
+			case OBJECT_SINGLE_REFERENCE, GENERIC_MESSAGE -> {
+				Message message = (Message) getValue();
+				if (message != null) {
+					message.freeze();
+				}
+			}
+			case OBJECT_MULTI_REFERENCE -> {
+				List<Message> messages = getReferencedObjects();
+				if (messages != null) {
+					messages.forEach(Message::freeze);
+					value = Collections.unmodifiableList(new ArrayList<>(messages));
+				}
+			}
+			default -> decodeLazyValue();
+		}
+	}
+
+	/**
+	 * Frozen copy of the attribute of a mutable message. Referenced messages that are frozen are shared, mutable
+	 * referenced messages, lists, arrays and bit sets are copied, so the copy is not changed by later changes of this
+	 * attribute and its value.
+	 */
+	MessageAttributeImpl frozenCopy() {
+		decodeLazyValue();
+		MessageAttributeImpl copy = new MessageAttributeImpl(attributeDefinition, bits);
+		copy.value = switch (attributeDefinition.getType()) {
+			case OBJECT_SINGLE_REFERENCE, GENERIC_MESSAGE -> value != null ? ((Message) value).frozenCopy() : null;
+			case OBJECT_MULTI_REFERENCE -> value != null ? ((List<Message>) value).stream().map(Message::frozenCopy).toList() : null;
+			default -> copyArray(value);
+		};
+		copy.freeze();
+		return copy;
+	}
+
+	private static Object copyArray(Object value) {
+		return switch (value) {
+			case byte[] array -> array.clone();
+			case int[] array -> array.clone();
+			case long[] array -> array.clone();
+			case float[] array -> array.clone();
+			case double[] array -> array.clone();
+			case String[] array -> array.clone();
+			case BitSet bitSet -> bitSet.clone();
+			case null, default -> value;
+		};
+	}
+
+	/**
+	 * Hash of the value as computed by {@link ContentHash}, a lazily decoded value is hashed from its bytes.
+	 */
+	long getContentHash() {
+		if (lazySource != null && !decoded) {
+			return ContentHash.readValueHash(lazySource.getBuffer(valueOffset), attributeDefinition.getType(), lazySource.getFormat());
+		}
+		return ContentHash.valueHash(this);
+	}
+
+	/**
+	 * Compares key, type and value with another attribute. Values that are encoded the same are equal, e.g. null and
+	 * empty strings or arrays, referenced messages are compared by content regardless of their class.
+	 */
+	boolean contentEquals(MessageAttributeImpl attribute) {
+		AttributeDefinition definition = attribute.getAttributeDefinition();
+		if (definition.getKey() != attributeDefinition.getKey() || definition.getType() != attributeDefinition.getType()) {
+			return false;
+		}
+		return switch (attributeDefinition.getType()) {
+			case OBJECT_SINGLE_REFERENCE, GENERIC_MESSAGE -> Message.contentEquals(getReferencedObject(), attribute.getReferencedObject());
+			case OBJECT_MULTI_REFERENCE -> {
+				List<Message> messages = getReferencedObjects();
+				List<Message> otherMessages = attribute.getReferencedObjects();
+				int count = messages == null ? 0 : messages.size();
+				if (count != (otherMessages == null ? 0 : otherMessages.size())) {
+					yield false;
+				}
+				for (int i = 0; i < count; i++) {
+					if (!Message.contentEquals(messages.get(i), otherMessages.get(i))) {
+						yield false;
+					}
+				}
+				yield true;
+			}
+			case BOOLEAN, BYTE, INT, ENUM, LONG, TIMESTAMP_32, TIMESTAMP_64 -> getBits() == attribute.getBits();
+			case FLOAT -> Float.floatToIntBits(getFloatAttribute()) == Float.floatToIntBits(attribute.getFloatAttribute());
+			case DOUBLE -> Double.doubleToLongBits(getDoubleAttribute()) == Double.doubleToLongBits(attribute.getDoubleAttribute());
+			case STRING -> stringEquals(getStringAttribute(), attribute.getStringAttribute());
+			case BITSET -> {
+				BitSet bitSet = getBitSetAttribute();
+				BitSet otherBitSet = attribute.getBitSetAttribute();
+				yield bitSet == null || bitSet.isEmpty() ? otherBitSet == null || otherBitSet.isEmpty() : bitSet.equals(otherBitSet);
+			}
+			case BYTE_ARRAY -> Arrays.equals(nullIfEmpty(getByteArrayAttribute()), nullIfEmpty(attribute.getByteArrayAttribute()));
+			case INT_ARRAY -> Arrays.equals(nullIfEmpty(getIntArrayAttribute()), nullIfEmpty(attribute.getIntArrayAttribute()));
+			case LONG_ARRAY -> Arrays.equals(nullIfEmpty(getLongArrayAttribute()), nullIfEmpty(attribute.getLongArrayAttribute()));
+			case FLOAT_ARRAY -> Arrays.equals(nullIfEmpty(getFloatArrayAttribute()), nullIfEmpty(attribute.getFloatArrayAttribute()));
+			case DOUBLE_ARRAY -> Arrays.equals(nullIfEmpty(getDoubleArrayAttribute()), nullIfEmpty(attribute.getDoubleArrayAttribute()));
+			case STRING_ARRAY -> {
+				String[] values = getStringArrayAttribute();
+				String[] otherValues = attribute.getStringArrayAttribute();
+				int count = values == null ? 0 : values.length;
+				if (count != (otherValues == null ? 0 : otherValues.length)) {
+					yield false;
+				}
+				for (int i = 0; i < count; i++) {
+					if (!stringEquals(values[i], otherValues[i])) {
+						yield false;
+					}
+				}
+				yield true;
+			}
+			case FILE -> fileEquals(getFileData(), attribute.getFileData());
+			case DATE_TIME -> Objects.equals(getDateTimeAttribute(), attribute.getDateTimeAttribute());
+			case DATE -> Objects.equals(getDateAttribute(), attribute.getDateAttribute());
+			case TIME -> Objects.equals(getTimeAttribute(), attribute.getTimeAttribute());
+			case OBJECT -> true;
+		};
+	}
+
+	private static boolean stringEquals(String value, String otherValue) {
+		return value == null || value.isEmpty() ? otherValue == null || otherValue.isEmpty() : value.equals(otherValue);
+	}
+
+	private static boolean fileEquals(FileData fileData, FileData otherFileData) {
+		long length = fileData == null ? 0 : fileData.getLength();
+		if (length != (otherFileData == null ? 0 : otherFileData.getLength())) {
+			return false;
+		}
+		return length == 0 || fileData.getType() == otherFileData.getType()
+				&& stringEquals(fileData.getFileName(), otherFileData.getFileName())
+				&& stringEquals(fileData.getDescriptor(), otherFileData.getDescriptor())
+				&& fileData.isEncrypted() == otherFileData.isEncrypted()
+				&& (!fileData.isEncrypted() || stringEquals(fileData.getEncryptionKey(), otherFileData.getEncryptionKey()));
+	}
+
+	private static byte[] nullIfEmpty(byte[] values) {
+		return values == null || values.length == 0 ? null : values;
+	}
+
+	private static int[] nullIfEmpty(int[] values) {
+		return values == null || values.length == 0 ? null : values;
+	}
+
+	private static long[] nullIfEmpty(long[] values) {
+		return values == null || values.length == 0 ? null : values;
+	}
+
+	private static float[] nullIfEmpty(float[] values) {
+		return values == null || values.length == 0 ? null : values;
+	}
+
+	private static double[] nullIfEmpty(double[] values) {
+		return values == null || values.length == 0 ? null : values;
+	}
+
+	private Object readValue(ByteBuffer buffer, AttributeType type, FileDataReader fileDataReader, MessageFormat format, boolean lazy) throws IOException {
+		return switch (attributeDefinition.getType()) {
+			case BOOLEAN -> MessageUtils.readBoolean(buffer);
+			case BYTE -> buffer.get();
+			case INT, ENUM -> MessageUtils.readInt(buffer, format);
+			case LONG -> MessageUtils.readLong(buffer, format);
+			case FLOAT -> buffer.getFloat();
+			case DOUBLE -> buffer.getDouble();
+			case STRING -> MessageUtils.readString(buffer, format);
+			case BITSET -> MessageUtils.readBitSet(buffer, format);
+			case BYTE_ARRAY -> MessageUtils.readByteArray(buffer, format);
+			case INT_ARRAY -> MessageUtils.readIntArray(buffer, format);
+			case LONG_ARRAY -> MessageUtils.readLongArray(buffer, format);
+			case FLOAT_ARRAY -> MessageUtils.readFloatArray(buffer, format);
+			case DOUBLE_ARRAY -> MessageUtils.readDoubleArray(buffer, format);
+			case STRING_ARRAY -> MessageUtils.readStringArray(buffer, format);
+			case FILE -> MessageUtils.readFile(buffer, fileDataReader, format);
+			case TIMESTAMP_32 -> MessageUtils.readInstant32(buffer, format);
+			case TIMESTAMP_64 -> MessageUtils.readInstant64(buffer, format);
+			case DATE_TIME -> MessageUtils.readLocalDateTime(buffer, format);
+			case DATE -> MessageUtils.readLocalDate(buffer, format);
+			case TIME -> MessageUtils.readLocalTime(buffer, format);
+			case GENERIC_MESSAGE -> MessageUtils.readGenericMessage(buffer, fileDataReader, format, lazy);
 			default ->
 					throw new RuntimeException("Message parsing error - property type unknown:" + attributeDefinition.getType());
 		};
@@ -232,55 +753,179 @@ public class MessageAttributeImpl implements MessageAttribute {
 
 
 	@Override
-	public void write(DataOutputStream dos, FileDataWriter fileDataWriter, boolean updateFileData) throws IOException {
+	public void write(DataOutputStream dos, FileDataWriter fileDataWriter, boolean updateFileData, MessageFormat format) throws IOException {
 		dos.writeByte(attributeDefinition.getType().getId());
-		dos.writeShort(attributeDefinition.getKey());
+		MessageUtils.writeShort(dos, attributeDefinition.getKey(), format);
 		switch (attributeDefinition.getType()) {
 			case OBJECT_SINGLE_REFERENCE -> {
 				Message referencedObject = getReferencedObject();
-				referencedObject.write(dos, fileDataWriter, updateFileData);
+				FileDataWriter writer = CachedFileDataWriter.of(fileDataWriter);
+				if (format.isFramed()) {
+					MessageUtils.writeLength(dos, referencedObject.getSerializedSize(format, writer), format);
+				}
+				referencedObject.write(dos, writer, updateFileData, format);
 			}
 			case OBJECT_MULTI_REFERENCE -> {
 				List<Message> referencedObjects = getReferencedObjects();
-				if (referencedObjects == null || referencedObjects.isEmpty()) {
-					dos.writeInt(0);
+				if (format.isFramed()) {
+					writeFramedReferences(dos, referencedObjects, CachedFileDataWriter.of(fileDataWriter), updateFileData, format);
+				} else if (referencedObjects == null || referencedObjects.isEmpty()) {
+					MessageUtils.writeLength(dos, 0, format);
 				} else {
-					dos.writeInt(referencedObjects.size());
+					MessageUtils.writeLength(dos, referencedObjects.size(), format);
 					for (Message referencedObject : referencedObjects) {
-						referencedObject.write(dos, fileDataWriter, updateFileData);
+						referencedObject.write(dos, fileDataWriter, updateFileData, format);
 					}
 				}
 			}
 			case BOOLEAN -> dos.writeBoolean(getBooleanAttribute());
 			case BYTE -> dos.writeByte(getByteAttribute());
-			case INT, ENUM -> dos.writeInt(getIntAttribute());
-			case LONG -> dos.writeLong(getLongAttribute());
+			case INT, ENUM -> MessageUtils.writeInt(dos, getIntAttribute(), format);
+			case LONG -> MessageUtils.writeLong(dos, getLongAttribute(), format);
 			case FLOAT -> dos.writeFloat(getFloatAttribute());
 			case DOUBLE -> dos.writeDouble(getDoubleAttribute());
-			case STRING -> MessageUtils.writeString(dos, getStringAttribute());
-			case BITSET -> MessageUtils.writeBitSet(dos, getBitSetAttribute());
-			case BYTE_ARRAY -> MessageUtils.writeByteArray(dos, getByteArrayAttribute());
-			case INT_ARRAY -> MessageUtils.writeIntArray(dos, getIntArrayAttribute());
-			case LONG_ARRAY -> MessageUtils.writeLongArray(dos, getLongArrayAttribute());
-			case FLOAT_ARRAY -> MessageUtils.writeFloatArray(dos, getFloatArrayAttribute());
-			case DOUBLE_ARRAY -> MessageUtils.writeDoubleArray(dos, getDoubleArrayAttribute());
-			case STRING_ARRAY -> MessageUtils.writeStringArray(dos, getStringArrayAttribute());
+			case STRING -> MessageUtils.writeString(dos, getStringAttribute(), format);
+			case BITSET -> MessageUtils.writeBitSet(dos, getBitSetAttribute(), format);
+			case BYTE_ARRAY -> MessageUtils.writeByteArray(dos, getByteArrayAttribute(), format);
+			case INT_ARRAY -> MessageUtils.writeIntArray(dos, getIntArrayAttribute(), format, attributeDefinition.getEncoding());
+			case LONG_ARRAY -> MessageUtils.writeLongArray(dos, getLongArrayAttribute(), format, attributeDefinition.getEncoding());
+			case FLOAT_ARRAY -> MessageUtils.writeFloatArray(dos, getFloatArrayAttribute(), format);
+			case DOUBLE_ARRAY -> MessageUtils.writeDoubleArray(dos, getDoubleArrayAttribute(), format);
+			case STRING_ARRAY -> MessageUtils.writeStringArray(dos, getStringArrayAttribute(), format);
 			case FILE -> {
 				//todo value should be final - create a message object with updated fields instead!
-				FileData fileData = MessageUtils.writeFile(dos, getFileData(), fileDataWriter);
+				FileData fileData = MessageUtils.writeFile(dos, getFileData(), fileDataWriter, format);
 				if (updateFileData) {
 					value = fileData;
 				}
 			}
-			case TIMESTAMP_32 -> MessageUtils.writeInstant32(dos, getTimestampAttribute());
-			case TIMESTAMP_64 -> MessageUtils.writeInstant64(dos, getTimestampAttribute());
-			case DATE_TIME -> MessageUtils.writeLocalDateTime(dos, getDateTimeAttribute());
-			case DATE -> MessageUtils.writeLocalDate(dos, getDateAttribute());
-			case TIME -> MessageUtils.writeLocalTime(dos, getTimeAttribute());
-			case GENERIC_MESSAGE -> MessageUtils.writeGenericMessage(dos, getGenericMessageAttribute(), fileDataWriter);
+			case TIMESTAMP_32 -> MessageUtils.writeInt(dos, (int) getBits(), format);
+			case TIMESTAMP_64 -> MessageUtils.writeLong(dos, getBits(), format);
+			case DATE_TIME -> MessageUtils.writeLocalDateTime(dos, getDateTimeAttribute(), format);
+			case DATE -> MessageUtils.writeLocalDate(dos, getDateAttribute(), format);
+			case TIME -> MessageUtils.writeLocalTime(dos, getTimeAttribute(), format);
+			case GENERIC_MESSAGE -> MessageUtils.writeGenericMessage(dos, getGenericMessageAttribute(), fileDataWriter, format);
 		}
 	}
 
+	@Override
+	public void write(ByteBuffer buffer, MessageFormat format) {
+		buffer.put((byte) attributeDefinition.getType().getId());
+		MessageUtils.writeShort(buffer, attributeDefinition.getKey(), format);
+		switch (attributeDefinition.getType()) {
+			case OBJECT_SINGLE_REFERENCE -> MessageUtils.writeReference(buffer, getReferencedObject(), format);
+			case OBJECT_MULTI_REFERENCE -> MessageUtils.writeReferences(buffer, getReferencedObjects(), format);
+			case BOOLEAN -> MessageUtils.writeBoolean(buffer, getBooleanAttribute());
+			case BYTE -> buffer.put(getByteAttribute());
+			case INT, ENUM -> MessageUtils.writeInt(buffer, getIntAttribute(), format);
+			case LONG -> MessageUtils.writeLong(buffer, getLongAttribute(), format);
+			case FLOAT -> buffer.putFloat(getFloatAttribute());
+			case DOUBLE -> buffer.putDouble(getDoubleAttribute());
+			case STRING -> MessageUtils.writeString(buffer, getStringAttribute(), format);
+			case BITSET -> MessageUtils.writeBitSet(buffer, getBitSetAttribute(), format);
+			case BYTE_ARRAY -> MessageUtils.writeByteArray(buffer, getByteArrayAttribute(), format);
+			case INT_ARRAY -> MessageUtils.writeIntArray(buffer, getIntArrayAttribute(), format, attributeDefinition.getEncoding());
+			case LONG_ARRAY -> MessageUtils.writeLongArray(buffer, getLongArrayAttribute(), format, attributeDefinition.getEncoding());
+			case FLOAT_ARRAY -> MessageUtils.writeFloatArray(buffer, getFloatArrayAttribute(), format);
+			case DOUBLE_ARRAY -> MessageUtils.writeDoubleArray(buffer, getDoubleArrayAttribute(), format);
+			case STRING_ARRAY -> MessageUtils.writeStringArray(buffer, getStringArrayAttribute(), format);
+			case FILE -> MessageUtils.writeFile(buffer, getFileData(), format);
+			case TIMESTAMP_32 -> MessageUtils.writeInt(buffer, (int) getBits(), format);
+			case TIMESTAMP_64 -> MessageUtils.writeLong(buffer, getBits(), format);
+			case DATE_TIME -> MessageUtils.writeLocalDateTime(buffer, getDateTimeAttribute(), format);
+			case DATE -> MessageUtils.writeLocalDate(buffer, getDateAttribute(), format);
+			case TIME -> MessageUtils.writeLocalTime(buffer, getTimeAttribute(), format);
+			case GENERIC_MESSAGE -> MessageUtils.writeGenericMessage(buffer, getGenericMessageAttribute(), format);
+		}
+	}
+
+	@Override
+	public int getSerializedSize(MessageFormat format) {
+		int size = 1 + MessageUtils.getShortSize(attributeDefinition.getKey(), format);
+		return size + switch (attributeDefinition.getType()) {
+			case OBJECT_SINGLE_REFERENCE -> MessageUtils.getReferenceSize(getReferencedObject(), format);
+			case OBJECT_MULTI_REFERENCE -> MessageUtils.getReferencesSize(getReferencedObjects(), format);
+			case BOOLEAN, BYTE -> 1;
+			case INT, ENUM -> MessageUtils.getIntSize(getIntAttribute(), format);
+			case LONG -> MessageUtils.getLongSize(getLongAttribute(), format);
+			case FLOAT -> 4;
+			case DOUBLE -> 8;
+			case STRING -> MessageUtils.getStringSize(getStringAttribute(), format);
+			case BITSET -> MessageUtils.getBitSetSize(getBitSetAttribute(), format);
+			case BYTE_ARRAY -> MessageUtils.getByteArraySize(getByteArrayAttribute(), format);
+			case INT_ARRAY -> MessageUtils.getIntArraySize(getIntArrayAttribute(), format, attributeDefinition.getEncoding());
+			case LONG_ARRAY -> MessageUtils.getLongArraySize(getLongArrayAttribute(), format, attributeDefinition.getEncoding());
+			case FLOAT_ARRAY -> MessageUtils.getFloatArraySize(getFloatArrayAttribute(), format);
+			case DOUBLE_ARRAY -> MessageUtils.getDoubleArraySize(getDoubleArrayAttribute(), format);
+			case STRING_ARRAY -> MessageUtils.getStringArraySize(getStringArrayAttribute(), format);
+			case FILE -> MessageUtils.getFileSize(getFileData(), format);
+			case TIMESTAMP_32 -> MessageUtils.getIntSize((int) getBits(), format);
+			case TIMESTAMP_64 -> MessageUtils.getLongSize(getBits(), format);
+			case DATE_TIME -> MessageUtils.getLocalDateTimeSize(getDateTimeAttribute(), format);
+			case DATE -> MessageUtils.getLocalDateSize(getDateAttribute(), format);
+			case TIME -> MessageUtils.getLocalTimeSize(getTimeAttribute(), format);
+			case GENERIC_MESSAGE -> MessageUtils.getGenericMessageSize(getGenericMessageAttribute(), format);
+			case OBJECT -> 0;
+		};
+	}
+
+	/**
+	 * Writes the framed list with the sizes of the messages computed up front, so that the messages are streamed
+	 * without encoding them into temporary arrays first.
+	 */
+	private static void writeFramedReferences(DataOutputStream dos, List<Message> referencedObjects, FileDataWriter fileDataWriter, boolean updateFileData, MessageFormat format) throws IOException {
+		int messageCount = referencedObjects == null ? 0 : referencedObjects.size();
+		int[] messageSizes = new int[messageCount];
+		int listSize = MessageUtils.getLengthSize(messageCount, format);
+		for (int i = 0; i < messageCount; i++) {
+			messageSizes[i] = referencedObjects.get(i).getSerializedSize(format, fileDataWriter);
+			listSize += MessageUtils.getMessageFrameSize(messageSizes[i], format);
+		}
+		MessageUtils.writeLength(dos, listSize, format);
+		MessageUtils.writeLength(dos, messageCount, format);
+		for (int i = 0; i < messageCount; i++) {
+			MessageUtils.writeLength(dos, messageSizes[i], format);
+			referencedObjects.get(i).write(dos, fileDataWriter, updateFileData, format);
+		}
+	}
+
+	/**
+	 * Size of the attribute as written with the file data writer, which must return the same file data for repeated
+	 * calls.
+	 */
+	int getSerializedSize(MessageFormat format, FileDataWriter fileDataWriter) throws IOException {
+		if (fileDataWriter == null) {
+			return getSerializedSize(format);
+		}
+		int size = 1 + MessageUtils.getShortSize(attributeDefinition.getKey(), format);
+		return size + switch (attributeDefinition.getType()) {
+			case OBJECT_SINGLE_REFERENCE -> getReferenceSize(getReferencedObject().getSerializedSize(format, fileDataWriter), format);
+			case OBJECT_MULTI_REFERENCE -> {
+				List<Message> referencedObjects = getReferencedObjects();
+				int listSize = MessageUtils.getLengthSize(referencedObjects == null ? 0 : referencedObjects.size(), format);
+				if (referencedObjects != null) {
+					for (Message referencedObject : referencedObjects) {
+						listSize += getReferenceSize(referencedObject.getSerializedSize(format, fileDataWriter), format);
+					}
+				}
+				yield format.isFramed() ? MessageUtils.getMessageFrameSize(listSize, format) : listSize;
+			}
+			case FILE -> {
+				FileData fileData = getFileData();
+				yield MessageUtils.getFileSize(fileData == null || fileData.getLength() == 0 ? null : fileDataWriter.writeFileData(fileData), format);
+			}
+			case GENERIC_MESSAGE -> {
+				Message message = getGenericMessageAttribute();
+				yield message == null ? MessageUtils.getLengthSize(0, format) : MessageUtils.getMessageFrameSize(message.getSerializedSize(format, fileDataWriter), format);
+			}
+			default -> getSerializedSize(format) - size;
+		};
+	}
+
+	private static int getReferenceSize(int messageSize, MessageFormat format) {
+		return format.isFramed() ? MessageUtils.getMessageFrameSize(messageSize, format) : messageSize;
+	}
+
 	@Override
 	public byte[] toBytes() throws IOException {
 		return toBytes(null, false);
@@ -294,11 +939,22 @@ public class MessageAttributeImpl implements MessageAttribute {
 
 	@Override
 	public byte[] toBytes(FileDataWriter fileDataWriter, boolean updateFileData) throws IOException {
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		DataOutputStream dos = new DataOutputStream(bos);
-		write(dos, fileDataWriter, updateFileData);
-		dos.close();
-		return bos.toByteArray();
+		return toBytes(fileDataWriter, updateFileData, MessageFormat.FIXED_WIDTH);
+	}
+
+	@Override
+	public byte[] toBytes(FileDataWriter fileDataWriter, boolean updateFileData, MessageFormat format) throws IOException {
+		if (fileDataWriter == null) {
+			byte[] bytes = new byte[getSerializedSize(format)];
+			write(ByteBuffer.wrap(bytes), format);
+			return bytes;
+		}
+		try (MessageEncoder encoder = MessageEncoder.acquire()) {
+			ByteBuffer encoded = encoder.encode(dos -> write(dos, fileDataWriter, updateFileData, format));
+			byte[] bytes = new byte[encoded.remaining()];
+			encoded.get(bytes);
+			return bytes;
+		}
 	}
 
 	protected void toXml(XmlNode parentNode, boolean withComments, FileDataWriter fileDataWriter) throws IOException {
@@ -318,6 +974,7 @@ public class MessageAttributeImpl implements MessageAttribute {
 				}
 			}
 			default -> {
+				Object value = getValue();
 				if (value != null) {
 					switch (attributeDefinition.getType()) {
 						case INT, ENUM, LONG, FLOAT, DOUBLE, STRING -> xmlNode.setValue(value.toString());
@@ -350,163 +1007,183 @@ public class MessageAttributeImpl implements MessageAttribute {
 
 	@Override
 	public Message getReferencedObject() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (Message) value;
 	}
 
 	@Override
 	public List<Message> getReferencedObjects() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (List<Message>) value;
 	}
 
 	@Override
 	public <TYPE extends Message> TYPE getReferencedObjectAsType() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (TYPE) value;
 	}
 
 	@Override
 	public <TYPE extends Message> List<TYPE> getReferencedObjectsAsType() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (List<TYPE>) value;
 	}
 
 	@Override
 	public boolean getBooleanAttribute() {
-		if (value == null) return false;
-		return (boolean) value;
+		decodeLazyValue();
+		return bits != 0;
 	}
 
 	@Override
 	public byte getByteAttribute() {
-		if (value == null) return 0;
-		return (byte) value;
+		decodeLazyValue();
+		return (byte) bits;
 	}
 
 	@Override
 	public int getIntAttribute() {
-		if (value == null) return 0;
-		return (int) value;
+		decodeLazyValue();
+		return (int) bits;
 	}
 
 	@Override
 	public long getLongAttribute() {
-		if (value == null) return 0;
-		return (long) value;
+		decodeLazyValue();
+		return bits;
 	}
 
 	@Override
 	public float getFloatAttribute() {
-		if (value == null) return 0;
-		return (Float) value;
+		decodeLazyValue();
+		return Float.intBitsToFloat((int) bits);
 	}
 
 	@Override
 	public double getDoubleAttribute() {
-		if (value == null) return 0;
-		return (Double) value;
+		decodeLazyValue();
+		return Double.longBitsToDouble(bits);
 	}
 
 	@Override
 	public String getStringAttribute() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (String) value;
 	}
 
 	@Override
 	public FileData getFileData() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (FileData) value;
 	}
 
 	@Override
 	public String getFileDataFileName() {
+		Object value = getValue();
 		if (value == null) return null;
 		return getFileData().getFileName();
 	}
 
 	@Override
 	public long getFileDataFileLength() {
+		Object value = getValue();
 		if (value == null) return 0;
 		return getFileData().getLength();
 	}
 
 	@Override
 	public BitSet getBitSetAttribute() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (BitSet) value;
 	}
 
 	@Override
 	public byte[] getByteArrayAttribute() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (byte[]) value;
 	}
 
 	@Override
 	public int[] getIntArrayAttribute() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (int[]) value;
 	}
 
 	@Override
 	public long[] getLongArrayAttribute() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (long[]) value;
 	}
 
 	@Override
 	public float[] getFloatArrayAttribute() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (float[]) value;
 	}
 
 	@Override
 	public double[] getDoubleArrayAttribute() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (double[]) value;
 	}
 
 	@Override
 	public String[] getStringArrayAttribute() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (String[]) value;
 	}
 
 	@Override
 	public Instant getTimestampAttribute() {
-		if (value == null) return null;
-		return (Instant) value;
+		decodeLazyValue();
+		if (bits == 0) return null;
+		return attributeDefinition.getType() == AttributeType.TIMESTAMP_32 ? Instant.ofEpochSecond(bits) : Instant.ofEpochMilli(bits);
 	}
 
 	@Override
 	public LocalDateTime getDateTimeAttribute() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (LocalDateTime) value;
 	}
 
 	@Override
 	public LocalDate getDateAttribute() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (LocalDate) value;
 	}
 
 	@Override
 	public LocalTime getTimeAttribute() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (LocalTime) value;
 	}
 
 	@Override
 	public Message getGenericMessageAttribute() {
+		Object value = getValue();
 		if (value == null) return null;
 		return (Message) value;
 	}
 
 	@Override
 	public String getAsString() {
-		return "" + value;
+		return "" + getValue();
 	}
 
 	@Override
@@ -530,7 +1207,7 @@ public class MessageAttributeImpl implements MessageAttribute {
 			int index = getIntAttribute();
 			sb.append(": ").append(index > 0 ? attributeDefinition.getEnumDefinition().getEnumValues().get(index - 1) : "null");
 		} else {
-			sb.append(": ").append(value);
+			sb.append(": ").append(getValue());
 		}
 		return sb.toString();
 	}
@@ -21,11 +21,13 @@ package org.teamapps.message.protocol.message;
 
 import org.teamapps.message.protocol.model.ExtendedAttributesUpdater;
 import org.teamapps.message.protocol.model.MessageModel;
+import org.teamapps.message.protocol.utils.MessageEncoder;
 import org.teamapps.message.protocol.utils.MessageUtils;
 import org.teamapps.message.protocol.model.AttributeDefinition;
 import org.teamapps.message.protocol.model.EnumDefinition;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -41,14 +43,22 @@ public class MessageDefinition implements MessageModel {
 	public final static Set<String> META_FIELD_NAMES = Stream.of(META_RECORD_ID, META_CREATION_DATE, META_CREATED_BY, META_MODIFICATION_DATE, META_MODIFIED_BY).collect(Collectors.toSet());
 	public final static Set<String> RESERVED_NAMES_LOWER_CASE = Stream.of(META_RECORD_ID, META_CREATION_DATE, META_CREATED_BY, META_MODIFICATION_DATE, META_MODIFIED_BY).map(String::toLowerCase).collect(Collectors.toSet());
 
+	private static final int MAX_KEY = Short.MAX_VALUE;
+	private static final int KEY_PAGE_BITS = 8;
+	private static final int KEY_PAGE_MASK = (1 << KEY_PAGE_BITS) - 1;
+
 	private final String name;
 	private final String comment;
 	private final Message specificType;
 	private final String objectUuid;
 	private final short modelVersion;
 	private final boolean messageRecord;
+	private boolean fieldBacked;
 	private final List<AttributeDefinition> definitions = new ArrayList<>();
-	private final Map<Integer, AttributeDefinition> definitionByKey = new HashMap<>();
+	/**
+	 * Definitions by key in pages of 256 keys, so that user keys and the meta keys at 16000 each need only one page.
+	 */
+	private final AttributeDefinition[][] definitionPagesByKey = new AttributeDefinition[(MAX_KEY >> KEY_PAGE_BITS) + 1][];
 	private final Map<String, AttributeDefinition> definitionByName = new HashMap<>();
 
 	public static Message readBase64Message(String msg) {
@@ -122,11 +132,12 @@ public class MessageDefinition implements MessageModel {
 
 	@Override
 	public byte[] toBytes() throws IOException {
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		DataOutputStream dos = new DataOutputStream(bos);
-		write(dos);
-		dos.close();
-		return bos.toByteArray();
+		try (MessageEncoder encoder = MessageEncoder.acquire()) {
+			ByteBuffer encoded = encoder.encode(this::write);
+			byte[] bytes = new byte[encoded.remaining()];
+			encoded.get(bytes);
+			return bytes;
+		}
 	}
 
 	@Override
@@ -283,11 +294,23 @@ public class MessageDefinition implements MessageModel {
 	}
 
 	public void addAttribute(AttributeDefinition field) {
-		if (definitionByName.containsKey(field.getName()) || definitionByKey.containsKey(field.getKey())) {
-			throw new RuntimeException("Object attribute already contains field with this name or key:" + field.getName() + "->" + field.getKey());
+		int key = field.getKey();
+		if (key < 0 || key > MAX_KEY) {
+			throw new RuntimeException("Attribute key out of range:" + field.getName() + "->" + key);
+		}
+		if (definitionByName.containsKey(field.getName()) || getAttributeDefinitionByKey(key) != null) {
+			throw new RuntimeException("Object attribute already contains field with this name or key:" + field.getName() + "->" + key);
+		}
+		if (field instanceof AbstractAttributeDefinition attributeDefinition && field.getParent() == this) {
+			attributeDefinition.setOrdinal(definitions.size());
 		}
 		definitions.add(field);
-		definitionByKey.put(field.getKey(), field);
+		AttributeDefinition[] page = definitionPagesByKey[key >> KEY_PAGE_BITS];
+		if (page == null) {
+			page = new AttributeDefinition[KEY_PAGE_MASK + 1];
+			definitionPagesByKey[key >> KEY_PAGE_BITS] = page;
+		}
+		page[key & KEY_PAGE_MASK] = field;
 		definitionByName.put(field.getName(), field);
 	}
 
@@ -296,6 +319,20 @@ public class MessageDefinition implements MessageModel {
 		return messageRecord;
 	}
 
+	@Override
+	public boolean isFieldBacked() {
+		return fieldBacked;
+	}
+
+	/**
+	 * Lets the POJO builder generate an additional {@code <Type>Record} class for this model. The flag only affects
+	 * code generation and is not part of the serialized model.
+	 */
+	public MessageDefinition setFieldBacked(boolean fieldBacked) {
+		this.fieldBacked = fieldBacked;
+		return this;
+	}
+
 	@Override
 	public short getModelVersion() {
 		return modelVersion;
@@ -308,7 +345,11 @@ public class MessageDefinition implements MessageModel {
 
 	@Override
 	public AttributeDefinition getAttributeDefinitionByKey(int key) {
-		return definitionByKey.get(key);
+		if ((key & ~MAX_KEY) != 0) {
+			return null;
+		}
+		AttributeDefinition[] page = definitionPagesByKey[key >> KEY_PAGE_BITS];
+		return page != null ? page[key & KEY_PAGE_MASK] : null;
 	}
 
 	@Override
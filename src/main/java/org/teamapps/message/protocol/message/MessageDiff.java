@@ -0,0 +1,505 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.message;
+
+import org.teamapps.message.protocol.file.FileDataReader;
+import org.teamapps.message.protocol.model.AttributeDefinition;
+import org.teamapps.message.protocol.model.MessageModel;
+import org.teamapps.message.protocol.model.PojoObjectDecoder;
+import org.teamapps.message.protocol.model.PojoObjectDecoderRegistry;
+import org.teamapps.message.protocol.utils.MessageUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Attribute level changes between two messages of the same model. Changed single references are described by the
+ * diff of the referenced messages, multi references by the diffs of their elements. Elements are matched by their
+ * record id if all old and new elements have a distinct record id, otherwise by position.
+ * <p>
+ * {@link #toBytes()} encodes the diff as compact patch that the receiver applies to its copy of the old message with
+ * {@link #apply(Message, byte[], PojoObjectDecoderRegistry)}.
+ */
+public class MessageDiff {
+
+	private static final MessageFormat FORMAT = MessageFormat.COMPACT;
+
+	public enum ChangeType {
+		SET,
+		REMOVE,
+		REFERENCE,
+		REFERENCES;
+
+		public static ChangeType getById(int id) {
+			return values()[id];
+		}
+
+		public int getId() {
+			return ordinal();
+		}
+	}
+
+	public enum ElementChangeType {
+		KEEP,
+		PATCH,
+		INSERT;
+
+		public static ElementChangeType getById(int id) {
+			return values()[id];
+		}
+
+		public int getId() {
+			return ordinal();
+		}
+	}
+
+	public static class Change {
+		private final ChangeType type;
+		private final AttributeDefinition attributeDefinition;
+		private final MessageAttribute attribute;
+		private final MessageDiff diff;
+		private final List<ElementChange> elementChanges;
+
+		private Change(ChangeType type, AttributeDefinition attributeDefinition, MessageAttribute attribute, MessageDiff diff, List<ElementChange> elementChanges) {
+			this.type = type;
+			this.attributeDefinition = attributeDefinition;
+			this.attribute = attribute;
+			this.diff = diff;
+			this.elementChanges = elementChanges;
+		}
+
+		public ChangeType getType() {
+			return type;
+		}
+
+		public AttributeDefinition getAttributeDefinition() {
+			return attributeDefinition;
+		}
+
+		/**
+		 * The new attribute of a {@link ChangeType#SET} change.
+		 */
+		public MessageAttribute getAttribute() {
+			return attribute;
+		}
+
+		/**
+		 * The diff of the referenced message of a {@link ChangeType#REFERENCE} change.
+		 */
+		public MessageDiff getDiff() {
+			return diff;
+		}
+
+		/**
+		 * The elements of the new list of a {@link ChangeType#REFERENCES} change.
+		 */
+		public List<ElementChange> getElementChanges() {
+			return elementChanges;
+		}
+
+		private void write(ByteBuffer buffer) {
+			buffer.put((byte) type.getId());
+			switch (type) {
+				case SET -> attribute.write(buffer, FORMAT);
+				case REMOVE -> MessageUtils.writeShort(buffer, attributeDefinition.getKey(), FORMAT);
+				case REFERENCE -> {
+					MessageUtils.writeShort(buffer, attributeDefinition.getKey(), FORMAT);
+					diff.writeChanges(buffer);
+				}
+				case REFERENCES -> {
+					MessageUtils.writeShort(buffer, attributeDefinition.getKey(), FORMAT);
+					MessageUtils.writeLength(buffer, elementChanges.size(), FORMAT);
+					for (ElementChange elementChange : elementChanges) {
+						elementChange.write(buffer);
+					}
+				}
+			}
+		}
+
+		private int getSerializedSize() {
+			int size = 1;
+			if (type == ChangeType.SET) {
+				return size + attribute.getSerializedSize(FORMAT);
+			}
+			size += MessageUtils.getShortSize(attributeDefinition.getKey(), FORMAT);
+			if (type == ChangeType.REFERENCE) {
+				size += diff.getChangesSize();
+			} else if (type == ChangeType.REFERENCES) {
+				size += MessageUtils.getLengthSize(elementChanges.size(), FORMAT);
+				for (ElementChange elementChange : elementChanges) {
+					size += elementChange.getSerializedSize();
+				}
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * Element of the new list of a multi reference: a run of unchanged old elements, a changed old element or a new
+	 * element.
+	 */
+	public static class ElementChange {
+		private final ElementChangeType type;
+		private final int index;
+		private int count;
+		private final MessageDiff diff;
+		private final Message message;
+
+		private ElementChange(ElementChangeType type, int index, int count, MessageDiff diff, Message message) {
+			this.type = type;
+			this.index = index;
+			this.count = count;
+			this.diff = diff;
+			this.message = message;
+		}
+
+		public ElementChangeType getType() {
+			return type;
+		}
+
+		/**
+		 * Position of the first old element.
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * Number of unchanged old elements.
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		public MessageDiff getDiff() {
+			return diff;
+		}
+
+		/**
+		 * The new element of an {@link ElementChangeType#INSERT} change.
+		 */
+		public Message getMessage() {
+			return message;
+		}
+
+		private void write(ByteBuffer buffer) {
+			buffer.put((byte) type.getId());
+			switch (type) {
+				case KEEP -> {
+					MessageUtils.writeLength(buffer, index, FORMAT);
+					MessageUtils.writeLength(buffer, count, FORMAT);
+				}
+				case PATCH -> {
+					MessageUtils.writeLength(buffer, index, FORMAT);
+					diff.writeChanges(buffer);
+				}
+				case INSERT -> MessageUtils.writeReference(buffer, message, FORMAT);
+			}
+		}
+
+		private int getSerializedSize() {
+			return 1 + switch (type) {
+				case KEEP -> MessageUtils.getLengthSize(index, FORMAT) + MessageUtils.getLengthSize(count, FORMAT);
+				case PATCH -> MessageUtils.getLengthSize(index, FORMAT) + diff.getChangesSize();
+				case INSERT -> MessageUtils.getReferenceSize(message, FORMAT);
+			};
+		}
+	}
+
+	private final MessageModel model;
+	private final List<Change> changes = new ArrayList<>();
+
+	private MessageDiff(MessageModel model) {
+		this.model = model;
+	}
+
+	/**
+	 * Computes the changes that turn the old message into the new message. Identical nested messages, like the
+	 * shared subtrees of messages created with {@link Message#with(String, Object)}, are not compared.
+	 */
+	public static MessageDiff compute(Message oldMessage, Message newMessage) {
+		MessageModel model = newMessage.getModel();
+		if (!model.getObjectUuid().equals(oldMessage.getModel().getObjectUuid())) {
+			throw new RuntimeException("Cannot compute diff of messages with different models:" + oldMessage.getModel().getObjectUuid() + " <-> " + model.getObjectUuid());
+		}
+		MessageDiff diff = new MessageDiff(model);
+		if (oldMessage == newMessage) {
+			return diff;
+		}
+		for (MessageAttribute attribute : newMessage.getAttributes()) {
+			AttributeDefinition definition = attribute.getAttributeDefinition();
+			MessageAttribute oldAttribute = oldMessage.getAttributeByKey(definition.getKey());
+			if (oldAttribute == null || oldAttribute.getAttributeDefinition().getType() != definition.getType()) {
+				diff.changes.add(new Change(ChangeType.SET, definition, attribute, null, null));
+			} else if (oldAttribute != attribute) {
+				diff.addChange(definition, oldAttribute, attribute);
+			}
+		}
+		for (MessageAttribute oldAttribute : oldMessage.getAttributes()) {
+			AttributeDefinition definition = oldAttribute.getAttributeDefinition();
+			if (newMessage.getAttributeByKey(definition.getKey()) == null) {
+				diff.changes.add(new Change(ChangeType.REMOVE, definition, null, null, null));
+			}
+		}
+		return diff;
+	}
+
+	private void addChange(AttributeDefinition definition, MessageAttribute oldAttribute, MessageAttribute attribute) {
+		switch (definition.getType()) {
+			case OBJECT_SINGLE_REFERENCE -> {
+				Message oldMessage = oldAttribute.getReferencedObject();
+				Message message = attribute.getReferencedObject();
+				if (!oldMessage.getModel().getObjectUuid().equals(message.getModel().getObjectUuid())) {
+					changes.add(new Change(ChangeType.SET, definition, attribute, null, null));
+					return;
+				}
+				MessageDiff diff = compute(oldMessage, message);
+				if (!diff.isEmpty()) {
+					changes.add(new Change(ChangeType.REFERENCE, definition, null, diff, null));
+				}
+			}
+			case OBJECT_MULTI_REFERENCE -> {
+				List<ElementChange> elementChanges = computeElementChanges(oldAttribute.getReferencedObjects(), attribute.getReferencedObjects());
+				if (elementChanges != null) {
+					changes.add(new Change(ChangeType.REFERENCES, definition, null, null, elementChanges));
+				}
+			}
+			default -> {
+				if (!((MessageAttributeImpl) oldAttribute).contentEquals((MessageAttributeImpl) attribute)) {
+					changes.add(new Change(ChangeType.SET, definition, attribute, null, null));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns null if the lists are equal.
+	 */
+	private static List<ElementChange> computeElementChanges(List<Message> oldMessages, List<Message> messages) {
+		oldMessages = oldMessages != null ? oldMessages : Collections.emptyList();
+		messages = messages != null ? messages : Collections.emptyList();
+		Map<Integer, Integer> oldIndexByRecordId = getIndexByRecordId(oldMessages);
+		boolean byRecordId = oldIndexByRecordId != null && getIndexByRecordId(messages) != null;
+		List<ElementChange> elementChanges = new ArrayList<>();
+		boolean changed = oldMessages.size() != messages.size();
+		for (int i = 0; i < messages.size(); i++) {
+			Message message = messages.get(i);
+			int index = byRecordId ? oldIndexByRecordId.getOrDefault(message.getRecordId(), -1) : i < oldMessages.size() ? i : -1;
+			changed |= index != i;
+			if (index < 0 || !oldMessages.get(index).getModel().getObjectUuid().equals(message.getModel().getObjectUuid())) {
+				elementChanges.add(new ElementChange(ElementChangeType.INSERT, -1, 0, null, message));
+				changed = true;
+				continue;
+			}
+			MessageDiff diff = compute(oldMessages.get(index), message);
+			ElementChange last = elementChanges.isEmpty() ? null : elementChanges.get(elementChanges.size() - 1);
+			if (!diff.isEmpty()) {
+				elementChanges.add(new ElementChange(ElementChangeType.PATCH, index, 0, diff, null));
+				changed = true;
+			} else if (last != null && last.type == ElementChangeType.KEEP && last.index + last.count == index) {
+				last.count++;
+			} else {
+				elementChanges.add(new ElementChange(ElementChangeType.KEEP, index, 1, null, null));
+			}
+		}
+		return changed ? elementChanges : null;
+	}
+
+	/**
+	 * Returns null if not all messages have a distinct record id.
+	 */
+	private static Map<Integer, Integer> getIndexByRecordId(List<Message> messages) {
+		Map<Integer, Integer> indexByRecordId = new HashMap<>();
+		for (int i = 0; i < messages.size(); i++) {
+			int recordId = messages.get(i).getRecordId();
+			if (recordId == 0 || indexByRecordId.put(recordId, i) != null) {
+				return null;
+			}
+		}
+		return indexByRecordId;
+	}
+
+	public MessageModel getModel() {
+		return model;
+	}
+
+	public List<Change> getChanges() {
+		return changes;
+	}
+
+	public boolean isEmpty() {
+		return changes.isEmpty();
+	}
+
+	/**
+	 * Encodes the diff as patch: the object uuid of the model followed by the changes in the compact message format.
+	 */
+	public byte[] toBytes() {
+		byte[] bytes = new byte[MessageUtils.getStringSize(model.getObjectUuid(), FORMAT) + getChangesSize()];
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		MessageUtils.writeString(buffer, model.getObjectUuid(), FORMAT);
+		writeChanges(buffer);
+		return bytes;
+	}
+
+	private void writeChanges(ByteBuffer buffer) {
+		MessageUtils.writeLength(buffer, changes.size(), FORMAT);
+		for (Change change : changes) {
+			change.write(buffer);
+		}
+	}
+
+	private int getChangesSize() {
+		int size = MessageUtils.getLengthSize(changes.size(), FORMAT);
+		for (Change change : changes) {
+			size += change.getSerializedSize();
+		}
+		return size;
+	}
+
+	public static Message apply(Message message, byte[] patch, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		return apply(message, ByteBuffer.wrap(patch), null, decoderRegistry);
+	}
+
+	/**
+	 * Applies the patch to the message it was computed from. A mutable message is changed in place and returned, a
+	 * frozen message is not changed, a frozen copy is returned that shares all unchanged attributes and subtrees.
+	 */
+	public static Message apply(Message message, ByteBuffer buffer, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		String objectUuid = MessageUtils.readString(buffer, FORMAT);
+		if (!message.getModel().getObjectUuid().equals(objectUuid)) {
+			throw new RuntimeException("Cannot apply patch with wrong model:" + objectUuid + ", expected:" + message.getModel().getObjectUuid());
+		}
+		return applyChanges(message, buffer, fileDataReader, decoderRegistry);
+	}
+
+	private static Message applyChanges(Message message, ByteBuffer buffer, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		boolean frozen = message.isFrozen();
+		Message target = frozen ? message.copy() : message;
+		MessageModel model = target.getModel();
+		int changeCount = MessageUtils.readLength(buffer, FORMAT);
+		for (int i = 0; i < changeCount; i++) {
+			ChangeType type = ChangeType.getById(buffer.get());
+			if (type == ChangeType.SET) {
+				int attributeStart = buffer.position();
+				AttributeType attributeType = AttributeType.getById(buffer.get());
+				if (model.getAttributeDefinitionByKey(MessageUtils.readShort(buffer, FORMAT)) == null) {
+					MessageUtils.skipValue(buffer, attributeType, FORMAT);
+					continue;
+				}
+				buffer.position(attributeStart);
+				MessageAttributeImpl attribute = new MessageAttributeImpl(buffer, model, fileDataReader, decoderRegistry, FORMAT);
+				target.replaceAttribute(attribute.getAttributeDefinition(), attribute);
+				continue;
+			}
+			AttributeDefinition definition = model.getAttributeDefinitionByKey(MessageUtils.readShort(buffer, FORMAT));
+			if (definition == null) {
+				skipChange(type, buffer);
+				continue;
+			}
+			MessageAttribute attribute = target.getAttribute(definition);
+			switch (type) {
+				case REMOVE -> target.replaceAttribute(definition, null);
+				case REFERENCE -> {
+					if (attribute == null) {
+						throw new RuntimeException("Cannot apply patch, missing reference:" + definition.getName());
+					}
+					Message reference = attribute.getReferencedObject();
+					Message updated = applyChanges(reference, buffer, fileDataReader, decoderRegistry);
+					target.replaceAttribute(definition, updated != reference ? new MessageAttributeImpl(definition, updated) : attribute);
+				}
+				case REFERENCES -> {
+					List<Message> messages = attribute != null ? attribute.getReferencedObjects() : null;
+					target.replaceAttribute(definition, new MessageAttributeImpl(definition, applyElementChanges(messages, definition, buffer, fileDataReader, decoderRegistry)));
+				}
+			}
+		}
+		return frozen ? target.freeze() : target;
+	}
+
+	/**
+	 * Skips a change of an attribute the receiver's model does not know, like the decoder skips unknown attributes.
+	 */
+	private static void skipChange(ChangeType type, ByteBuffer buffer) {
+		switch (type) {
+			case REFERENCE -> skipChanges(buffer);
+			case REFERENCES -> {
+				int elementChangeCount = MessageUtils.readLength(buffer, FORMAT);
+				for (int i = 0; i < elementChangeCount; i++) {
+					switch (ElementChangeType.getById(buffer.get())) {
+						case KEEP -> {
+							MessageUtils.readLength(buffer, FORMAT);
+							MessageUtils.readLength(buffer, FORMAT);
+						}
+						case PATCH -> {
+							MessageUtils.readLength(buffer, FORMAT);
+							skipChanges(buffer);
+						}
+						case INSERT -> MessageUtils.skipValue(buffer, AttributeType.OBJECT_SINGLE_REFERENCE, FORMAT);
+					}
+				}
+			}
+		}
+	}
+
+	private static void skipChanges(ByteBuffer buffer) {
+		int changeCount = MessageUtils.readLength(buffer, FORMAT);
+		for (int i = 0; i < changeCount; i++) {
+			ChangeType type = ChangeType.getById(buffer.get());
+			if (type == ChangeType.SET) {
+				AttributeType attributeType = AttributeType.getById(buffer.get());
+				MessageUtils.readShort(buffer, FORMAT);
+				MessageUtils.skipValue(buffer, attributeType, FORMAT);
+			} else {
+				MessageUtils.readShort(buffer, FORMAT);
+				skipChange(type, buffer);
+			}
+		}
+	}
+
+	private static List<Message> applyElementChanges(List<Message> messages, AttributeDefinition definition, ByteBuffer buffer, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		MessageModel referencedModel = definition.getReferencedObject();
+		PojoObjectDecoder<? extends Message> messageDecoder = decoderRegistry != null ? decoderRegistry.getMessageDecoder(referencedModel.getObjectUuid()) : null;
+		int elementChangeCount = MessageUtils.readLength(buffer, FORMAT);
+		List<Message> updatedMessages = new ArrayList<>(elementChangeCount);
+		for (int i = 0; i < elementChangeCount; i++) {
+			switch (ElementChangeType.getById(buffer.get())) {
+				case KEEP -> {
+					int index = MessageUtils.readLength(buffer, FORMAT);
+					int count = MessageUtils.readLength(buffer, FORMAT);
+					updatedMessages.addAll(messages.subList(index, index + count));
+				}
+				case PATCH -> updatedMessages.add(applyChanges(messages.get(MessageUtils.readLength(buffer, FORMAT)), buffer, fileDataReader, decoderRegistry));
+				case INSERT -> updatedMessages.add(MessageAttributeImpl.readReference(MessageUtils.readMessageFrame(buffer, FORMAT), referencedModel, messageDecoder, fileDataReader, decoderRegistry, false));
+			}
+		}
+		return updatedMessages;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(model.getName()).append(" diff");
+		for (Change change : changes) {
+			sb.append(", ").append(change.getType()).append(" ").append(change.getAttributeDefinition().getName());
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,84 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.message;
+
+public enum MessageFormat {
+
+	FIXED_WIDTH(0),
+	COMPACT(1),
+	/**
+	 * Compact encoding where every nested message and every multi reference list is prefixed with its byte length,
+	 * so that readers can skip or slice referenced messages without parsing them.
+	 */
+	FRAMED(2),
+	;
+
+	private static final int MARKER_FLAG = 0x80;
+
+	private final int id;
+
+	MessageFormat(int id) {
+		this.id = id;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public boolean isCompact() {
+		return this != FIXED_WIDTH;
+	}
+
+	public boolean isFramed() {
+		return this == FRAMED;
+	}
+
+	/**
+	 * Compact messages start with a marker byte. Fixed width messages start with the big-endian length of the
+	 * object uuid whose first byte never has the highest bit set, so both formats can be told apart by the first byte.
+	 */
+	public int getMarker() {
+		return MARKER_FLAG | id;
+	}
+
+	public static boolean isMarker(int firstByte) {
+		return (firstByte & MARKER_FLAG) != 0;
+	}
+
+	public static MessageFormat getByMarker(int firstByte) {
+		if (!isMarker(firstByte)) {
+			return FIXED_WIDTH;
+		}
+		MessageFormat format = getById(firstByte & ~MARKER_FLAG & 0xFF);
+		if (format == null || format == FIXED_WIDTH) {
+			throw new RuntimeException("Message parsing error - unknown message format marker:" + firstByte);
+		}
+		return format;
+	}
+
+	public static MessageFormat getById(int id) {
+		return switch (id) {
+			case 0 -> FIXED_WIDTH;
+			case 1 -> COMPACT;
+			case 2 -> FRAMED;
+			default -> null;
+		};
+	}
+}
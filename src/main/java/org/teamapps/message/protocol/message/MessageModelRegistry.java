@@ -26,7 +26,10 @@ import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 public class MessageModelRegistry implements ModelRegistry {
 
@@ -35,6 +38,9 @@ public class MessageModelRegistry implements ModelRegistry {
 	private Set<String> allModelKeys = new HashSet<>();
 	private List<MessageModel> allModels = new ArrayList<>();
 	private Map<String, PojoObjectDecoder<? extends Message>> decoderByUuid = new ConcurrentHashMap<>();
+	private Map<MessageModel, CompletableFuture<MessageCodec>> codecByModel = new ConcurrentHashMap<>();
+	private volatile Function<MessageModel, MessageCodec> codecFactory;
+	private volatile Executor codecExecutor;
 
 	public MessageModelRegistry() {
 	}
@@ -81,8 +87,12 @@ public class MessageModelRegistry implements ModelRegistry {
 	@Override
 	public MessageModel getModel(byte[] message) throws IOException {
 		DataInputStream dis = new DataInputStream(new ByteArrayInputStream(message));
-		String objectUuid = MessageUtils.readString(dis);
-		short modelVersion = dis.readShort();
+		MessageFormat format = Message.readMessageFormat(message);
+		if (format.isCompact()) {
+			dis.readByte();
+		}
+		String objectUuid = MessageUtils.readString(dis, format);
+		short modelVersion = MessageUtils.readShort(dis, format);
 		return getModel(objectUuid, modelVersion);
 	}
 
@@ -150,6 +160,28 @@ public class MessageModelRegistry implements ModelRegistry {
 		decoderByUuid.put(uuid, decoder);
 	}
 
+	/**
+	 * Enables specialized codecs, e.g. the ones of {@code MessageCodecCompiler}. The codec of a model is created once
+	 * on the executor when it is first requested, until it is available {@link #getMessageCodec(MessageModel)} returns
+	 * null and messages are decoded generically. The factory may return null if it cannot create a codec.
+	 */
+	public MessageModelRegistry setMessageCodecFactory(Function<MessageModel, MessageCodec> codecFactory, Executor executor) {
+		this.codecExecutor = executor;
+		this.codecFactory = codecFactory;
+		codecByModel.clear();
+		return this;
+	}
+
+	@Override
+	public MessageCodec getMessageCodec(MessageModel model) {
+		Function<MessageModel, MessageCodec> factory = codecFactory;
+		if (factory == null) {
+			return null;
+		}
+		CompletableFuture<MessageCodec> codec = codecByModel.computeIfAbsent(model, key -> CompletableFuture.supplyAsync(() -> factory.apply(key), codecExecutor));
+		return codec.isDone() && !codec.isCompletedExceptionally() ? codec.join() : null;
+	}
+
 	@Override
 	public byte[] toBytes() {
 		return new byte[0];
@@ -21,8 +21,10 @@ package org.teamapps.message.protocol.message;
 
 import org.teamapps.message.protocol.file.FileDataWriter;
 import org.teamapps.message.protocol.model.MessageModel;
+import org.teamapps.message.protocol.utils.MessageUtils;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.List;
 
@@ -42,6 +44,36 @@ public interface MessageRecord {
 	//todo this api should be reconsidered because it changes the object
 	byte[] toBytes(FileDataWriter fileDataWriter, boolean updateFileData) throws IOException;
 
+	/**
+	 * Writes the message without a file data writer, the buffer must have {@link #getSerializedSize(MessageFormat)} bytes remaining.
+	 * The default implementation writes the attributes returned by {@link #getAttributes()}.
+	 */
+	default void write(ByteBuffer buffer, MessageFormat format) {
+		List<MessageAttribute> attributes = getAttributes();
+		MessageUtils.writeMessageHeader(buffer, getModel(), attributes.size(), format);
+		for (MessageAttribute attribute : attributes) {
+			attribute.write(buffer, format);
+		}
+	}
+
+	default int getSerializedSize(MessageFormat format) {
+		List<MessageAttribute> attributes = getAttributes();
+		int size = MessageUtils.getMessageHeaderSize(getModel(), attributes.size(), format);
+		for (MessageAttribute attribute : attributes) {
+			size += attribute.getSerializedSize(format);
+		}
+		return size;
+	}
+
+	/**
+	 * Size for writers that put the length of a nested message in front of it while they write its parent. The buffer
+	 * of the parent has been sized with {@link #getSerializedSize(MessageFormat)}, so a message may return the size it
+	 * computed for this format in that call instead of sizing its subtree again at every level.
+	 */
+	default int getWrittenSize(MessageFormat format) {
+		return getSerializedSize(format);
+	}
+
 	String toXml() throws IOException;
 
 	int getRecordId();
@@ -0,0 +1,87 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.message;
+
+import org.teamapps.message.protocol.model.AttributeDefinition;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Selects the attributes to decode. Attributes are selected by name or key, nested attributes of referenced messages
+ * by dotted paths like {@code "order.items.price"}. Selecting a reference without a path decodes it completely.
+ */
+public class Projection {
+
+	private final Map<String, Projection> attributes = new HashMap<>();
+	private final Set<Integer> keys = new HashSet<>();
+
+	public static Projection of(String... paths) {
+		Projection projection = new Projection();
+		for (String path : paths) {
+			projection.addPath(path);
+		}
+		return projection;
+	}
+
+	public static Projection ofKeys(int... keys) {
+		Projection projection = new Projection();
+		for (int key : keys) {
+			projection.addKey(key);
+		}
+		return projection;
+	}
+
+	public Projection addPath(String path) {
+		int separator = path.indexOf('.');
+		if (separator < 0) {
+			attributes.put(path, null);
+			return this;
+		}
+		String name = path.substring(0, separator);
+		if (attributes.containsKey(name) && attributes.get(name) == null) {
+			return this;
+		}
+		attributes.computeIfAbsent(name, n -> new Projection()).addPath(path.substring(separator + 1));
+		return this;
+	}
+
+	public Projection addKey(int key) {
+		keys.add(key);
+		return this;
+	}
+
+	public boolean contains(int key) {
+		return keys.contains(key);
+	}
+
+	public boolean contains(AttributeDefinition attributeDefinition) {
+		return keys.contains(attributeDefinition.getKey()) || attributes.containsKey(attributeDefinition.getName());
+	}
+
+	/**
+	 * Projection of a referenced message, or null if the referenced message is decoded completely.
+	 */
+	public Projection getReferenceProjection(AttributeDefinition attributeDefinition) {
+		return keys.contains(attributeDefinition.getKey()) ? null : attributes.get(attributeDefinition.getName());
+	}
+}
@@ -20,6 +20,7 @@
 package org.teamapps.message.protocol.model;
 
 
+import org.teamapps.message.protocol.message.AttributeEncoding;
 import org.teamapps.message.protocol.message.AttributeType;
 import org.teamapps.message.protocol.message.DefinitionCache;
 import org.teamapps.message.protocol.message.MessageDefinition;
@@ -34,10 +35,18 @@ public interface AttributeDefinition extends BaseDefinition {
 
 	int getKey();
 
+	/**
+	 * Position of the attribute in {@link MessageModel#getAttributeDefinitions()} of its parent model, or -1 if the
+	 * definition is not part of a model, like the definitions of unknown attributes created while decoding.
+	 */
+	int getOrdinal();
+
 	String getDefaultValue();
 
 	AttributeType getType();
 
+	AttributeEncoding getEncoding();
+
 	MessageModel getReferencedObject();
 
 	EnumDefinition getEnumDefinition();
@@ -19,6 +19,7 @@
  */
 package org.teamapps.message.protocol.model;
 
+import org.teamapps.message.protocol.message.AttributeEncoding;
 import org.teamapps.message.protocol.message.Message;
 
 public interface ExtendedAttributesUpdater {
@@ -26,4 +27,5 @@ public interface ExtendedAttributesUpdater {
 	ExtendedAttributesUpdater setDefaultValue(String defaultValue);
 	ExtendedAttributesUpdater setComment(String comment);
 	ExtendedAttributesUpdater setSpecificType(Message specificType);
+	ExtendedAttributesUpdater setEncoding(AttributeEncoding encoding);
 }
@@ -0,0 +1,64 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.model;
+
+import org.teamapps.message.protocol.file.FileDataReader;
+import org.teamapps.message.protocol.message.Message;
+import org.teamapps.message.protocol.message.MessageFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes and writes the messages of one model with code specialized for its attributes. Codecs for models that are
+ * only known at runtime can be provided by {@link ModelRegistry#getMessageCodec(MessageModel)}.
+ */
+public interface MessageCodec {
+
+	MessageModel getModel();
+
+	/**
+	 * Reads the attribute count and all attributes into the message, the buffer must be positioned after the header.
+	 */
+	void readAttributes(Message message, ByteBuffer buffer, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry, MessageFormat format) throws IOException;
+
+	/**
+	 * Writes all attributes of the message in their order, without the header and the attribute count.
+	 */
+	void writeAttributes(Message message, ByteBuffer buffer, MessageFormat format);
+
+	default Message decode(ByteBuffer buffer, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		Message message = new Message(getModel());
+		MessageFormat format = Message.readHeader(buffer, getModel());
+		readAttributes(message, buffer, fileDataReader, decoderRegistry, format);
+		return message;
+	}
+
+	default void write(Message message, ByteBuffer buffer, MessageFormat format) {
+		message.writeHeader(buffer, message.getAttributes().size(), format);
+		writeAttributes(message, buffer, format);
+	}
+
+	default byte[] toBytes(Message message, MessageFormat format) {
+		byte[] bytes = new byte[message.getSerializedSize(format)];
+		write(message, ByteBuffer.wrap(bytes), format);
+		return bytes;
+	}
+}
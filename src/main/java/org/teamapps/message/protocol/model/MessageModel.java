@@ -32,6 +32,13 @@ public interface MessageModel extends BaseDefinition {
 
 	boolean isMessageRecord();
 
+	/**
+	 * True if generated code should also contain a record class that keeps the attributes in typed fields.
+	 */
+	default boolean isFieldBacked() {
+		return false;
+	}
+
 	short getModelVersion();
 
 	List<AttributeDefinition> getAttributeDefinitions();
@@ -42,6 +42,14 @@ public interface ModelRegistry extends PojoObjectDecoderRegistry {
 
 	ModelRegistry addModelCollection(ModelCollection collection);
 
+	/**
+	 * Returns a codec specialized for the model or null if there is none, messages of the model are then decoded
+	 * generically.
+	 */
+	default MessageCodec getMessageCodec(MessageModel model) {
+		return null;
+	}
+
 	byte[] toBytes();
 
 }
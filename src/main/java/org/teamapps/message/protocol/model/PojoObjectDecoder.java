@@ -20,11 +20,14 @@
 package org.teamapps.message.protocol.model;
 
 import org.teamapps.message.protocol.file.FileDataReader;
+import org.teamapps.message.protocol.message.Message;
 import org.teamapps.message.protocol.message.MessageRecord;
+import org.teamapps.message.protocol.message.Projection;
 import org.w3c.dom.Element;
 
-import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public interface PojoObjectDecoder<MESSAGE extends MessageRecord> {
 
@@ -41,7 +44,30 @@ public interface PojoObjectDecoder<MESSAGE extends MessageRecord> {
 	String getMessageUuid();
 
 	default MESSAGE decode(byte[] bytes, FileDataReader fileDataReader) {
-		return decode(new DataInputStream(new ByteArrayInputStream(bytes)), fileDataReader);
+		return decode(ByteBuffer.wrap(bytes), fileDataReader);
+	}
+
+	default MESSAGE decode(ByteBuffer buffer, FileDataReader fileDataReader) {
+		try {
+			return remap(new Message(buffer, fileDataReader));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Decodes only the attributes selected by the projection. Decoders without projection support decode the complete message.
+	 */
+	default MESSAGE decode(ByteBuffer buffer, FileDataReader fileDataReader, Projection projection) {
+		return decode(buffer, fileDataReader);
+	}
+
+	default MESSAGE decodeLazy(byte[] bytes, FileDataReader fileDataReader) {
+		return decodeLazy(ByteBuffer.wrap(bytes), fileDataReader);
+	}
+
+	default MESSAGE decodeLazy(ByteBuffer buffer, FileDataReader fileDataReader) {
+		return decode(buffer, fileDataReader);
 	}
 
 }
@@ -0,0 +1,179 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.utils;
+
+import org.teamapps.message.protocol.file.FileDataWriter;
+import org.teamapps.message.protocol.message.Message;
+import org.teamapps.message.protocol.message.MessageFormat;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Encodes messages into a reusable, growing buffer. The buffers returned by the encode methods are views of this
+ * buffer and are only valid until the encoder is used again.
+ * <p>
+ * An encoder is not thread safe. Either keep one per thread or connection, or borrow one with {@link #acquire()} and
+ * return it with {@link #close()}. The pool is bounded and does not pin virtual threads.
+ */
+public class MessageEncoder implements AutoCloseable {
+
+	private static final int INITIAL_CAPACITY = 4_096;
+	private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+	private static final BlockingQueue<MessageEncoder> POOL = new ArrayBlockingQueue<>(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+	private ByteBuffer buffer;
+	private final DataOutputStream dataOutputStream;
+	private boolean pooled;
+
+	public MessageEncoder() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public MessageEncoder(int initialCapacity) {
+		this.buffer = ByteBuffer.allocate(initialCapacity);
+		this.dataOutputStream = new DataOutputStream(new BufferOutputStream());
+	}
+
+	public static MessageEncoder acquire() {
+		MessageEncoder encoder = POOL.poll();
+		if (encoder == null) {
+			encoder = new MessageEncoder();
+		}
+		encoder.pooled = true;
+		return encoder;
+	}
+
+	public ByteBuffer encode(Message message) {
+		return encode(message, MessageFormat.FIXED_WIDTH);
+	}
+
+	public ByteBuffer encode(Message message, MessageFormat format) {
+		write(message, format, 0);
+		return buffer.slice(0, buffer.position());
+	}
+
+	public ByteBuffer encode(Message message, FileDataWriter fileDataWriter, boolean updateFileData, MessageFormat format) throws IOException {
+		if (fileDataWriter == null) {
+			return encode(message, format);
+		}
+		return encode(dos -> message.write(dos, fileDataWriter, updateFileData, format));
+	}
+
+	/**
+	 * Encodes whatever the writer produces, for content that can only be written to a stream.
+	 */
+	public ByteBuffer encode(DataWriter writer) throws IOException {
+		buffer.clear();
+		writer.write(dataOutputStream);
+		dataOutputStream.flush();
+		return buffer.slice(0, buffer.position());
+	}
+
+	/**
+	 * Encodes the message preceded by its length as a four byte int, as written by {@link MessageWriter}.
+	 */
+	public ByteBuffer encodeFrame(Message message, FileDataWriter fileDataWriter, MessageFormat format) throws IOException {
+		if (fileDataWriter == null) {
+			write(message, format, 4);
+		} else {
+			buffer.clear();
+			dataOutputStream.writeInt(0);
+			message.write(dataOutputStream, fileDataWriter, false, format);
+			dataOutputStream.flush();
+		}
+		buffer.putInt(0, buffer.position() - 4);
+		return buffer.slice(0, buffer.position());
+	}
+
+	public void encodeTo(Message message, WritableByteChannel channel) throws IOException {
+		encodeTo(message, MessageFormat.FIXED_WIDTH, channel);
+	}
+
+	public void encodeTo(Message message, MessageFormat format, WritableByteChannel channel) throws IOException {
+		ByteBuffer encoded = encode(message, format);
+		while (encoded.hasRemaining()) {
+			channel.write(encoded);
+		}
+	}
+
+	public void encodeTo(Message message, MessageFormat format, OutputStream outputStream) throws IOException {
+		ByteBuffer encoded = encode(message, format);
+		outputStream.write(encoded.array(), encoded.arrayOffset(), encoded.remaining());
+	}
+
+	/**
+	 * Returns a pooled encoder to the pool, encoders created with a constructor are not affected.
+	 */
+	@Override
+	public void close() {
+		if (pooled) {
+			pooled = false;
+			if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+				buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+			}
+			POOL.offer(this);
+		}
+	}
+
+	/**
+	 * Sizes the message first, which also sizes its nested messages for the write, and grows the buffer at most once.
+	 */
+	private void write(Message message, MessageFormat format, int offset) {
+		int size = message.getSerializedSize(format);
+		if (buffer.capacity() < offset + size) {
+			buffer = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, offset + size));
+		}
+		buffer.clear().position(offset);
+		message.write(buffer, format);
+	}
+
+	private void ensureRemaining(int length) {
+		if (buffer.remaining() < length) {
+			ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+			grown.put(buffer.flip());
+			buffer = grown;
+		}
+	}
+
+	public interface DataWriter {
+		void write(DataOutputStream dos) throws IOException;
+	}
+
+	private class BufferOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) {
+			ensureRemaining(1);
+			buffer.put((byte) b);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+			ensureRemaining(length);
+			buffer.put(bytes, offset, length);
+		}
+	}
+}
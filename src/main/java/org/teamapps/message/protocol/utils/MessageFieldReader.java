@@ -0,0 +1,191 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.utils;
+
+import org.teamapps.message.protocol.message.AttributeType;
+import org.teamapps.message.protocol.message.Message;
+import org.teamapps.message.protocol.message.MessageFormat;
+import org.teamapps.message.protocol.model.AttributeDefinition;
+import org.teamapps.message.protocol.model.MessageModel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads single top level attributes directly from serialized messages without decoding the message. The attribute
+ * headers are scanned and all other values are skipped by type with {@link MessageUtils#skipValue}. Missing
+ * attributes return the same defaults as the getters of {@link Message}. The overloads that take a model throw if the
+ * message belongs to another model, the overloads that take a key read any message.
+ */
+public class MessageFieldReader {
+
+	public static boolean containsAttribute(byte[] bytes, int key) {
+		return findAttribute(ByteBuffer.wrap(bytes), key) != null;
+	}
+
+	public static boolean readBoolean(byte[] bytes, MessageModel model, String name) {
+		return readBoolean(checkModel(bytes, model), getKey(model, name));
+	}
+
+	public static boolean readBoolean(byte[] bytes, int key) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		return findValue(buffer, key, AttributeType.BOOLEAN) != null && MessageUtils.readBoolean(buffer);
+	}
+
+	public static byte readByte(byte[] bytes, MessageModel model, String name) {
+		return readByte(checkModel(bytes, model), getKey(model, name));
+	}
+
+	public static byte readByte(byte[] bytes, int key) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		return findValue(buffer, key, AttributeType.BYTE) != null ? buffer.get() : 0;
+	}
+
+	public static int readInt(byte[] bytes, MessageModel model, String name) {
+		return readInt(checkModel(bytes, model), getKey(model, name));
+	}
+
+	/**
+	 * Reads an int or enum attribute.
+	 */
+	public static int readInt(byte[] bytes, int key) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		MessageFormat format = findValue(buffer, key, AttributeType.INT);
+		return format != null ? MessageUtils.readInt(buffer, format) : 0;
+	}
+
+	public static long readLong(byte[] bytes, MessageModel model, String name) {
+		return readLong(checkModel(bytes, model), getKey(model, name));
+	}
+
+	public static long readLong(byte[] bytes, int key) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		MessageFormat format = findValue(buffer, key, AttributeType.LONG);
+		return format != null ? MessageUtils.readLong(buffer, format) : 0;
+	}
+
+	public static float readFloat(byte[] bytes, MessageModel model, String name) {
+		return readFloat(checkModel(bytes, model), getKey(model, name));
+	}
+
+	public static float readFloat(byte[] bytes, int key) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		return findValue(buffer, key, AttributeType.FLOAT) != null ? buffer.getFloat() : 0;
+	}
+
+	public static double readDouble(byte[] bytes, MessageModel model, String name) {
+		return readDouble(checkModel(bytes, model), getKey(model, name));
+	}
+
+	public static double readDouble(byte[] bytes, int key) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		return findValue(buffer, key, AttributeType.DOUBLE) != null ? buffer.getDouble() : 0;
+	}
+
+	public static String readString(byte[] bytes, MessageModel model, String name) {
+		return readString(checkModel(bytes, model), getKey(model, name));
+	}
+
+	public static String readString(byte[] bytes, int key) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		MessageFormat format = findValue(buffer, key, AttributeType.STRING);
+		return format != null ? MessageUtils.readString(buffer, format) : null;
+	}
+
+	/**
+	 * Compares the object uuid of the message with the model, like {@link Message} does when it decodes the message,
+	 * so that a key is never read from a message of another model.
+	 */
+	private static byte[] checkModel(byte[] bytes, MessageModel model) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		MessageFormat format = Message.readMessageFormat(buffer);
+		int length = MessageUtils.readLength(buffer, format);
+		String objectUuid = model.getObjectUuid();
+		if (!isObjectUuid(bytes, buffer.position(), length, objectUuid)) {
+			String actual = new String(bytes, buffer.position(), length, StandardCharsets.UTF_8);
+			if (!actual.equals(objectUuid)) {
+				throw new RuntimeException("Cannot read field of message with wrong model:" + actual + ", expected:" + objectUuid);
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Compares ASCII object uuids without decoding them.
+	 */
+	private static boolean isObjectUuid(byte[] bytes, int offset, int length, String objectUuid) {
+		if (length != objectUuid.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (bytes[offset + i] != objectUuid.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int getKey(MessageModel model, String name) {
+		AttributeDefinition attributeDefinition = model.getAttributeDefinitionByName(name);
+		if (attributeDefinition == null) {
+			throw new RuntimeException("Message model does not contain a field with name:" + name);
+		}
+		return attributeDefinition.getKey();
+	}
+
+	/**
+	 * Positions the buffer at the value of the attribute and returns the format of the message, or null if the
+	 * message does not contain the attribute.
+	 */
+	private static MessageFormat findValue(ByteBuffer buffer, int key, AttributeType expectedType) {
+		MessageFormat format = findAttribute(buffer, key);
+		if (format == null) {
+			return null;
+		}
+		AttributeType type = AttributeType.getById(buffer.get());
+		if (type != expectedType && !(expectedType == AttributeType.INT && type == AttributeType.ENUM)) {
+			throw new RuntimeException("Message parsing error - property type mismatch: " + type + " <-> " + expectedType);
+		}
+		MessageUtils.readShort(buffer, format);
+		return format;
+	}
+
+	/**
+	 * Positions the buffer at the header of the attribute and returns the format of the message, or null if the
+	 * message does not contain the attribute.
+	 */
+	private static MessageFormat findAttribute(ByteBuffer buffer, int key) {
+		MessageFormat format = Message.readMessageFormat(buffer);
+		int uuidLength = MessageUtils.readLength(buffer, format);
+		buffer.position(buffer.position() + uuidLength);
+		MessageUtils.readShort(buffer, format);
+		int attributesCount = MessageUtils.readShort(buffer, format);
+		for (int i = 0; i < attributesCount; i++) {
+			int attributeStart = buffer.position();
+			AttributeType type = AttributeType.getById(buffer.get());
+			if (MessageUtils.readShort(buffer, format) == (short) key) {
+				buffer.position(attributeStart);
+				return format;
+			}
+			MessageUtils.skipValue(buffer, type, format);
+		}
+		return null;
+	}
+}
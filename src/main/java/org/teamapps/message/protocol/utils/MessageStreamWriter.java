@@ -0,0 +1,167 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.utils;
+
+import org.teamapps.message.protocol.file.FileDataWriter;
+import org.teamapps.message.protocol.message.Message;
+import org.teamapps.message.protocol.message.MessageAttribute;
+import org.teamapps.message.protocol.message.MessageFormat;
+import org.teamapps.message.protocol.model.AttributeDefinition;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes a message whose multi reference attribute is supplied one child at a time, so that only the current child
+ * has to be in memory. The streamed attribute is written after all other attributes of the parent.
+ * <p>
+ * If the number of children is passed up front any channel can be used. Otherwise, and for the framed format whose
+ * list length precedes the children, the channel must be a {@link SeekableByteChannel} so that the placeholders can
+ * be filled in afterwards, writing to a plain stream then fails before anything is written.
+ * <p>
+ * Back-patched counts and lengths of compact formats are written as five byte varints with continuation bits on
+ * the unused upper bytes. They decode like any other varint but are not canonical, so the output of an unknown count
+ * is larger than and not byte-identical to {@link Message#toBytes()} of the same message; pass the count when it is
+ * known to get the canonical encoding of the count.
+ */
+public class MessageStreamWriter {
+
+	private final WritableByteChannel channel;
+	private final FileDataWriter fileDataWriter;
+	private final MessageFormat format;
+	private final MessageEncoder encoder = new MessageEncoder();
+
+	public MessageStreamWriter(OutputStream outputStream, FileDataWriter fileDataWriter, MessageFormat format) {
+		this(Channels.newChannel(outputStream), fileDataWriter, format);
+	}
+
+	public MessageStreamWriter(WritableByteChannel channel, FileDataWriter fileDataWriter, MessageFormat format) {
+		this.channel = channel;
+		this.fileDataWriter = fileDataWriter;
+		this.format = format;
+	}
+
+	public void writeMessage(Message parent, String attributeName, Stream<? extends Message> children) throws IOException {
+		writeMessage(parent, attributeName, -1, children.iterator());
+	}
+
+	public void writeMessage(Message parent, String attributeName, Iterator<? extends Message> children) throws IOException {
+		writeMessage(parent, attributeName, -1, children);
+	}
+
+	/**
+	 * @param count the number of children the iterator returns, or -1 if unknown
+	 */
+	public void writeMessage(Message parent, String attributeName, int count, Iterator<? extends Message> children) throws IOException {
+		AttributeDefinition definition = parent.getModel().getAttributeDefinitionByName(attributeName);
+		if (definition == null || !definition.isMultiReference()) {
+			throw new IllegalArgumentException("No multi reference attribute " + attributeName + " in " + parent.getModel().getName());
+		}
+		if ((count < 0 || format.isFramed()) && !(channel instanceof SeekableByteChannel)) {
+			throw new IllegalArgumentException("Streaming without a known count or in framed format requires a seekable channel");
+		}
+		write(encoder.encode(dos -> {
+			int attributeCount = 1;
+			for (MessageAttribute attribute : parent.getAttributes()) {
+				if (attribute.getAttributeDefinition().getKey() != definition.getKey()) {
+					attributeCount++;
+				}
+			}
+			parent.writeHeader(dos, attributeCount, format);
+			for (MessageAttribute attribute : parent.getAttributes()) {
+				if (attribute.getAttributeDefinition().getKey() != definition.getKey()) {
+					attribute.write(dos, fileDataWriter, false, format);
+				}
+			}
+			dos.writeByte(definition.getType().getId());
+			MessageUtils.writeShort(dos, definition.getKey(), format);
+		}));
+
+		long listStart = format.isFramed() ? reserveLength() : -1;
+		long countSlot = -1;
+		if (count >= 0) {
+			write(encoder.encode(dos -> MessageUtils.writeLength(dos, count, format)));
+		} else {
+			countSlot = reserveLength();
+		}
+		int written = 0;
+		while (children.hasNext()) {
+			ByteBuffer child = encoder.encode(children.next(), fileDataWriter, false, format);
+			if (format.isFramed()) {
+				int length = child.remaining();
+				ByteBuffer frame = ByteBuffer.allocate(MessageUtils.getLengthSize(length, format));
+				MessageUtils.writeLength(frame, length, format);
+				write(frame.flip());
+			}
+			write(child);
+			written++;
+		}
+		if (count >= 0 && count != written) {
+			throw new IllegalStateException("Expected " + count + " children but got " + written);
+		}
+		if (countSlot >= 0) {
+			patchLength(countSlot, written);
+		}
+		if (listStart >= 0) {
+			SeekableByteChannel seekableChannel = (SeekableByteChannel) channel;
+			patchLength(listStart, (int) (seekableChannel.position() - listStart - getReservedLengthSize()));
+		}
+	}
+
+	private long reserveLength() throws IOException {
+		long position = ((SeekableByteChannel) channel).position();
+		write(ByteBuffer.allocate(getReservedLengthSize()));
+		return position;
+	}
+
+	private void patchLength(long slot, int length) throws IOException {
+		SeekableByteChannel seekableChannel = (SeekableByteChannel) channel;
+		ByteBuffer buffer = ByteBuffer.allocate(getReservedLengthSize());
+		if (format.isCompact()) {
+			for (int i = 0; i < 4; i++) {
+				buffer.put((byte) ((length & 0x7F) | 0x80));
+				length >>>= 7;
+			}
+			buffer.put((byte) length);
+		} else {
+			buffer.putInt(length);
+		}
+		long end = seekableChannel.position();
+		seekableChannel.position(slot);
+		write(buffer.flip());
+		seekableChannel.position(end);
+	}
+
+	private int getReservedLengthSize() {
+		return format.isCompact() ? 5 : 4;
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
@@ -20,12 +20,19 @@
 package org.teamapps.message.protocol.utils;
 
 import org.teamapps.message.protocol.file.*;
+import org.teamapps.message.protocol.message.AttributeEncoding;
+import org.teamapps.message.protocol.message.AttributeType;
 import org.teamapps.message.protocol.message.Message;
+import org.teamapps.message.protocol.message.MessageFormat;
+import org.teamapps.message.protocol.message.MessageRecord;
+import org.teamapps.message.protocol.model.MessageModel;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.InputStream;
+import java.nio.*;
 import java.nio.charset.StandardCharsets;
 import java.time.*;
 import java.util.ArrayList;
@@ -34,14 +41,23 @@ import java.util.List;
 
 public class MessageUtils {
 
+	/**
+	 * Size of the scratch buffer used to move primitive arrays in bulk between arrays and streams.
+	 */
+	private static final int BULK_CHUNK_SIZE = 8_192;
+	private static final int MAX_COMPACT_ARRAY_LENGTH = Integer.MAX_VALUE >>> 2;
+
+	private static final int BITSET_ENCODING_MASK = 0b11;
+	private static final int BITSET_SPARSE = 1;
+	private static final int BITSET_BITMAP = 2;
+	private static final int BITSET_RUNS = 3;
+
 	public static Message readMessageOrNull(DataInputStream dis) throws IOException {
 		int len = dis.readInt();
 		if (len == 0) {
 			return null;
 		} else {
-			byte[] bytes = new byte[len];
-			dis.readFully(bytes);
-			return new Message(bytes);
+			return new Message(dis, null);
 		}
 	}
 
@@ -56,15 +72,19 @@ public class MessageUtils {
 	}
 
 	public static FileData readFile(DataInputStream dis, FileDataReader fileProvider) throws IOException {
-		long length = dis.readLong();
+		return readFile(dis, fileProvider, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static FileData readFile(DataInputStream dis, FileDataReader fileProvider, MessageFormat format) throws IOException {
+		long length = readLong(dis, format);
 		if (length == 0) {
 			return null;
 		} else {
 			FileDataType type = FileDataType.getById(readByteAsInt(dis));
-			String fileName = readString(dis);
-			String descriptor = readString(dis);
+			String fileName = readString(dis, format);
+			String descriptor = readString(dis, format);
 			boolean encrypted = dis.readBoolean();
-			String encryptionKey = encrypted ? readString(dis) : null;
+			String encryptionKey = encrypted ? readString(dis, format) : null;
 			if (fileProvider != null) {
 				return fileProvider.readFileData(type, fileName, length, descriptor, encrypted, encryptionKey);
 			} else {
@@ -74,15 +94,19 @@ public class MessageUtils {
 	}
 
 	public static FileData readFile(ByteBuffer buffer, FileDataReader fileProvider) throws IOException {
-		long length = buffer.getLong();
+		return readFile(buffer, fileProvider, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static FileData readFile(ByteBuffer buffer, FileDataReader fileProvider, MessageFormat format) throws IOException {
+		long length = readLong(buffer, format);
 		if (length == 0) {
 			return null;
 		} else {
 			FileDataType type = FileDataType.getById(readByteAsInt(buffer));
-			String fileName = readString(buffer);
-			String descriptor = readString(buffer);
+			String fileName = readString(buffer, format);
+			String descriptor = readString(buffer, format);
 			boolean encrypted = readBoolean(buffer);
-			String encryptionKey = encrypted ? readString(buffer) : null;
+			String encryptionKey = encrypted ? readString(buffer, format) : null;
 			if (fileProvider != null) {
 				return fileProvider.readFileData(type, fileName, length, descriptor, encrypted, encryptionKey);
 			} else {
@@ -92,39 +116,75 @@ public class MessageUtils {
 	}
 
 	public static FileData writeFile(DataOutputStream dos, FileData fileData, FileDataWriter fileWriter) throws IOException {
+		return writeFile(dos, fileData, fileWriter, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static FileData writeFile(DataOutputStream dos, FileData fileData, FileDataWriter fileWriter, MessageFormat format) throws IOException {
 		if (fileData == null || fileData.getLength() == 0) {
-			dos.writeLong(0);
+			writeLong(dos, 0, format);
 			return null;
 		} else {
 			FileData data = fileWriter != null ? fileWriter.writeFileData(fileData) : fileData;
-			dos.writeLong(data.getLength());
+			writeLong(dos, data.getLength(), format);
 			writeIntAsByte(dos, data.getType().getId());
-			writeString(dos, data.getFileName());
-			writeString(dos, data.getDescriptor());
+			writeString(dos, data.getFileName(), format);
+			writeString(dos, data.getDescriptor(), format);
 			dos.writeBoolean(data.isEncrypted());
 			if (data.isEncrypted()) {
-				writeString(dos, data.getEncryptionKey());
+				writeString(dos, data.getEncryptionKey(), format);
 			}
 			return data;
 		}
 	}
 
 	public static void writeFile(ByteBuffer buffer, FileData fileData, FileDataWriter fileWriter) throws IOException {
-		if (fileData == null) {
-			buffer.putLong(0);
+		writeFile(buffer, fileData, fileWriter, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static FileData writeFile(ByteBuffer buffer, FileData fileData, FileDataWriter fileWriter, MessageFormat format) throws IOException {
+		if (fileData == null || fileData.getLength() == 0) {
+			writeLong(buffer, 0, format);
+			return null;
 		} else {
 			FileData data = fileWriter != null ? fileWriter.writeFileData(fileData) : fileData;
-			buffer.putLong(data.getLength());
-			writeIntAsByte(buffer, data.getType().getId());
-			writeString(buffer, data.getFileName());
-			writeString(buffer, data.getDescriptor());
-			writeBoolean(buffer, data.isEncrypted());
-			if (data.isEncrypted()) {
-				writeString(buffer, data.getEncryptionKey());
+			writeFile(buffer, data, format);
+			return data;
+		}
+	}
+
+	public static void writeFile(ByteBuffer buffer, FileData fileData, MessageFormat format) {
+		if (fileData == null || fileData.getLength() == 0) {
+			writeLong(buffer, 0, format);
+		} else {
+			writeLong(buffer, fileData.getLength(), format);
+			buffer.put((byte) fileData.getType().getId());
+			writeString(buffer, fileData.getFileName(), format);
+			writeString(buffer, fileData.getDescriptor(), format);
+			writeBoolean(buffer, fileData.isEncrypted());
+			if (fileData.isEncrypted()) {
+				writeString(buffer, fileData.getEncryptionKey(), format);
 			}
 		}
 	}
 
+	/**
+	 * Size of the file descriptor as written without a {@link FileDataWriter}. A writer may replace the descriptor, so the
+	 * size is only exact if no writer is used.
+	 */
+	public static int getFileSize(FileData fileData, MessageFormat format) {
+		if (fileData == null || fileData.getLength() == 0) {
+			return getLongSize(0, format);
+		}
+		int size = getLongSize(fileData.getLength(), format) + 1;
+		size += getStringSize(fileData.getFileName(), format);
+		size += getStringSize(fileData.getDescriptor(), format);
+		size += 1;
+		if (fileData.isEncrypted()) {
+			size += getStringSize(fileData.getEncryptionKey(), format);
+		}
+		return size;
+	}
+
 	public static void writeIntAsByte(DataOutputStream dos, int value) throws IOException {
 		dos.writeByte(value);
 	}
@@ -141,28 +201,330 @@ public class MessageUtils {
 		return buffer.get();
 	}
 
+	public static void writeVarInt(DataOutputStream dos, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			dos.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		dos.writeByte(value);
+	}
+
+	public static void writeVarInt(ByteBuffer buf, int value) {
+		while ((value & ~0x7F) != 0) {
+			buf.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buf.put((byte) value);
+	}
+
+	public static int getVarIntSize(int value) {
+		return value == 0 ? 1 : (38 - Integer.numberOfLeadingZeros(value)) / 7;
+	}
+
+	public static int readVarInt(DataInputStream dis) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = dis.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	public static void writeVarLong(DataOutputStream dos, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			dos.writeByte(((int) value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		dos.writeByte((int) value);
+	}
+
+	public static void writeVarLong(ByteBuffer buf, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buf.put((byte) (((int) value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buf.put((byte) value);
+	}
+
+	public static int getVarLongSize(long value) {
+		return value == 0 ? 1 : (70 - Long.numberOfLeadingZeros(value)) / 7;
+	}
+
+	public static long readVarLong(DataInputStream dis) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = dis.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varlong");
+	}
+
+	public static int readVarInt(ByteBuffer buf) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = buf.get();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new RuntimeException("Message parsing error - malformed varint");
+	}
+
+	public static long readVarLong(ByteBuffer buf) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = buf.get();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new RuntimeException("Message parsing error - malformed varlong");
+	}
+
+	public static int encodeZigZag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	public static int decodeZigZag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public static long encodeZigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	public static long decodeZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public static void writeLength(DataOutputStream dos, int length, MessageFormat format) throws IOException {
+		if (format.isCompact()) {
+			writeVarInt(dos, length);
+		} else {
+			dos.writeInt(length);
+		}
+	}
+
+	public static void writeLength(ByteBuffer buf, int length, MessageFormat format) {
+		if (format.isCompact()) {
+			writeVarInt(buf, length);
+		} else {
+			buf.putInt(length);
+		}
+	}
+
+	public static int getLengthSize(int length, MessageFormat format) {
+		return format.isCompact() ? getVarIntSize(length) : 4;
+	}
+
+	public static int readLength(DataInputStream dis, MessageFormat format) throws IOException {
+		return format.isCompact() ? readVarInt(dis) : dis.readInt();
+	}
+
+	public static int readLength(ByteBuffer buf, MessageFormat format) {
+		return format.isCompact() ? readVarInt(buf) : buf.getInt();
+	}
+
+	public static void writeShort(DataOutputStream dos, int value, MessageFormat format) throws IOException {
+		if (format.isCompact()) {
+			writeVarInt(dos, value & 0xFFFF);
+		} else {
+			dos.writeShort(value);
+		}
+	}
+
+	public static void writeShort(ByteBuffer buf, int value, MessageFormat format) {
+		if (format.isCompact()) {
+			writeVarInt(buf, value & 0xFFFF);
+		} else {
+			buf.putShort((short) value);
+		}
+	}
+
+	public static int getShortSize(int value, MessageFormat format) {
+		return format.isCompact() ? getVarIntSize(value & 0xFFFF) : 2;
+	}
+
+	public static short readShort(DataInputStream dis, MessageFormat format) throws IOException {
+		return format.isCompact() ? (short) readVarInt(dis) : dis.readShort();
+	}
+
+	public static short readShort(ByteBuffer buf, MessageFormat format) {
+		return format.isCompact() ? (short) readVarInt(buf) : buf.getShort();
+	}
+
+	public static void writeInt(DataOutputStream dos, int value, MessageFormat format) throws IOException {
+		if (format.isCompact()) {
+			writeVarInt(dos, encodeZigZag(value));
+		} else {
+			dos.writeInt(value);
+		}
+	}
+
+	public static void writeInt(ByteBuffer buf, int value, MessageFormat format) {
+		if (format.isCompact()) {
+			writeVarInt(buf, encodeZigZag(value));
+		} else {
+			buf.putInt(value);
+		}
+	}
+
+	public static int getIntSize(int value, MessageFormat format) {
+		return format.isCompact() ? getVarIntSize(encodeZigZag(value)) : 4;
+	}
+
+	public static int readInt(DataInputStream dis, MessageFormat format) throws IOException {
+		return format.isCompact() ? decodeZigZag(readVarInt(dis)) : dis.readInt();
+	}
+
+	public static int readInt(ByteBuffer buf, MessageFormat format) {
+		return format.isCompact() ? decodeZigZag(readVarInt(buf)) : buf.getInt();
+	}
+
+	public static void writeLong(DataOutputStream dos, long value, MessageFormat format) throws IOException {
+		if (format.isCompact()) {
+			writeVarLong(dos, encodeZigZag(value));
+		} else {
+			dos.writeLong(value);
+		}
+	}
+
+	public static void writeLong(ByteBuffer buf, long value, MessageFormat format) {
+		if (format.isCompact()) {
+			writeVarLong(buf, encodeZigZag(value));
+		} else {
+			buf.putLong(value);
+		}
+	}
+
+	public static int getLongSize(long value, MessageFormat format) {
+		return format.isCompact() ? getVarLongSize(encodeZigZag(value)) : 8;
+	}
+
+	public static long readLong(DataInputStream dis, MessageFormat format) throws IOException {
+		return format.isCompact() ? decodeZigZag(readVarLong(dis)) : dis.readLong();
+	}
+
+	public static long readLong(ByteBuffer buf, MessageFormat format) {
+		return format.isCompact() ? decodeZigZag(readVarLong(buf)) : buf.getLong();
+	}
+
 	public static void writeString(DataOutputStream dos, String value) throws IOException {
+		writeString(dos, value, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static void writeString(DataOutputStream dos, String value, MessageFormat format) throws IOException {
 		if (value != null && !value.isEmpty()) {
 			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
-			dos.writeInt(bytes.length);
+			writeLength(dos, bytes.length, format);
 			dos.write(bytes);
 		} else {
-			dos.writeInt(0);
+			writeLength(dos, 0, format);
 		}
 	}
 
 	public static void writeString(ByteBuffer buffer, String value) {
+		writeString(buffer, value, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static void writeString(ByteBuffer buffer, String value, MessageFormat format) {
 		if (value != null && !value.isEmpty()) {
-			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
-			buffer.putInt(bytes.length);
-			buffer.put(bytes);
+			writeLength(buffer, getUtf8Length(value), format);
+			writeUtf8(buffer, value);
 		} else {
-			buffer.putInt(0);
+			writeLength(buffer, 0, format);
+		}
+	}
+
+	/**
+	 * Encodes the string as UTF-8 directly into the buffer, producing the same bytes as
+	 * {@link String#getBytes(java.nio.charset.Charset)} without a temporary array. Leading ASCII characters are
+	 * copied straight into the backing array of heap buffers.
+	 */
+	public static void writeUtf8(ByteBuffer buffer, String value) {
+		int length = value.length();
+		int i = 0;
+		if (buffer.hasArray()) {
+			byte[] array = buffer.array();
+			int offset = buffer.arrayOffset() + buffer.position();
+			int end = Math.min(length, buffer.remaining());
+			while (i < end) {
+				char c = value.charAt(i);
+				if (c >= 0x80) {
+					break;
+				}
+				array[offset + i++] = (byte) c;
+			}
+			buffer.position(buffer.position() + i);
+		}
+		for (; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				buffer.put((byte) c);
+			} else if (c < 0x800) {
+				buffer.put((byte) (0xC0 | (c >> 6)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			} else if (!Character.isSurrogate(c)) {
+				buffer.put((byte) (0xE0 | (c >> 12)));
+				buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				buffer.put((byte) (0xF0 | (codePoint >> 18)));
+				buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+			} else {
+				buffer.put((byte) '?');
+			}
 		}
 	}
 
+	public static int getStringSize(String value, MessageFormat format) {
+		int length = value == null ? 0 : getUtf8Length(value);
+		return getLengthSize(length, format) + length;
+	}
+
+	/**
+	 * Number of bytes {@link String#getBytes(java.nio.charset.Charset)} produces for UTF-8, without encoding the string.
+	 * Unpaired surrogates are counted as one byte, matching the replacement character of the encoder.
+	 */
+	public static int getUtf8Length(String value) {
+		int length = value.length();
+		int utf8Length = length;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c >= 0x80) {
+				if (c < 0x800) {
+					utf8Length++;
+				} else if (!Character.isSurrogate(c)) {
+					utf8Length += 2;
+				} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+					utf8Length += 2;
+					i++;
+				}
+			}
+		}
+		return utf8Length;
+	}
+
 	public static String readString(DataInputStream dis) throws IOException {
-		int length = dis.readInt();
+		return readString(dis, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static String readString(DataInputStream dis, MessageFormat format) throws IOException {
+		return readString(dis, readLength(dis, format));
+	}
+
+	public static String readString(DataInputStream dis, int length) throws IOException {
 		if (length == 0) {
 			return null;
 		} else {
@@ -181,6 +543,21 @@ public class MessageUtils {
 		}
 	}
 
+	public static String readString(byte[] bytes, int pos, MessageFormat format) {
+		if (!format.isCompact()) {
+			return readString(bytes, pos);
+		}
+		int length = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = bytes[pos++];
+			length |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+		}
+		return length == 0 ? null : new String(bytes, pos, length, StandardCharsets.UTF_8);
+	}
+
 	public static int readInt(byte[] bytes, int pos) {
 		int value = bytes[pos] & 0xFF;
 		int c1 = bytes[pos] & 0xFF;
@@ -191,9 +568,21 @@ public class MessageUtils {
 	}
 
 	public static String readString(ByteBuffer buf) {
-		int length = buf.getInt();
+		return readString(buf, buf.getInt());
+	}
+
+	public static String readString(ByteBuffer buf, MessageFormat format) {
+		return readString(buf, readLength(buf, format));
+	}
+
+	public static String readString(ByteBuffer buf, int length) {
 		if (length == 0) {
 			return null;
+		} else if (buf.hasArray()) {
+			int position = buf.position();
+			String value = new String(buf.array(), buf.arrayOffset() + position, length, StandardCharsets.UTF_8);
+			buf.position(position + length);
+			return value;
 		} else {
 			byte[] bytes = new byte[length];
 			buf.get(bytes);
@@ -203,26 +592,43 @@ public class MessageUtils {
 
 
 	public static void writeByteArray(DataOutputStream dos, byte[] bytes) throws IOException {
+		writeByteArray(dos, bytes, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static void writeByteArray(DataOutputStream dos, byte[] bytes, MessageFormat format) throws IOException {
 		if (bytes == null) {
-			dos.writeInt(0);
+			writeLength(dos, 0, format);
 		} else {
-			dos.writeInt(bytes.length);
+			writeLength(dos, bytes.length, format);
 			dos.write(bytes);
 		}
 	}
 
 
 	public static void writeByteArray(ByteBuffer buf, byte[] bytes) {
+		writeByteArray(buf, bytes, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static void writeByteArray(ByteBuffer buf, byte[] bytes, MessageFormat format) {
 		if (bytes == null) {
-			buf.putInt(0);
+			writeLength(buf, 0, format);
 		} else {
-			buf.putInt(bytes.length);
+			writeLength(buf, bytes.length, format);
 			buf.put(bytes);
 		}
 	}
 
+	public static int getByteArraySize(byte[] bytes, MessageFormat format) {
+		int length = bytes == null ? 0 : bytes.length;
+		return getLengthSize(length, format) + length;
+	}
+
 	public static byte[] readByteArray(DataInputStream dis) throws IOException {
-		int length = dis.readInt();
+		return readByteArray(dis, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static byte[] readByteArray(DataInputStream dis, MessageFormat format) throws IOException {
+		int length = readLength(dis, format);
 		if (length == 0) {
 			return null;
 		}
@@ -233,7 +639,14 @@ public class MessageUtils {
 
 
 	public static byte[] readByteArray(ByteBuffer buf) {
-		int length = buf.getInt();
+		return readByteArray(buf, buf.getInt());
+	}
+
+	public static byte[] readByteArray(ByteBuffer buf, MessageFormat format) {
+		return readByteArray(buf, readLength(buf, format));
+	}
+
+	private static byte[] readByteArray(ByteBuffer buf, int length) {
 		if (length == 0) {
 			return null;
 		}
@@ -253,203 +666,778 @@ public class MessageUtils {
 		}
 	}
 
-	public static BitSet readBitSet(DataInputStream dis) throws IOException {
-		int length = dis.readInt();
-		if (length == 0) {
-			return null;
+	public static void writeBitSet(DataOutputStream dos, BitSet bitSet, MessageFormat format) throws IOException {
+		if (!format.isCompact()) {
+			writeBitSet(dos, bitSet);
+			return;
 		}
-		BitSet bitSet = new BitSet();
-		int size = dis.readInt();
-		for (int i = 0; i < size; i++) {
-			bitSet.set(dis.readInt());
+		int header = getBitSetHeader(bitSet);
+		writeVarInt(dos, header);
+		switch (header & BITSET_ENCODING_MASK) {
+			case BITSET_SPARSE -> {
+				int previous = -1;
+				for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+					writeVarInt(dos, id - previous - 1);
+					previous = id;
+				}
+			}
+			case BITSET_BITMAP -> dos.write(bitSet.toByteArray());
+			case BITSET_RUNS -> {
+				int previous = 0;
+				for (int start = bitSet.nextSetBit(0); start >= 0; start = bitSet.nextSetBit(previous)) {
+					int end = bitSet.nextClearBit(start);
+					writeVarInt(dos, start - previous);
+					writeVarInt(dos, end - start - 1);
+					previous = end;
+				}
+			}
 		}
-		return bitSet;
 	}
 
-	public static BitSet readBitSet(ByteBuffer buf) {
-		int size = buf.getInt();
-		if (size == 0) {
-			return null;
+	public static void writeBitSet(ByteBuffer buf, BitSet bitSet, MessageFormat format) {
+		if (!format.isCompact()) {
+			if (bitSet == null) {
+				buf.putInt(0);
+			} else {
+				buf.putInt(bitSet.cardinality());
+				for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+					buf.putInt(id);
+				}
+			}
+			return;
 		}
-		BitSet bitSet = new BitSet();
-		for (int i = 0; i < size; i++) {
-			bitSet.set(buf.getInt());
+		int header = getBitSetHeader(bitSet);
+		writeVarInt(buf, header);
+		switch (header & BITSET_ENCODING_MASK) {
+			case BITSET_SPARSE -> {
+				int previous = -1;
+				for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+					writeVarInt(buf, id - previous - 1);
+					previous = id;
+				}
+			}
+			case BITSET_BITMAP -> buf.put(bitSet.toByteArray());
+			case BITSET_RUNS -> {
+				int previous = 0;
+				for (int start = bitSet.nextSetBit(0); start >= 0; start = bitSet.nextSetBit(previous)) {
+					int end = bitSet.nextClearBit(start);
+					writeVarInt(buf, start - previous);
+					writeVarInt(buf, end - start - 1);
+					previous = end;
+				}
+			}
 		}
-		return bitSet;
 	}
 
-	public static void writeIntArray(DataOutputStream dos, int[] intArray) throws IOException {
-		if (intArray == null || intArray.length == 0) {
-			dos.writeInt(0);
-		} else {
-			dos.writeInt(intArray.length);
-			for (int value : intArray) {
-				dos.writeInt(value);
-			}
+	public static int getBitSetSize(BitSet bitSet, MessageFormat format) {
+		if (!format.isCompact()) {
+			return bitSet == null ? 4 : 4 + bitSet.cardinality() * 4;
 		}
+		int header = getBitSetHeader(bitSet);
+		return getVarIntSize(header) + (header >>> 2);
 	}
 
-	public static int[] readIntArray(DataInputStream dis) throws IOException {
-		int length = dis.readInt();
-		if (length == 0) {
-			return null;
+	/**
+	 * Chooses the smallest compact encoding for a bit set: varint gaps between set bits for sparse sets,
+	 * the raw little-endian bitmap of {@link BitSet#toByteArray()} for dense sets or varint gap/length
+	 * pairs for sets made of long runs. The header holds the payload length in bytes and the encoding
+	 * in its two lowest bits, a header of 0 stands for a null or empty bit set.
+	 */
+	private static int getBitSetHeader(BitSet bitSet) {
+		if (bitSet == null || bitSet.isEmpty()) {
+			return 0;
 		}
-		int[] intArray = new int[length];
-		for (int i = 0; i < length; i++) {
-			intArray[i] = dis.readInt();
+		int bestSize = (bitSet.length() + 7) >>> 3;
+		int encoding = BITSET_BITMAP;
+		int sparseSize = getSparseBitSetSize(bitSet, bestSize);
+		if (sparseSize < bestSize) {
+			bestSize = sparseSize;
+			encoding = BITSET_SPARSE;
 		}
-		return intArray;
+		int runsSize = getRunsBitSetSize(bitSet, bestSize);
+		if (runsSize < bestSize) {
+			bestSize = runsSize;
+			encoding = BITSET_RUNS;
+		}
+		return (bestSize << 2) | encoding;
 	}
 
-	public static int[] readIntArray(ByteBuffer buf) {
-		int length = buf.getInt();
-		if (length == 0) {
-			return null;
+	private static int getSparseBitSetSize(BitSet bitSet, int limit) {
+		int size = 0;
+		int previous = -1;
+		for (int id = bitSet.nextSetBit(0); id >= 0 && size < limit; id = bitSet.nextSetBit(id + 1)) {
+			size += getVarIntSize(id - previous - 1);
+			previous = id;
 		}
-		int[] intArray = new int[length];
-		for (int i = 0; i < length; i++) {
-			intArray[i] = buf.getInt();
+		return size;
+	}
+
+	private static int getRunsBitSetSize(BitSet bitSet, int limit) {
+		int size = 0;
+		int previous = 0;
+		for (int start = bitSet.nextSetBit(0); start >= 0 && size < limit; start = bitSet.nextSetBit(previous)) {
+			int end = bitSet.nextClearBit(start);
+			size += getVarIntSize(start - previous) + getVarIntSize(end - start - 1);
+			previous = end;
 		}
-		return intArray;
+		return size;
 	}
 
-	public static void writeLongArray(DataOutputStream dos, long[] longArray) throws IOException {
-		if (longArray == null || longArray.length == 0) {
-			dos.writeInt(0);
+	public static BitSet readBitSet(DataInputStream dis, MessageFormat format) throws IOException {
+		if (!format.isCompact()) {
+			return readBitSet(dis);
+		}
+		int header = readVarInt(dis);
+		if (header == 0) {
+			return null;
+		}
+		int remaining = header >>> 2;
+		if ((header & BITSET_ENCODING_MASK) == BITSET_BITMAP) {
+			byte[] bytes = new byte[remaining];
+			dis.readFully(bytes);
+			return BitSet.valueOf(bytes);
+		}
+		BitSet bitSet = new BitSet();
+		if ((header & BITSET_ENCODING_MASK) == BITSET_SPARSE) {
+			int id = -1;
+			while (remaining > 0) {
+				int gap = readVarInt(dis);
+				remaining -= getVarIntSize(gap);
+				id += gap + 1;
+				bitSet.set(id);
+			}
 		} else {
-			dos.writeInt(longArray.length);
-			for (long value : longArray) {
-				dos.writeLong(value);
+			int previous = 0;
+			while (remaining > 0) {
+				int gap = readVarInt(dis);
+				int length = readVarInt(dis);
+				remaining -= getVarIntSize(gap) + getVarIntSize(length);
+				int start = previous + gap;
+				previous = start + length + 1;
+				bitSet.set(start, previous);
 			}
 		}
+		return bitSet;
 	}
 
-	public static long[] readLongArray(DataInputStream dis) throws IOException {
-		int length = dis.readInt();
-		if (length == 0) {
+	public static BitSet readBitSet(DataInputStream dis) throws IOException {
+		int size = dis.readInt();
+		if (size == 0) {
 			return null;
 		}
-		long[] longArray = new long[length];
-		for (int i = 0; i < length; i++) {
-			longArray[i] = dis.readLong();
+		BitSet bitSet = new BitSet();
+		for (int i = 0; i < size; i++) {
+			bitSet.set(dis.readInt());
 		}
-		return longArray;
+		return bitSet;
 	}
 
-	public static long[] readLongArray(ByteBuffer buf) {
-		int length = buf.getInt();
-		if (length == 0) {
+	public static BitSet readBitSet(ByteBuffer buf, MessageFormat format) {
+		if (!format.isCompact()) {
+			return readBitSet(buf);
+		}
+		int header = readVarInt(buf);
+		if (header == 0) {
 			return null;
 		}
-		long[] longArray = new long[length];
-		for (int i = 0; i < length; i++) {
-			longArray[i] = buf.getLong();
+		int end = buf.position() + (header >>> 2);
+		if ((header & BITSET_ENCODING_MASK) == BITSET_BITMAP) {
+			BitSet bitSet = BitSet.valueOf(buf.slice(buf.position(), header >>> 2));
+			buf.position(end);
+			return bitSet;
 		}
-		return longArray;
-	}
-
-
-	public static void writeFloatArray(DataOutputStream dos, float[] floatArray) throws IOException {
-		if (floatArray == null || floatArray.length == 0) {
-			dos.writeInt(0);
+		BitSet bitSet = new BitSet();
+		if ((header & BITSET_ENCODING_MASK) == BITSET_SPARSE) {
+			int id = -1;
+			while (buf.position() < end) {
+				id += readVarInt(buf) + 1;
+				bitSet.set(id);
+			}
 		} else {
-			dos.writeInt(floatArray.length);
-			for (float value : floatArray) {
-				dos.writeFloat(value);
+			int previous = 0;
+			while (buf.position() < end) {
+				int start = previous + readVarInt(buf);
+				previous = start + readVarInt(buf) + 1;
+				bitSet.set(start, previous);
 			}
 		}
+		return bitSet;
+	}
+
+	public static BitSet readBitSet(ByteBuffer buf) {
+		int size = buf.getInt();
+		if (size == 0) {
+			return null;
+		}
+		BitSet bitSet = new BitSet();
+		for (int i = 0; i < size; i++) {
+			bitSet.set(buf.getInt());
+		}
+		return bitSet;
+	}
+
+	public static void writeIntArray(DataOutputStream dos, int[] intArray) throws IOException {
+		writeIntArray(dos, intArray, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static void writeIntArray(DataOutputStream dos, int[] intArray, MessageFormat format) throws IOException {
+		writeIntArray(dos, intArray, format, AttributeEncoding.DEFAULT);
+	}
+
+	public static void writeIntArray(DataOutputStream dos, int[] intArray, MessageFormat format, AttributeEncoding encoding) throws IOException {
+		if (intArray == null || intArray.length == 0) {
+			writeLength(dos, 0, format);
+		} else if (!format.isCompact()) {
+			dos.writeInt(intArray.length);
+			writeIntValues(dos, intArray);
+		} else {
+			int payloadSize = getEncodedPayloadSize(intArray, encoding);
+			if (payloadSize < 0) {
+				writeVarInt(dos, getArrayHeader(intArray.length, AttributeEncoding.DEFAULT));
+				writeIntValues(dos, intArray);
+			} else {
+				writeVarInt(dos, getArrayHeader(intArray.length, encoding));
+				writeVarInt(dos, payloadSize);
+				ByteBuffer payload = ByteBuffer.allocate(payloadSize);
+				NumericArrayCodec.encode(payload, intArray, encoding);
+				dos.write(payload.array());
+			}
+		}
+	}
+
+	public static void writeIntArray(ByteBuffer buf, int[] intArray, MessageFormat format) {
+		writeIntArray(buf, intArray, format, AttributeEncoding.DEFAULT);
+	}
+
+	public static void writeIntArray(ByteBuffer buf, int[] intArray, MessageFormat format, AttributeEncoding encoding) {
+		if (intArray == null || intArray.length == 0) {
+			writeLength(buf, 0, format);
+			return;
+		}
+		int payloadSize = format.isCompact() ? getEncodedPayloadSize(intArray, encoding) : -1;
+		if (!format.isCompact()) {
+			buf.putInt(intArray.length);
+		} else if (payloadSize < 0) {
+			writeVarInt(buf, getArrayHeader(intArray.length, AttributeEncoding.DEFAULT));
+		} else {
+			writeVarInt(buf, getArrayHeader(intArray.length, encoding));
+			writeVarInt(buf, payloadSize);
+			NumericArrayCodec.encode(buf, intArray, encoding);
+			return;
+		}
+		buf.asIntBuffer().put(intArray);
+		buf.position(buf.position() + intArray.length * 4);
+	}
+
+	public static int getIntArraySize(int[] intArray, MessageFormat format) {
+		return getIntArraySize(intArray, format, AttributeEncoding.DEFAULT);
+	}
+
+	public static int getIntArraySize(int[] intArray, MessageFormat format, AttributeEncoding encoding) {
+		if (intArray == null || intArray.length == 0) {
+			return getLengthSize(0, format);
+		} else if (!format.isCompact()) {
+			return 4 + intArray.length * 4;
+		}
+		int headerSize = getVarIntSize(getArrayHeader(intArray.length, AttributeEncoding.DEFAULT));
+		int payloadSize = getEncodedPayloadSize(intArray, encoding);
+		return payloadSize < 0 ? headerSize + intArray.length * 4 : headerSize + getVarIntSize(payloadSize) + payloadSize;
+	}
+
+	private static int getEncodedPayloadSize(int[] intArray, AttributeEncoding encoding) {
+		if (encoding == null || encoding == AttributeEncoding.DEFAULT) {
+			return -1;
+		}
+		int payloadSize = NumericArrayCodec.getPayloadSize(intArray, encoding);
+		return payloadSize + getVarIntSize(payloadSize) < intArray.length * 4 ? payloadSize : -1;
+	}
+
+	private static void writeIntValues(DataOutputStream dos, int[] values) throws IOException {
+		byte[] chunk = new byte[Math.min(values.length * 4, BULK_CHUNK_SIZE)];
+		IntBuffer view = ByteBuffer.wrap(chunk).asIntBuffer();
+		int chunkLength = chunk.length / 4;
+		for (int offset = 0; offset < values.length; offset += chunkLength) {
+			int count = Math.min(chunkLength, values.length - offset);
+			view.put(0, values, offset, count);
+			dos.write(chunk, 0, count * 4);
+		}
+	}
+
+	private static void readIntValues(DataInputStream dis, int[] values) throws IOException {
+		byte[] chunk = new byte[Math.min(values.length * 4, BULK_CHUNK_SIZE)];
+		IntBuffer view = ByteBuffer.wrap(chunk).asIntBuffer();
+		int chunkLength = chunk.length / 4;
+		for (int offset = 0; offset < values.length; offset += chunkLength) {
+			int count = Math.min(chunkLength, values.length - offset);
+			dis.readFully(chunk, 0, count * 4);
+			view.get(0, values, offset, count);
+		}
+	}
+
+	public static int[] readIntArray(DataInputStream dis) throws IOException {
+		return readIntArray(dis, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static int[] readIntArray(DataInputStream dis, MessageFormat format) throws IOException {
+		int length = readLength(dis, format);
+		if (length == 0) {
+			return null;
+		}
+		AttributeEncoding encoding = AttributeEncoding.DEFAULT;
+		if (format.isCompact()) {
+			encoding = getArrayEncoding(length);
+			length >>>= 2;
+		}
+		if (encoding != AttributeEncoding.DEFAULT) {
+			byte[] payload = new byte[readVarInt(dis)];
+			dis.readFully(payload);
+			return NumericArrayCodec.decodeIntArray(ByteBuffer.wrap(payload), length, encoding);
+		}
+		int[] intArray = new int[length];
+		readIntValues(dis, intArray);
+		return intArray;
+	}
+
+	public static int[] readIntArray(ByteBuffer buf) {
+		return readIntArray(buf, buf.getInt());
+	}
+
+	public static int[] readIntArray(ByteBuffer buf, MessageFormat format) {
+		if (!format.isCompact()) {
+			return readIntArray(buf);
+		}
+		int header = readVarInt(buf);
+		if (header == 0) {
+			return null;
+		}
+		AttributeEncoding encoding = getArrayEncoding(header);
+		if (encoding == AttributeEncoding.DEFAULT) {
+			return readIntArray(buf, header >>> 2);
+		}
+		int end = readVarInt(buf) + buf.position();
+		int[] intArray = NumericArrayCodec.decodeIntArray(buf, header >>> 2, encoding);
+		buf.position(end);
+		return intArray;
+	}
+
+	private static int[] readIntArray(ByteBuffer buf, int length) {
+		if (length == 0) {
+			return null;
+		}
+		int[] intArray = new int[length];
+		buf.asIntBuffer().get(intArray);
+		buf.position(buf.position() + length * 4);
+		return intArray;
+	}
+
+	public static void writeLongArray(DataOutputStream dos, long[] longArray) throws IOException {
+		writeLongArray(dos, longArray, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static void writeLongArray(DataOutputStream dos, long[] longArray, MessageFormat format) throws IOException {
+		writeLongArray(dos, longArray, format, AttributeEncoding.DEFAULT);
+	}
+
+	public static void writeLongArray(DataOutputStream dos, long[] longArray, MessageFormat format, AttributeEncoding encoding) throws IOException {
+		if (longArray == null || longArray.length == 0) {
+			writeLength(dos, 0, format);
+		} else if (!format.isCompact()) {
+			dos.writeInt(longArray.length);
+			writeLongValues(dos, longArray);
+		} else {
+			int payloadSize = getEncodedPayloadSize(longArray, encoding);
+			if (payloadSize < 0) {
+				writeVarInt(dos, getArrayHeader(longArray.length, AttributeEncoding.DEFAULT));
+				writeLongValues(dos, longArray);
+			} else {
+				writeVarInt(dos, getArrayHeader(longArray.length, encoding));
+				writeVarInt(dos, payloadSize);
+				ByteBuffer payload = ByteBuffer.allocate(payloadSize);
+				NumericArrayCodec.encode(payload, longArray, encoding);
+				dos.write(payload.array());
+			}
+		}
+	}
+
+	public static void writeLongArray(ByteBuffer buf, long[] longArray, MessageFormat format) {
+		writeLongArray(buf, longArray, format, AttributeEncoding.DEFAULT);
+	}
+
+	public static void writeLongArray(ByteBuffer buf, long[] longArray, MessageFormat format, AttributeEncoding encoding) {
+		if (longArray == null || longArray.length == 0) {
+			writeLength(buf, 0, format);
+			return;
+		}
+		int payloadSize = format.isCompact() ? getEncodedPayloadSize(longArray, encoding) : -1;
+		if (!format.isCompact()) {
+			buf.putInt(longArray.length);
+		} else if (payloadSize < 0) {
+			writeVarInt(buf, getArrayHeader(longArray.length, AttributeEncoding.DEFAULT));
+		} else {
+			writeVarInt(buf, getArrayHeader(longArray.length, encoding));
+			writeVarInt(buf, payloadSize);
+			NumericArrayCodec.encode(buf, longArray, encoding);
+			return;
+		}
+		buf.asLongBuffer().put(longArray);
+		buf.position(buf.position() + longArray.length * 8);
+	}
+
+	public static int getLongArraySize(long[] longArray, MessageFormat format) {
+		return getLongArraySize(longArray, format, AttributeEncoding.DEFAULT);
+	}
+
+	public static int getLongArraySize(long[] longArray, MessageFormat format, AttributeEncoding encoding) {
+		if (longArray == null || longArray.length == 0) {
+			return getLengthSize(0, format);
+		} else if (!format.isCompact()) {
+			return 4 + longArray.length * 8;
+		}
+		int headerSize = getVarIntSize(getArrayHeader(longArray.length, AttributeEncoding.DEFAULT));
+		int payloadSize = getEncodedPayloadSize(longArray, encoding);
+		return payloadSize < 0 ? headerSize + longArray.length * 8 : headerSize + getVarIntSize(payloadSize) + payloadSize;
+	}
+
+	private static int getEncodedPayloadSize(long[] longArray, AttributeEncoding encoding) {
+		if (encoding == null || encoding == AttributeEncoding.DEFAULT) {
+			return -1;
+		}
+		int payloadSize = NumericArrayCodec.getPayloadSize(longArray, encoding);
+		return payloadSize + getVarIntSize(payloadSize) < longArray.length * 8 ? payloadSize : -1;
+	}
+
+	private static void writeLongValues(DataOutputStream dos, long[] values) throws IOException {
+		byte[] chunk = new byte[Math.min(values.length * 8, BULK_CHUNK_SIZE)];
+		LongBuffer view = ByteBuffer.wrap(chunk).asLongBuffer();
+		int chunkLength = chunk.length / 8;
+		for (int offset = 0; offset < values.length; offset += chunkLength) {
+			int count = Math.min(chunkLength, values.length - offset);
+			view.put(0, values, offset, count);
+			dos.write(chunk, 0, count * 8);
+		}
+	}
+
+	private static void readLongValues(DataInputStream dis, long[] values) throws IOException {
+		byte[] chunk = new byte[Math.min(values.length * 8, BULK_CHUNK_SIZE)];
+		LongBuffer view = ByteBuffer.wrap(chunk).asLongBuffer();
+		int chunkLength = chunk.length / 8;
+		for (int offset = 0; offset < values.length; offset += chunkLength) {
+			int count = Math.min(chunkLength, values.length - offset);
+			dis.readFully(chunk, 0, count * 8);
+			view.get(0, values, offset, count);
+		}
+	}
+
+	public static long[] readLongArray(DataInputStream dis) throws IOException {
+		return readLongArray(dis, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static long[] readLongArray(DataInputStream dis, MessageFormat format) throws IOException {
+		int length = readLength(dis, format);
+		if (length == 0) {
+			return null;
+		}
+		AttributeEncoding encoding = AttributeEncoding.DEFAULT;
+		if (format.isCompact()) {
+			encoding = getArrayEncoding(length);
+			length >>>= 2;
+		}
+		if (encoding != AttributeEncoding.DEFAULT) {
+			byte[] payload = new byte[readVarInt(dis)];
+			dis.readFully(payload);
+			return NumericArrayCodec.decodeLongArray(ByteBuffer.wrap(payload), length, encoding);
+		}
+		long[] longArray = new long[length];
+		readLongValues(dis, longArray);
+		return longArray;
+	}
+
+	public static long[] readLongArray(ByteBuffer buf) {
+		return readLongArray(buf, buf.getInt());
+	}
+
+	public static long[] readLongArray(ByteBuffer buf, MessageFormat format) {
+		if (!format.isCompact()) {
+			return readLongArray(buf);
+		}
+		int header = readVarInt(buf);
+		if (header == 0) {
+			return null;
+		}
+		AttributeEncoding encoding = getArrayEncoding(header);
+		if (encoding == AttributeEncoding.DEFAULT) {
+			return readLongArray(buf, header >>> 2);
+		}
+		int end = readVarInt(buf) + buf.position();
+		long[] longArray = NumericArrayCodec.decodeLongArray(buf, header >>> 2, encoding);
+		buf.position(end);
+		return longArray;
+	}
+
+	private static long[] readLongArray(ByteBuffer buf, int length) {
+		if (length == 0) {
+			return null;
+		}
+		long[] longArray = new long[length];
+		buf.asLongBuffer().get(longArray);
+		buf.position(buf.position() + length * 8);
+		return longArray;
+	}
+
+	/**
+	 * The compact header of int and long arrays holds the length and the {@link AttributeEncoding} id in its two
+	 * lowest bits, so longer arrays cannot be written in a compact format.
+	 */
+	private static int getArrayHeader(int length, AttributeEncoding encoding) {
+		if (length > MAX_COMPACT_ARRAY_LENGTH) {
+			throw new RuntimeException("Array too large for compact message format:" + length);
+		}
+		return (length << 2) | encoding.getId();
+	}
+
+	private static AttributeEncoding getArrayEncoding(int header) {
+		AttributeEncoding encoding = AttributeEncoding.getById(header & 0b11);
+		if (encoding == null) {
+			throw new RuntimeException("Message parsing error - unknown array encoding:" + (header & 0b11));
+		}
+		return encoding;
+	}
+
+	public static void writeFloatArray(DataOutputStream dos, float[] floatArray) throws IOException {
+		writeFloatArray(dos, floatArray, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static void writeFloatArray(DataOutputStream dos, float[] floatArray, MessageFormat format) throws IOException {
+		if (floatArray == null || floatArray.length == 0) {
+			writeLength(dos, 0, format);
+		} else {
+			writeLength(dos, floatArray.length, format);
+			writeFloatValues(dos, floatArray);
+		}
+	}
+
+	public static void writeFloatArray(ByteBuffer buf, float[] floatArray, MessageFormat format) {
+		if (floatArray == null || floatArray.length == 0) {
+			writeLength(buf, 0, format);
+		} else {
+			writeLength(buf, floatArray.length, format);
+			buf.asFloatBuffer().put(floatArray);
+			buf.position(buf.position() + floatArray.length * 4);
+		}
+	}
+
+	public static int getFloatArraySize(float[] floatArray, MessageFormat format) {
+		int length = floatArray == null ? 0 : floatArray.length;
+		return getLengthSize(length, format) + length * 4;
+	}
+
+	private static void writeFloatValues(DataOutputStream dos, float[] values) throws IOException {
+		byte[] chunk = new byte[Math.min(values.length * 4, BULK_CHUNK_SIZE)];
+		FloatBuffer view = ByteBuffer.wrap(chunk).asFloatBuffer();
+		int chunkLength = chunk.length / 4;
+		for (int offset = 0; offset < values.length; offset += chunkLength) {
+			int count = Math.min(chunkLength, values.length - offset);
+			view.put(0, values, offset, count);
+			dos.write(chunk, 0, count * 4);
+		}
+	}
+
+	private static void readFloatValues(DataInputStream dis, float[] values) throws IOException {
+		byte[] chunk = new byte[Math.min(values.length * 4, BULK_CHUNK_SIZE)];
+		FloatBuffer view = ByteBuffer.wrap(chunk).asFloatBuffer();
+		int chunkLength = chunk.length / 4;
+		for (int offset = 0; offset < values.length; offset += chunkLength) {
+			int count = Math.min(chunkLength, values.length - offset);
+			dis.readFully(chunk, 0, count * 4);
+			view.get(0, values, offset, count);
+		}
 	}
 
 	public static float[] readFloatArray(DataInputStream dis) throws IOException {
-		int length = dis.readInt();
+		return readFloatArray(dis, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static float[] readFloatArray(DataInputStream dis, MessageFormat format) throws IOException {
+		int length = readLength(dis, format);
 		if (length == 0) {
 			return null;
 		}
 		float[] floatArray = new float[length];
-		for (int i = 0; i < length; i++) {
-			floatArray[i] = dis.readFloat();
-		}
+		readFloatValues(dis, floatArray);
 		return floatArray;
 	}
 
 	public static float[] readFloatArray(ByteBuffer buf) {
-		int length = buf.getInt();
+		return readFloatArray(buf, buf.getInt());
+	}
+
+	public static float[] readFloatArray(ByteBuffer buf, MessageFormat format) {
+		if (!format.isCompact()) {
+			return readFloatArray(buf);
+		}
+		return readFloatArray(buf, readVarInt(buf));
+	}
+
+	private static float[] readFloatArray(ByteBuffer buf, int length) {
 		if (length == 0) {
 			return null;
 		}
 		float[] floatArray = new float[length];
-		for (int i = 0; i < length; i++) {
-			floatArray[i] = buf.getFloat();
-		}
+		buf.asFloatBuffer().get(floatArray);
+		buf.position(buf.position() + length * 4);
 		return floatArray;
 	}
 
 	public static void writeDoubleArray(DataOutputStream dos, double[] doubleArray) throws IOException {
+		writeDoubleArray(dos, doubleArray, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static void writeDoubleArray(DataOutputStream dos, double[] doubleArray, MessageFormat format) throws IOException {
 		if (doubleArray == null || doubleArray.length == 0) {
-			dos.writeInt(0);
+			writeLength(dos, 0, format);
 		} else {
-			dos.writeInt(doubleArray.length);
-			for (double value : doubleArray) {
-				dos.writeDouble(value);
-			}
+			writeLength(dos, doubleArray.length, format);
+			writeDoubleValues(dos, doubleArray);
+		}
+	}
+
+	public static void writeDoubleArray(ByteBuffer buf, double[] doubleArray, MessageFormat format) {
+		if (doubleArray == null || doubleArray.length == 0) {
+			writeLength(buf, 0, format);
+		} else {
+			writeLength(buf, doubleArray.length, format);
+			buf.asDoubleBuffer().put(doubleArray);
+			buf.position(buf.position() + doubleArray.length * 8);
+		}
+	}
+
+	public static int getDoubleArraySize(double[] doubleArray, MessageFormat format) {
+		int length = doubleArray == null ? 0 : doubleArray.length;
+		return getLengthSize(length, format) + length * 8;
+	}
+
+	private static void writeDoubleValues(DataOutputStream dos, double[] values) throws IOException {
+		byte[] chunk = new byte[Math.min(values.length * 8, BULK_CHUNK_SIZE)];
+		DoubleBuffer view = ByteBuffer.wrap(chunk).asDoubleBuffer();
+		int chunkLength = chunk.length / 8;
+		for (int offset = 0; offset < values.length; offset += chunkLength) {
+			int count = Math.min(chunkLength, values.length - offset);
+			view.put(0, values, offset, count);
+			dos.write(chunk, 0, count * 8);
+		}
+	}
+
+	private static void readDoubleValues(DataInputStream dis, double[] values) throws IOException {
+		byte[] chunk = new byte[Math.min(values.length * 8, BULK_CHUNK_SIZE)];
+		DoubleBuffer view = ByteBuffer.wrap(chunk).asDoubleBuffer();
+		int chunkLength = chunk.length / 8;
+		for (int offset = 0; offset < values.length; offset += chunkLength) {
+			int count = Math.min(chunkLength, values.length - offset);
+			dis.readFully(chunk, 0, count * 8);
+			view.get(0, values, offset, count);
 		}
 	}
 
 	public static double[] readDoubleArray(DataInputStream dis) throws IOException {
-		int length = dis.readInt();
+		return readDoubleArray(dis, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static double[] readDoubleArray(DataInputStream dis, MessageFormat format) throws IOException {
+		int length = readLength(dis, format);
 		if (length == 0) {
 			return null;
 		}
 		double[] doubleArray = new double[length];
-		for (int i = 0; i < length; i++) {
-			doubleArray[i] = dis.readDouble();
-		}
+		readDoubleValues(dis, doubleArray);
 		return doubleArray;
 	}
 
 	public static double[] readDoubleArray(ByteBuffer buf) {
-		int length = buf.getInt();
+		return readDoubleArray(buf, buf.getInt());
+	}
+
+	public static double[] readDoubleArray(ByteBuffer buf, MessageFormat format) {
+		if (!format.isCompact()) {
+			return readDoubleArray(buf);
+		}
+		return readDoubleArray(buf, readVarInt(buf));
+	}
+
+	private static double[] readDoubleArray(ByteBuffer buf, int length) {
 		if (length == 0) {
 			return null;
 		}
 		double[] doubleArray = new double[length];
-		for (int i = 0; i < length; i++) {
-			doubleArray[i] = buf.getDouble();
-		}
+		buf.asDoubleBuffer().get(doubleArray);
+		buf.position(buf.position() + length * 8);
 		return doubleArray;
 	}
 
 	public static void writeStringArray(DataOutputStream dos, String[] stringArray) throws IOException {
+		writeStringArray(dos, stringArray, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static void writeStringArray(DataOutputStream dos, String[] stringArray, MessageFormat format) throws IOException {
 		if (stringArray == null || stringArray.length == 0) {
-			dos.writeInt(0);
+			writeLength(dos, 0, format);
 		} else {
-			dos.writeInt(stringArray.length);
+			writeLength(dos, stringArray.length, format);
 			for (String value : stringArray) {
-				writeString(dos, value);
+				writeString(dos, value, format);
+			}
+		}
+	}
+
+	public static void writeStringArray(ByteBuffer buf, String[] stringArray, MessageFormat format) {
+		if (stringArray == null || stringArray.length == 0) {
+			writeLength(buf, 0, format);
+		} else {
+			writeLength(buf, stringArray.length, format);
+			for (String value : stringArray) {
+				writeString(buf, value, format);
 			}
 		}
 	}
 
+	public static int getStringArraySize(String[] stringArray, MessageFormat format) {
+		if (stringArray == null || stringArray.length == 0) {
+			return getLengthSize(0, format);
+		}
+		int size = getLengthSize(stringArray.length, format);
+		for (String value : stringArray) {
+			size += getStringSize(value, format);
+		}
+		return size;
+	}
+
 	public static String[] readStringArray(DataInputStream dis) throws IOException {
-		int length = dis.readInt();
+		return readStringArray(dis, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static String[] readStringArray(DataInputStream dis, MessageFormat format) throws IOException {
+		int length = readLength(dis, format);
 		if (length == 0) {
 			return null;
 		}
 		String[] stringArray = new String[length];
 		for (int i = 0; i < length; i++) {
-			stringArray[i] = readString(dis);
+			stringArray[i] = readString(dis, format);
 		}
 		return stringArray;
 	}
 
 	public static String[] readStringArray(ByteBuffer buf) {
-		int length = buf.getInt();
+		return readStringArray(buf, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static String[] readStringArray(ByteBuffer buf, MessageFormat format) {
+		int length = readLength(buf, format);
 		if (length == 0) {
 			return null;
 		}
 		String[] stringArray = new String[length];
 		for (int i = 0; i < length; i++) {
-			stringArray[i] = readString(buf);
+			stringArray[i] = readString(buf, format);
 		}
 		return stringArray;
 	}
@@ -478,92 +1466,470 @@ public class MessageUtils {
 	}
 
 	public static Instant readInstant32(DataInputStream dis) throws IOException {
-		int value = dis.readInt();
+		return readInstant32(dis, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static Instant readInstant32(DataInputStream dis, MessageFormat format) throws IOException {
+		int value = readInt(dis, format);
 		return value == 0 ? null : Instant.ofEpochSecond(value);
 	}
 
+	public static Instant readInstant32(ByteBuffer buf, MessageFormat format) {
+		int value = readInt(buf, format);
+		return value == 0 ? null : Instant.ofEpochSecond(value);
+	}
 
 	public static void writeInstant32(DataOutputStream dos, Instant instant) throws IOException {
-		if (instant == null) {
-			dos.writeInt(0);
-		} else {
-			dos.writeInt((int) instant.getEpochSecond());
-		}
+		writeInstant32(dos, instant, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static void writeInstant32(DataOutputStream dos, Instant instant, MessageFormat format) throws IOException {
+		writeInt(dos, instant == null ? 0 : (int) instant.getEpochSecond(), format);
+	}
+
+	public static void writeInstant32(ByteBuffer buf, Instant instant, MessageFormat format) {
+		writeInt(buf, instant == null ? 0 : (int) instant.getEpochSecond(), format);
+	}
+
+	public static int getInstant32Size(Instant instant, MessageFormat format) {
+		return getIntSize(instant == null ? 0 : (int) instant.getEpochSecond(), format);
 	}
 
 	public static Instant readInstant64(DataInputStream dis) throws IOException {
-		long value = dis.readLong();
+		return readInstant64(dis, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static Instant readInstant64(DataInputStream dis, MessageFormat format) throws IOException {
+		long value = readLong(dis, format);
+		return value == 0 ? null : Instant.ofEpochMilli(value);
+	}
+
+	public static Instant readInstant64(ByteBuffer buf, MessageFormat format) {
+		long value = readLong(buf, format);
 		return value == 0 ? null : Instant.ofEpochMilli(value);
 	}
 
 	public static void writeInstant64(DataOutputStream dos, Instant instant) throws IOException {
-		if (instant == null) {
-			dos.writeLong(0);
-		} else {
-			dos.writeLong(instant.toEpochMilli());
-		}
+		writeInstant64(dos, instant, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static void writeInstant64(DataOutputStream dos, Instant instant, MessageFormat format) throws IOException {
+		writeLong(dos, instant == null ? 0 : instant.toEpochMilli(), format);
+	}
+
+	public static void writeInstant64(ByteBuffer buf, Instant instant, MessageFormat format) {
+		writeLong(buf, instant == null ? 0 : instant.toEpochMilli(), format);
+	}
+
+	public static int getInstant64Size(Instant instant, MessageFormat format) {
+		return getLongSize(instant == null ? 0 : instant.toEpochMilli(), format);
 	}
 
 	public static LocalDateTime readLocalDateTime(DataInputStream dis) throws IOException {
-		long value = dis.readLong();
+		return readLocalDateTime(dis, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static LocalDateTime readLocalDateTime(DataInputStream dis, MessageFormat format) throws IOException {
+		long value = readLong(dis, format);
+		return value == 0 ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(value), ZoneOffset.UTC);
+	}
+
+	public static LocalDateTime readLocalDateTime(ByteBuffer buf, MessageFormat format) {
+		long value = readLong(buf, format);
 		return value == 0 ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(value), ZoneOffset.UTC);
 	}
 
 	public static void writeLocalDateTime(DataOutputStream dos, LocalDateTime localDateTime) throws IOException {
-		if (localDateTime == null) {
-			dos.writeLong(0);
-		} else {
-			dos.writeLong(localDateTime.toInstant(ZoneOffset.UTC).toEpochMilli());
-		}
+		writeLocalDateTime(dos, localDateTime, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static void writeLocalDateTime(DataOutputStream dos, LocalDateTime localDateTime, MessageFormat format) throws IOException {
+		writeLong(dos, localDateTime == null ? 0 : localDateTime.toInstant(ZoneOffset.UTC).toEpochMilli(), format);
+	}
+
+	public static void writeLocalDateTime(ByteBuffer buf, LocalDateTime localDateTime, MessageFormat format) {
+		writeLong(buf, localDateTime == null ? 0 : localDateTime.toInstant(ZoneOffset.UTC).toEpochMilli(), format);
+	}
+
+	public static int getLocalDateTimeSize(LocalDateTime localDateTime, MessageFormat format) {
+		return getLongSize(localDateTime == null ? 0 : localDateTime.toInstant(ZoneOffset.UTC).toEpochMilli(), format);
 	}
 
 	public static LocalDate readLocalDate(DataInputStream dis) throws IOException {
-		long value = dis.readLong();
+		return readLocalDate(dis, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static LocalDate readLocalDate(DataInputStream dis, MessageFormat format) throws IOException {
+		long value = readLong(dis, format);
+		return value == 0 ? null : LocalDate.ofEpochDay(value);
+	}
+
+	public static LocalDate readLocalDate(ByteBuffer buf, MessageFormat format) {
+		long value = readLong(buf, format);
 		return value == 0 ? null : LocalDate.ofEpochDay(value);
 	}
 
 	public static void writeLocalDate(DataOutputStream dos, LocalDate localDate) throws IOException {
-		if (localDate == null) {
-			dos.writeLong(0);
-		} else {
-			dos.writeLong(localDate.toEpochDay());
-		}
+		writeLocalDate(dos, localDate, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static void writeLocalDate(DataOutputStream dos, LocalDate localDate, MessageFormat format) throws IOException {
+		writeLong(dos, localDate == null ? 0 : localDate.toEpochDay(), format);
+	}
+
+	public static void writeLocalDate(ByteBuffer buf, LocalDate localDate, MessageFormat format) {
+		writeLong(buf, localDate == null ? 0 : localDate.toEpochDay(), format);
+	}
+
+	public static int getLocalDateSize(LocalDate localDate, MessageFormat format) {
+		return getLongSize(localDate == null ? 0 : localDate.toEpochDay(), format);
 	}
 
 	public static LocalTime readLocalTime(DataInputStream dis) throws IOException {
-		int value = dis.readInt();
+		return readLocalTime(dis, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static LocalTime readLocalTime(DataInputStream dis, MessageFormat format) throws IOException {
+		int value = readInt(dis, format);
+		return value == 0 ? null : LocalTime.ofSecondOfDay(value);
+	}
+
+	public static LocalTime readLocalTime(ByteBuffer buf, MessageFormat format) {
+		int value = readInt(buf, format);
 		return value == 0 ? null : LocalTime.ofSecondOfDay(value);
 	}
 
 	public static void writeLocalTime(DataOutputStream dos, LocalTime localTime) throws IOException {
-		if (localTime == null) {
-			dos.writeInt(0);
-		} else {
-			dos.writeInt(localTime.toSecondOfDay());
-		}
+		writeLocalTime(dos, localTime, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static void writeLocalTime(DataOutputStream dos, LocalTime localTime, MessageFormat format) throws IOException {
+		writeInt(dos, localTime == null ? 0 : localTime.toSecondOfDay(), format);
+	}
+
+	public static void writeLocalTime(ByteBuffer buf, LocalTime localTime, MessageFormat format) {
+		writeInt(buf, localTime == null ? 0 : localTime.toSecondOfDay(), format);
+	}
+
+	public static int getLocalTimeSize(LocalTime localTime, MessageFormat format) {
+		return getIntSize(localTime == null ? 0 : localTime.toSecondOfDay(), format);
 	}
 
 	public static Message readGenericMessage(DataInputStream dis, FileDataReader fileDataReader) throws IOException {
-		int len = dis.readInt();
+		return readGenericMessage(dis, fileDataReader, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static Message readGenericMessage(DataInputStream dis, FileDataReader fileDataReader, MessageFormat format) throws IOException {
+		int len = readLength(dis, format);
+		if (len == 0) {
+			return null;
+		}
+		CountingDataInputStream counting = dis instanceof CountingDataInputStream countingDis ? countingDis : new CountingDataInputStream(dis);
+		long start = counting.getCount();
+		Message message = new Message(counting, fileDataReader);
+		long consumed = counting.getCount() - start;
+		if (consumed != len) {
+			throw new RuntimeException("Message parsing error - generic message length:" + len + ", consumed:" + consumed);
+		}
+		return message;
+	}
+
+	public static Message readGenericMessage(ByteBuffer buf, FileDataReader fileDataReader, MessageFormat format) throws IOException {
+		return readGenericMessage(buf, fileDataReader, format, false);
+	}
+
+	public static Message readGenericMessage(ByteBuffer buf, FileDataReader fileDataReader, MessageFormat format, boolean lazy) throws IOException {
+		int len = readLength(buf, format);
 		if (len == 0) {
 			return null;
 		} else {
-			byte[] bytes = new byte[len];
-			dis.readFully(bytes);
-			return new Message(bytes, fileDataReader);
+			int position = buf.position();
+			ByteBuffer slice = buf.slice(position, len);
+			Message message = new Message(slice, fileDataReader, lazy);
+			checkConsumed(slice, len);
+			buf.position(position + len);
+			return message;
+		}
+	}
+
+	private static void checkConsumed(ByteBuffer message, int length) {
+		if (message.position() != length) {
+			throw new RuntimeException("Message parsing error - generic message length:" + length + ", consumed:" + message.position());
 		}
 	}
 
 	public static void writeGenericMessage(DataOutputStream dos, Message message, FileDataWriter fileDataWriter) throws IOException {
+		writeGenericMessage(dos, message, fileDataWriter, MessageFormat.FIXED_WIDTH);
+	}
+
+	public static void writeGenericMessage(DataOutputStream dos, Message message, FileDataWriter fileDataWriter, MessageFormat format) throws IOException {
 		if (message == null) {
-			dos.writeInt(0);
+			writeLength(dos, 0, format);
 		} else {
-			byte[] bytes = message.toBytes(fileDataWriter);
-			dos.writeInt(bytes.length);
-			dos.write(bytes);
+			FileDataWriter writer = CachedFileDataWriter.of(fileDataWriter);
+			int size = message.getSerializedSize(format, writer);
+			writeLength(dos, size, format);
+			int end = dos.size() + size;
+			message.write(dos, writer, false, format);
+			if (dos.size() != end) {
+				throw new RuntimeException("Message size mismatch, expected:" + size + ", written:" + (size + dos.size() - end));
+			}
+		}
+	}
+
+	public static void writeGenericMessage(ByteBuffer buf, Message message, MessageFormat format) {
+		if (message == null) {
+			writeLength(buf, 0, format);
+		} else {
+			writeSizedMessage(buf, message, message.getWrittenSize(format), format);
+		}
+	}
+
+	public static int getGenericMessageSize(Message message, MessageFormat format) {
+		if (message == null) {
+			return getLengthSize(0, format);
+		}
+		int size = message.getSerializedSize(format);
+		return getLengthSize(size, format) + size;
+	}
+
+	/**
+	 * Writes the format marker, model uuid, model version and attribute count that precede the attributes of a message.
+	 */
+	public static void writeMessageHeader(ByteBuffer buf, MessageModel model, int attributeCount, MessageFormat format) {
+		if (format.isCompact()) {
+			buf.put((byte) format.getMarker());
+		}
+		writeString(buf, model.getObjectUuid(), format);
+		writeShort(buf, model.getModelVersion(), format);
+		writeShort(buf, attributeCount, format);
+	}
+
+	public static int getMessageHeaderSize(MessageModel model, int attributeCount, MessageFormat format) {
+		int size = format.isCompact() ? 1 : 0;
+		size += getStringSize(model.getObjectUuid(), format);
+		size += getShortSize(model.getModelVersion(), format);
+		return size + getShortSize(attributeCount, format);
+	}
+
+	/**
+	 * Advances the buffer over a complete encoded message without decoding it.
+	 */
+	public static void skipMessage(ByteBuffer buf) {
+		MessageFormat format = Message.readMessageFormat(buf);
+		skip(buf, readLength(buf, format));
+		readShort(buf, format);
+		int attributesCount = readShort(buf, format);
+		for (int i = 0; i < attributesCount; i++) {
+			AttributeType type = AttributeType.getById(buf.get());
+			readShort(buf, format);
+			skipValue(buf, type, format);
+		}
+	}
+
+	/**
+	 * Advances the buffer over an encoded attribute value without decoding it.
+	 */
+	public static void skipValue(ByteBuffer buf, AttributeType type, MessageFormat format) {
+		switch (type) {
+			case OBJECT_SINGLE_REFERENCE -> {
+				if (format.isFramed()) {
+					skip(buf, readLength(buf, format));
+				} else {
+					skipMessage(buf);
+				}
+			}
+			case OBJECT_MULTI_REFERENCE -> {
+				if (format.isFramed()) {
+					skip(buf, readLength(buf, format));
+				} else {
+					int messageCount = readLength(buf, format);
+					for (int i = 0; i < messageCount; i++) {
+						skipMessage(buf);
+					}
+				}
+			}
+			case BOOLEAN, BYTE -> skip(buf, 1);
+			case INT, ENUM, TIMESTAMP_32, TIME -> readInt(buf, format);
+			case LONG, TIMESTAMP_64, DATE_TIME, DATE -> readLong(buf, format);
+			case FLOAT -> skip(buf, 4);
+			case DOUBLE -> skip(buf, 8);
+			case STRING, BYTE_ARRAY, GENERIC_MESSAGE -> skip(buf, readLength(buf, format));
+			case BITSET -> {
+				int size = readLength(buf, format);
+				skip(buf, format.isCompact() ? size >>> 2 : size * 4);
+			}
+			case INT_ARRAY -> skipNumericArray(buf, 4, format);
+			case LONG_ARRAY -> skipNumericArray(buf, 8, format);
+			case FLOAT_ARRAY -> skip(buf, readLength(buf, format) * 4);
+			case DOUBLE_ARRAY -> skip(buf, readLength(buf, format) * 8);
+			case STRING_ARRAY -> {
+				int length = readLength(buf, format);
+				for (int i = 0; i < length; i++) {
+					skip(buf, readLength(buf, format));
+				}
+			}
+			case FILE -> {
+				if (readLong(buf, format) != 0) {
+					skip(buf, 1);
+					skip(buf, readLength(buf, format));
+					skip(buf, readLength(buf, format));
+					if (readBoolean(buf)) {
+						skip(buf, readLength(buf, format));
+					}
+				}
+			}
+			case OBJECT -> {
+			}
+		}
+	}
+
+	/**
+	 * Reads the number of messages of a multi reference. Framed messages store the byte length of the list first.
+	 */
+	public static int readReferenceCount(DataInputStream dis, MessageFormat format) throws IOException {
+		if (format.isFramed()) {
+			readLength(dis, format);
+		}
+		return readLength(dis, format);
+	}
+
+	public static int readReferenceCount(ByteBuffer buf, MessageFormat format) {
+		if (format.isFramed()) {
+			readLength(buf, format);
+		}
+		return readLength(buf, format);
+	}
+
+	/**
+	 * Advances over the type and key in front of the next attribute value if they match the given ones, otherwise
+	 * the buffer is left unchanged. Generated codecs use this to decode the attributes they expect without dispatching.
+	 */
+	public static boolean readAttributeHeader(ByteBuffer buf, int typeId, int key, MessageFormat format) {
+		int position = buf.position();
+		if (buf.get(position) == typeId) {
+			buf.position(position + 1);
+			if (readShort(buf, format) == key) {
+				return true;
+			}
+			buf.position(position);
+		}
+		return false;
+	}
+
+	/**
+	 * Skips the byte length in front of a referenced message of a framed message.
+	 */
+	public static void skipMessageFrameLength(DataInputStream dis, MessageFormat format) throws IOException {
+		if (format.isFramed()) {
+			readLength(dis, format);
 		}
 	}
 
+	/**
+	 * For framed messages returns a buffer limited to the next referenced message and advances over it, otherwise the
+	 * buffer itself is returned and advanced by the caller.
+	 */
+	public static ByteBuffer readMessageFrame(ByteBuffer buf, MessageFormat format) {
+		if (!format.isFramed()) {
+			return buf;
+		}
+		int length = readLength(buf, format);
+		int position = buf.position();
+		buf.position(position + length);
+		return buf.slice(position, length);
+	}
+
+	public static void writeMessageFrame(DataOutputStream dos, byte[] message, MessageFormat format) throws IOException {
+		writeLength(dos, message.length, format);
+		dos.write(message);
+	}
+
+	/**
+	 * Size of a framed message of the given length including its length prefix.
+	 */
+	public static int getMessageFrameSize(int length, MessageFormat format) {
+		return getLengthSize(length, format) + length;
+	}
+
+	/**
+	 * Writes the value of a single reference attribute, framed messages get their byte length in front.
+	 */
+	public static void writeReference(ByteBuffer buf, MessageRecord message, MessageFormat format) {
+		if (format.isFramed()) {
+			writeSizedMessage(buf, message, message.getWrittenSize(format), format);
+		} else {
+			message.write(buf, format);
+		}
+	}
+
+	/**
+	 * Writes the value of a multi reference attribute, a null list is written as empty list.
+	 */
+	public static void writeReferences(ByteBuffer buf, List<? extends MessageRecord> messages, MessageFormat format) {
+		int count = messages == null ? 0 : messages.size();
+		if (!format.isFramed()) {
+			writeLength(buf, count, format);
+			for (int i = 0; i < count; i++) {
+				messages.get(i).write(buf, format);
+			}
+			return;
+		}
+		int[] sizes = new int[count];
+		int listSize = getLengthSize(count, format);
+		for (int i = 0; i < count; i++) {
+			sizes[i] = messages.get(i).getWrittenSize(format);
+			listSize += getMessageFrameSize(sizes[i], format);
+		}
+		writeLength(buf, listSize, format);
+		writeLength(buf, count, format);
+		for (int i = 0; i < count; i++) {
+			writeSizedMessage(buf, messages.get(i), sizes[i], format);
+		}
+	}
+
+	/**
+	 * Writes a message behind the length it was sized with and verifies that the message matches that length.
+	 */
+	private static void writeSizedMessage(ByteBuffer buf, MessageRecord message, int size, MessageFormat format) {
+		writeLength(buf, size, format);
+		int end = buf.position() + size;
+		message.write(buf, format);
+		if (buf.position() != end) {
+			throw new RuntimeException("Message size mismatch, expected:" + size + ", written:" + (size + buf.position() - end));
+		}
+	}
+
+	public static int getReferenceSize(MessageRecord message, MessageFormat format) {
+		int messageSize = message.getSerializedSize(format);
+		return format.isFramed() ? getMessageFrameSize(messageSize, format) : messageSize;
+	}
+
+	public static int getReferencesSize(List<? extends MessageRecord> messages, MessageFormat format) {
+		int size = getLengthSize(messages == null ? 0 : messages.size(), format);
+		if (messages != null) {
+			for (MessageRecord message : messages) {
+				size += getReferenceSize(message, format);
+			}
+		}
+		return format.isFramed() ? getMessageFrameSize(size, format) : size;
+	}
+
+	private static void skipNumericArray(ByteBuffer buf, int valueSize, MessageFormat format) {
+		int length = readLength(buf, format);
+		if (!format.isCompact()) {
+			skip(buf, length * valueSize);
+		} else if ((length & 0b11) == 0) {
+			skip(buf, (length >>> 2) * valueSize);
+		} else {
+			skip(buf, readVarInt(buf));
+		}
+	}
+
+	private static void skip(ByteBuffer buf, int length) {
+		buf.position(buf.position() + length);
+	}
+
 	public static void writeBoolean(ByteBuffer buffer, boolean value) {
 		buffer.put((byte) (value ? 1 : 0));
 	}
@@ -580,4 +1946,56 @@ public class MessageUtils {
 		return buffer.getShort();
 	}
 
+	/**
+	 * Decodes nested generic messages in place from the stream of their parent and counts the bytes they consume.
+	 * Nested generic messages are read from the same counting stream, so it wraps the parent stream only once.
+	 */
+	private static class CountingDataInputStream extends DataInputStream {
+
+		CountingDataInputStream(InputStream in) {
+			super(new CountingInputStream(in));
+		}
+
+		long getCount() {
+			return ((CountingInputStream) in).count;
+		}
+	}
+
+	private static class CountingInputStream extends FilterInputStream {
+		private long count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int value = in.read();
+			if (value >= 0) {
+				count++;
+			}
+			return value;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			int read = in.read(bytes, offset, length);
+			if (read > 0) {
+				count += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long length) throws IOException {
+			long skipped = in.skip(length);
+			count += skipped;
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
 }
@@ -0,0 +1,126 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.utils;
+
+import org.teamapps.message.protocol.file.FileData;
+import org.teamapps.message.protocol.model.AttributeDefinition;
+import org.teamapps.message.protocol.model.MessageModel;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.BitSet;
+
+/**
+ * Receives the content of an encoded message from {@link MessageWalker} without any message objects being built.
+ * All methods do nothing by default. Values are reported as the decoders of {@link MessageUtils} return them, so
+ * empty strings, arrays and timestamps are reported as null. Buffers passed to the visitor are views of the source
+ * and only valid during the call.
+ */
+public interface MessageVisitor {
+
+	default void onMessageStart(MessageModel model) {
+	}
+
+	default void onMessageEnd(MessageModel model) {
+	}
+
+	/**
+	 * Called before the referenced messages of a single or multi reference attribute.
+	 *
+	 * @return false to skip the referenced messages, {@link #onReferenceEnd(AttributeDefinition)} is called anyway
+	 */
+	default boolean onReferenceStart(AttributeDefinition definition, int count) {
+		return true;
+	}
+
+	default void onReferenceEnd(AttributeDefinition definition) {
+	}
+
+	default void onBoolean(AttributeDefinition definition, boolean value) {
+	}
+
+	default void onByte(AttributeDefinition definition, byte value) {
+	}
+
+	default void onInt(AttributeDefinition definition, int value) {
+	}
+
+	default void onEnum(AttributeDefinition definition, int value) {
+		onInt(definition, value);
+	}
+
+	default void onLong(AttributeDefinition definition, long value) {
+	}
+
+	default void onFloat(AttributeDefinition definition, float value) {
+	}
+
+	default void onDouble(AttributeDefinition definition, double value) {
+	}
+
+	default void onString(AttributeDefinition definition, CharSequence value) {
+	}
+
+	default void onBitSet(AttributeDefinition definition, BitSet value) {
+	}
+
+	default void onByteArray(AttributeDefinition definition, ByteBuffer value) {
+	}
+
+	default void onIntArray(AttributeDefinition definition, int[] value) {
+	}
+
+	default void onLongArray(AttributeDefinition definition, long[] value) {
+	}
+
+	default void onFloatArray(AttributeDefinition definition, float[] value) {
+	}
+
+	default void onDoubleArray(AttributeDefinition definition, double[] value) {
+	}
+
+	default void onStringArray(AttributeDefinition definition, String[] value) {
+	}
+
+	default void onFile(AttributeDefinition definition, FileData value) {
+	}
+
+	default void onTimestamp(AttributeDefinition definition, Instant value) {
+	}
+
+	default void onDateTime(AttributeDefinition definition, LocalDateTime value) {
+	}
+
+	default void onDate(AttributeDefinition definition, LocalDate value) {
+	}
+
+	default void onTime(AttributeDefinition definition, LocalTime value) {
+	}
+
+	/**
+	 * Generic messages carry no model, the encoded message is passed on so that it can be walked with a model that
+	 * the visitor knows.
+	 */
+	default void onGenericMessage(AttributeDefinition definition, ByteBuffer message) {
+	}
+}
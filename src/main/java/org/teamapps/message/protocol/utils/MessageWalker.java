@@ -0,0 +1,155 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.utils;
+
+import org.teamapps.message.protocol.file.FileDataReader;
+import org.teamapps.message.protocol.message.AttributeType;
+import org.teamapps.message.protocol.message.Message;
+import org.teamapps.message.protocol.message.MessageFormat;
+import org.teamapps.message.protocol.model.AttributeDefinition;
+import org.teamapps.message.protocol.model.MessageModel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Walks encoded messages and reports their content to a {@link MessageVisitor}. Attributes unknown to the model are
+ * skipped, referenced messages are walked with the model of their attribute definition.
+ */
+public class MessageWalker {
+
+	public static void walk(byte[] bytes, MessageModel model, MessageVisitor visitor) throws IOException {
+		walk(ByteBuffer.wrap(bytes), model, null, visitor);
+	}
+
+	public static void walk(ByteBuffer buffer, MessageModel model, MessageVisitor visitor) throws IOException {
+		walk(buffer, model, null, visitor);
+	}
+
+	/**
+	 * Walks the message at the position of the buffer and advances the buffer to its end.
+	 */
+	public static void walk(ByteBuffer buffer, MessageModel model, FileDataReader fileDataReader, MessageVisitor visitor) throws IOException {
+		MessageFormat format = Message.readMessageFormat(buffer);
+		readObjectUuid(buffer, model, format);
+		MessageUtils.readShort(buffer, format);
+		visitor.onMessageStart(model);
+		int attributesCount = MessageUtils.readShort(buffer, format);
+		for (int i = 0; i < attributesCount; i++) {
+			AttributeType type = AttributeType.getById(buffer.get());
+			int key = MessageUtils.readShort(buffer, format);
+			AttributeDefinition definition = model.getAttributeDefinitionByKey(key);
+			if (definition == null) {
+				MessageUtils.skipValue(buffer, type, format);
+			} else if (type != definition.getType()) {
+				throw new RuntimeException("Message parsing error - property type mismatch: " + type + " <-> " + definition.getType());
+			} else if (type.isReference()) {
+				walkReferences(buffer, definition, fileDataReader, format, visitor);
+			} else {
+				walkValue(buffer, definition, fileDataReader, format, visitor);
+			}
+		}
+		visitor.onMessageEnd(model);
+	}
+
+	private static void walkReferences(ByteBuffer buffer, AttributeDefinition definition, FileDataReader fileDataReader, MessageFormat format, MessageVisitor visitor) throws IOException {
+		MessageModel model = definition.getReferencedObject();
+		if (definition.getType() == AttributeType.OBJECT_SINGLE_REFERENCE) {
+			if (visitor.onReferenceStart(definition, 1)) {
+				walk(MessageUtils.readMessageFrame(buffer, format), model, fileDataReader, visitor);
+			} else if (format.isFramed()) {
+				MessageUtils.readMessageFrame(buffer, format);
+			} else {
+				MessageUtils.skipMessage(buffer);
+			}
+		} else {
+			int listEnd = format.isFramed() ? MessageUtils.readLength(buffer, format) + buffer.position() : -1;
+			int count = MessageUtils.readLength(buffer, format);
+			if (visitor.onReferenceStart(definition, count)) {
+				for (int i = 0; i < count; i++) {
+					walk(MessageUtils.readMessageFrame(buffer, format), model, fileDataReader, visitor);
+				}
+			} else if (format.isFramed()) {
+				buffer.position(listEnd);
+			} else {
+				for (int i = 0; i < count; i++) {
+					MessageUtils.skipMessage(buffer);
+				}
+			}
+		}
+		visitor.onReferenceEnd(definition);
+	}
+
+	private static void walkValue(ByteBuffer buffer, AttributeDefinition definition, FileDataReader fileDataReader, MessageFormat format, MessageVisitor visitor) throws IOException {
+		switch (definition.getType()) {
+			case BOOLEAN -> visitor.onBoolean(definition, MessageUtils.readBoolean(buffer));
+			case BYTE -> visitor.onByte(definition, buffer.get());
+			case INT -> visitor.onInt(definition, MessageUtils.readInt(buffer, format));
+			case ENUM -> visitor.onEnum(definition, MessageUtils.readInt(buffer, format));
+			case LONG -> visitor.onLong(definition, MessageUtils.readLong(buffer, format));
+			case FLOAT -> visitor.onFloat(definition, buffer.getFloat());
+			case DOUBLE -> visitor.onDouble(definition, buffer.getDouble());
+			case STRING -> visitor.onString(definition, MessageUtils.readString(buffer, format));
+			case BITSET -> visitor.onBitSet(definition, MessageUtils.readBitSet(buffer, format));
+			case BYTE_ARRAY -> visitor.onByteArray(definition, readSlice(buffer, format));
+			case INT_ARRAY -> visitor.onIntArray(definition, MessageUtils.readIntArray(buffer, format));
+			case LONG_ARRAY -> visitor.onLongArray(definition, MessageUtils.readLongArray(buffer, format));
+			case FLOAT_ARRAY -> visitor.onFloatArray(definition, MessageUtils.readFloatArray(buffer, format));
+			case DOUBLE_ARRAY -> visitor.onDoubleArray(definition, MessageUtils.readDoubleArray(buffer, format));
+			case STRING_ARRAY -> visitor.onStringArray(definition, MessageUtils.readStringArray(buffer, format));
+			case FILE -> visitor.onFile(definition, MessageUtils.readFile(buffer, fileDataReader, format));
+			case TIMESTAMP_32 -> visitor.onTimestamp(definition, MessageUtils.readInstant32(buffer, format));
+			case TIMESTAMP_64 -> visitor.onTimestamp(definition, MessageUtils.readInstant64(buffer, format));
+			case DATE_TIME -> visitor.onDateTime(definition, MessageUtils.readLocalDateTime(buffer, format));
+			case DATE -> visitor.onDate(definition, MessageUtils.readLocalDate(buffer, format));
+			case TIME -> visitor.onTime(definition, MessageUtils.readLocalTime(buffer, format));
+			case GENERIC_MESSAGE -> visitor.onGenericMessage(definition, readSlice(buffer, format));
+			default -> throw new RuntimeException("Message parsing error - property type unknown:" + definition.getType());
+		}
+	}
+
+	private static ByteBuffer readSlice(ByteBuffer buffer, MessageFormat format) {
+		int length = MessageUtils.readLength(buffer, format);
+		if (length == 0) {
+			return null;
+		}
+		int position = buffer.position();
+		buffer.position(position + length);
+		return buffer.slice(position, length);
+	}
+
+	private static void readObjectUuid(ByteBuffer buffer, MessageModel model, MessageFormat format) {
+		int length = MessageUtils.readLength(buffer, format);
+		String objectUuid = model.getObjectUuid();
+		int position = buffer.position();
+		boolean matches = length == objectUuid.length();
+		for (int i = 0; matches && i < length; i++) {
+			matches = buffer.get(position + i) == objectUuid.charAt(i);
+		}
+		if (!matches) {
+			String actualUuid = MessageUtils.readString(buffer, length);
+			if (!objectUuid.equals(actualUuid)) {
+				throw new RuntimeException("Cannot parse message with wrong model:" + actualUuid + ", expected:" + objectUuid);
+			}
+		} else {
+			buffer.position(position + length);
+		}
+	}
+}
@@ -20,27 +20,35 @@
 package org.teamapps.message.protocol.utils;
 
 import org.teamapps.message.protocol.message.Message;
+import org.teamapps.message.protocol.message.MessageFormat;
 import org.teamapps.message.protocol.file.FileDataWriter;
 
 import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 public class MessageWriter implements AutoCloseable{
 
 	private DataOutputStream dos;
 	private FileDataWriter fileSink;
+	private final MessageFormat format;
+	private final MessageEncoder encoder = new MessageEncoder();
 
 	public MessageWriter(OutputStream outputStream, FileDataWriter fileSink) {
+		this(outputStream, fileSink, MessageFormat.FIXED_WIDTH);
+	}
+
+	public MessageWriter(OutputStream outputStream, FileDataWriter fileSink, MessageFormat format) {
 		this.dos = new DataOutputStream(new BufferedOutputStream(outputStream));
 		this.fileSink = fileSink;
+		this.format = format;
 	}
 
 	public void writeMessage(Message message) throws IOException {
-		byte[] bytes = message.toBytes(fileSink);
-		dos.writeInt(bytes.length);
-		dos.write(bytes);
+		ByteBuffer frame = encoder.encodeFrame(message, fileSink, format);
+		dos.write(frame.array(), frame.arrayOffset(), frame.remaining());
 	}
 
 	@Override
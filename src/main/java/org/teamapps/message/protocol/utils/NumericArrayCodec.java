@@ -0,0 +1,213 @@
+/*-
+ * ========================LICENSE_START=================================
+ * TeamApps Message Protocol
+ * ---
+ * Copyright (C) 2022 - 2024 TeamApps.org
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.teamapps.message.protocol.utils;
+
+import org.teamapps.message.protocol.message.AttributeEncoding;
+
+import java.nio.ByteBuffer;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Delta and frame-of-reference payloads for int and long arrays.
+ * <p>
+ * {@link AttributeEncoding#DELTA_VARINT} stores the first value followed by the differences of consecutive values,
+ * all as zigzag varints. {@link AttributeEncoding#FRAME_OF_REFERENCE} splits the values into blocks of
+ * {@value #BLOCK_SIZE}, each stored as its zigzag varint minimum, one byte bit width and the offsets to the minimum
+ * packed little-endian at that bit width. Bit widths above {@value #MAX_PACKED_BIT_WIDTH} are stored as 64.
+ */
+final class NumericArrayCodec {
+
+	private static final int BLOCK_SIZE = 128;
+	private static final int MAX_PACKED_BIT_WIDTH = 56;
+
+	private NumericArrayCodec() {
+	}
+
+	static int getPayloadSize(int[] values, AttributeEncoding encoding) {
+		return getPayloadSize(index -> values[index], values.length, encoding);
+	}
+
+	static int getPayloadSize(long[] values, AttributeEncoding encoding) {
+		return getPayloadSize(index -> values[index], values.length, encoding);
+	}
+
+	static void encode(ByteBuffer buf, int[] values, AttributeEncoding encoding) {
+		encode(buf, index -> values[index], values.length, encoding);
+	}
+
+	static void encode(ByteBuffer buf, long[] values, AttributeEncoding encoding) {
+		encode(buf, index -> values[index], values.length, encoding);
+	}
+
+	static int[] decodeIntArray(ByteBuffer buf, int length, AttributeEncoding encoding) {
+		int[] values = new int[length];
+		decode(buf, length, encoding, (index, value) -> values[index] = (int) value);
+		return values;
+	}
+
+	static long[] decodeLongArray(ByteBuffer buf, int length, AttributeEncoding encoding) {
+		long[] values = new long[length];
+		decode(buf, length, encoding, (index, value) -> values[index] = value);
+		return values;
+	}
+
+	private static int getPayloadSize(IntToLongFunction values, int length, AttributeEncoding encoding) {
+		int size = 0;
+		if (encoding == AttributeEncoding.DELTA_VARINT) {
+			long previous = 0;
+			for (int i = 0; i < length; i++) {
+				long value = values.applyAsLong(i);
+				size += MessageUtils.getVarLongSize(MessageUtils.encodeZigZag(value - previous));
+				previous = value;
+			}
+			return size;
+		}
+		for (int offset = 0; offset < length; offset += BLOCK_SIZE) {
+			int end = Math.min(length, offset + BLOCK_SIZE);
+			long min = values.applyAsLong(offset);
+			long max = min;
+			for (int i = offset + 1; i < end; i++) {
+				long value = values.applyAsLong(i);
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+			}
+			size += getBlockSize(min, max, end - offset);
+		}
+		return size;
+	}
+
+	private static void encode(ByteBuffer buf, IntToLongFunction values, int length, AttributeEncoding encoding) {
+		if (encoding == AttributeEncoding.DELTA_VARINT) {
+			long previous = 0;
+			for (int i = 0; i < length; i++) {
+				long value = values.applyAsLong(i);
+				MessageUtils.writeVarLong(buf, MessageUtils.encodeZigZag(value - previous));
+				previous = value;
+			}
+			return;
+		}
+		long[] block = new long[Math.min(BLOCK_SIZE, length)];
+		for (int offset = 0; offset < length; offset += BLOCK_SIZE) {
+			int blockLength = Math.min(BLOCK_SIZE, length - offset);
+			for (int i = 0; i < blockLength; i++) {
+				block[i] = values.applyAsLong(offset + i);
+			}
+			writeBlock(buf, block, blockLength);
+		}
+	}
+
+	private static void decode(ByteBuffer buf, int length, AttributeEncoding encoding, ValueSink values) {
+		if (encoding == AttributeEncoding.DELTA_VARINT) {
+			long value = 0;
+			for (int i = 0; i < length; i++) {
+				value += MessageUtils.decodeZigZag(MessageUtils.readVarLong(buf));
+				values.set(i, value);
+			}
+			return;
+		}
+		long[] block = new long[Math.min(BLOCK_SIZE, length)];
+		for (int offset = 0; offset < length; offset += BLOCK_SIZE) {
+			int blockLength = Math.min(BLOCK_SIZE, length - offset);
+			readBlock(buf, block, blockLength);
+			for (int i = 0; i < blockLength; i++) {
+				values.set(offset + i, block[i]);
+			}
+		}
+	}
+
+	private static int getBitWidth(long min, long max) {
+		int bitWidth = 64 - Long.numberOfLeadingZeros(max - min);
+		return bitWidth > MAX_PACKED_BIT_WIDTH ? 64 : bitWidth;
+	}
+
+	private static int getBlockSize(long min, long max, int length) {
+		return MessageUtils.getVarLongSize(MessageUtils.encodeZigZag(min)) + 1 + (int) (((long) length * getBitWidth(min, max) + 7) >>> 3);
+	}
+
+	private static void writeBlock(ByteBuffer buf, long[] block, int length) {
+		long min = block[0];
+		long max = min;
+		for (int i = 1; i < length; i++) {
+			min = Math.min(min, block[i]);
+			max = Math.max(max, block[i]);
+		}
+		int bitWidth = getBitWidth(min, max);
+		MessageUtils.writeVarLong(buf, MessageUtils.encodeZigZag(min));
+		buf.put((byte) bitWidth);
+		if (bitWidth == 64) {
+			for (int i = 0; i < length; i++) {
+				long offset = block[i] - min;
+				for (int shift = 0; shift < 64; shift += 8) {
+					buf.put((byte) (offset >>> shift));
+				}
+			}
+			return;
+		}
+		long pending = 0;
+		int pendingBits = 0;
+		for (int i = 0; i < length; i++) {
+			pending |= (block[i] - min) << pendingBits;
+			pendingBits += bitWidth;
+			while (pendingBits >= 8) {
+				buf.put((byte) pending);
+				pending >>>= 8;
+				pendingBits -= 8;
+			}
+		}
+		if (pendingBits > 0) {
+			buf.put((byte) pending);
+		}
+	}
+
+	private static void readBlock(ByteBuffer buf, long[] block, int length) {
+		long min = MessageUtils.decodeZigZag(MessageUtils.readVarLong(buf));
+		int bitWidth = buf.get();
+		if (bitWidth == 64) {
+			for (int i = 0; i < length; i++) {
+				long offset = 0;
+				for (int shift = 0; shift < 64; shift += 8) {
+					offset |= (buf.get() & 0xFFL) << shift;
+				}
+				block[i] = min + offset;
+			}
+			return;
+		}
+		if (bitWidth < 0 || bitWidth > MAX_PACKED_BIT_WIDTH) {
+			throw new RuntimeException("Message parsing error - invalid bit width:" + bitWidth);
+		}
+		long mask = (1L << bitWidth) - 1;
+		long pending = 0;
+		int pendingBits = 0;
+		for (int i = 0; i < length; i++) {
+			while (pendingBits < bitWidth) {
+				pending |= (buf.get() & 0xFFL) << pendingBits;
+				pendingBits += 8;
+			}
+			block[i] = min + (pending & mask);
+			pending >>>= bitWidth;
+			pendingBits -= bitWidth;
+		}
+	}
+
+	@FunctionalInterface
+	private interface ValueSink {
+		void set(int index, long value);
+	}
+}
@@ -0,0 +1,55 @@
+package {package};
+
+import org.teamapps.message.protocol.message.*;
+import org.teamapps.message.protocol.model.*;
+import org.teamapps.message.protocol.file.*;
+import org.teamapps.message.protocol.utils.MessageUtils;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Decodes and writes {type} messages with code generated for the attributes of its model. Attributes that are not
+ * part of the model are handled by the generic attribute implementation.
+ */
+public final class {type}Codec {
+
+{definitions}
+	private {type}Codec() {
+	}
+
+	public static {type} decode(ByteBuffer buffer, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		{type} message = new {type}();
+		decode(message, buffer, fileDataReader, decoderRegistry);
+		return message;
+	}
+
+	public static void decode({type} message, ByteBuffer buffer, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry) throws IOException {
+		MessageModel model = message.getModel();
+		MessageFormat format = Message.readHeader(buffer, model);
+		int attributesCount = MessageUtils.readShort(buffer, format);
+		int i = 0;
+{predictedDecodes}		for (; i < attributesCount; i++) {
+			int attributeStart = buffer.position();
+			int type = buffer.get();
+			int key = MessageUtils.readShort(buffer, format);
+			switch ((key << 8) | type) {
+{decodeCases}				default -> {
+					buffer.position(attributeStart);
+					message.addDecodedAttribute(new MessageAttributeImpl(buffer, model, fileDataReader, decoderRegistry, format));
+				}
+			}
+		}
+	}
+
+	public static void writeAttributes({type} message, ByteBuffer buffer, MessageFormat format) {
+		List<MessageAttribute> attributes = message.getAttributes();
+		int attributesCount = attributes.size();
+		int i = 0;
+		MessageAttribute attribute;
+{predictedWrites}		for (; i < attributesCount; i++) {
+			attributes.get(i).write(buffer, format);
+		}
+	}
+
+}
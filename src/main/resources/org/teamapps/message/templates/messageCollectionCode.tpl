@@ -1,3 +1,4 @@
+import org.teamapps.message.protocol.message.AttributeEncoding;
 import org.teamapps.message.protocol.message.AttributeType;
 import org.teamapps.message.protocol.message.MessageDefinition;
 import org.teamapps.message.protocol.message.MessageModelCollection;
@@ -29,6 +29,36 @@ public class {type} extends Message {
 			return null;
 		}
 
+		@Override
+		public {type} decode(ByteBuffer buffer, FileDataReader fileDataReader) {
+			try {
+				return new {type}(buffer, fileDataReader);
+			} catch (IOException e) {
+				LOGGER.error("Error creating {type} instance", e);
+			}
+			return null;
+		}
+
+		@Override
+		public {type} decode(ByteBuffer buffer, FileDataReader fileDataReader, Projection projection) {
+			try {
+				return new {type}(buffer, fileDataReader, projection);
+			} catch (IOException e) {
+				LOGGER.error("Error creating {type} instance", e);
+			}
+			return null;
+		}
+
+		@Override
+		public {type} decodeLazy(ByteBuffer buffer, FileDataReader fileDataReader) {
+			try {
+				return new {type}(buffer, fileDataReader, true);
+			} catch (IOException e) {
+				LOGGER.error("Error creating {type} instance", e);
+			}
+			return null;
+		}
+
 		@Override
 		public {type} decode(Element element, FileDataReader fileDataReader) {
 			return new {type}(element, fileDataReader);
@@ -96,11 +126,28 @@ public class {type} extends Message {
 	}
 
 	public {type}(byte[] bytes) throws IOException {
-		super(bytes, {schema}.MODEL_COLLECTION.getModel(OBJECT_UUID), null, {schema}.MODEL_COLLECTION);
+		this(ByteBuffer.wrap(bytes), null);
 	}
 
 	public {type}(byte[] bytes, FileDataReader fileDataReader) throws IOException {
-		super(bytes, {schema}.MODEL_COLLECTION.getModel(OBJECT_UUID), fileDataReader, {schema}.MODEL_COLLECTION);
+		this(ByteBuffer.wrap(bytes), fileDataReader);
+	}
+
+	public {type}(ByteBuffer buffer, FileDataReader fileDataReader) throws IOException {
+		this();
+		{type}Codec.decode(this, buffer, fileDataReader, {schema}.MODEL_COLLECTION);
+	}
+
+	public {type}(byte[] bytes, FileDataReader fileDataReader, boolean lazy) throws IOException {
+		super(bytes, {schema}.MODEL_COLLECTION.getModel(OBJECT_UUID), fileDataReader, {schema}.MODEL_COLLECTION, lazy);
+	}
+
+	public {type}(ByteBuffer buffer, FileDataReader fileDataReader, boolean lazy) throws IOException {
+		super(buffer, {schema}.MODEL_COLLECTION.getModel(OBJECT_UUID), fileDataReader, {schema}.MODEL_COLLECTION, lazy);
+	}
+
+	public {type}(ByteBuffer buffer, FileDataReader fileDataReader, Projection projection) throws IOException {
+		super(buffer, {schema}.MODEL_COLLECTION.getModel(OBJECT_UUID), fileDataReader, {schema}.MODEL_COLLECTION, projection);
 	}
 
 	public {type}(Element element, FileDataReader fileDataReader) {
@@ -111,6 +158,16 @@ public class {type} extends Message {
         super(xml, {schema}.MODEL_COLLECTION.getModel(OBJECT_UUID), fileDataReader, {schema}.MODEL_COLLECTION);
     }
 
+	@Override
+	protected void writeAttributes(ByteBuffer buffer, MessageFormat format) {
+		{type}Codec.writeAttributes(this, buffer, format);
+	}
+
+	@Override
+	public {type} freeze() {
+		return ({type}) super.freeze();
+	}
+
 {methods}
 
 }
\ No newline at end of file
@@ -0,0 +1,210 @@
+package {package};
+
+import org.teamapps.message.protocol.message.*;
+import org.teamapps.message.protocol.model.*;
+import org.teamapps.message.protocol.file.*;
+import org.teamapps.message.protocol.utils.MessageUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+import java.lang.invoke.MethodHandles;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.time.*;
+
+/**
+ * Variant of {@link {type}} that keeps its attributes in typed fields instead of attribute objects. Attributes that
+ * are not part of the model are skipped when decoding. Generic code can use it as {@link MessageRecord}, {@link #toMessage()}
+ * converts it to a {@link {type}}.
+ */
+public class {type}Record implements MessageRecord {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private final static PojoObjectDecoder<{type}Record> decoder = new PojoObjectDecoder<{type}Record>() {
+		@Override
+		public {type}Record decode(DataInputStream dis, FileDataReader fileDataReader) {
+			return remapNullable({type}.getMessageDecoder().decode(dis, fileDataReader));
+		}
+
+		@Override
+		public {type}Record decode(ByteBuffer buffer, FileDataReader fileDataReader) {
+			try {
+				return new {type}Record(buffer, fileDataReader);
+			} catch (IOException e) {
+				LOGGER.error("Error creating {type}Record instance", e);
+			}
+			return null;
+		}
+
+		@Override
+		public {type}Record decode(Element element, FileDataReader fileDataReader) {
+			return remapNullable({type}.getMessageDecoder().decode(element, fileDataReader));
+		}
+
+		@Override
+		public {type}Record decode(String xml, FileDataReader fileDataReader) {
+			return remapNullable({type}.getMessageDecoder().decode(xml, fileDataReader));
+		}
+
+		@Override
+		public {type}Record defaultMessage() {
+			return remap({type}.getMessageDecoder().defaultMessage());
+		}
+
+		@Override
+		public {type}Record remap(MessageRecord message) {
+			return {type}Record.remap(message);
+		}
+
+		@Override
+		public String getMessageUuid() {
+			return OBJECT_UUID;
+		}
+	};
+
+	public static PojoObjectDecoder<{type}Record> getMessageDecoder() {
+		return decoder;
+	}
+
+	public static {type}Record remap(MessageRecord message) {
+		if (message instanceof {type}Record record) {
+			return record;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(message.getSerializedSize(MessageFormat.COMPACT));
+		message.write(buffer, MessageFormat.COMPACT);
+		try {
+			return new {type}Record(buffer.flip(), null);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static {type}Record remapNullable(MessageRecord message) {
+		return message != null ? remap(message) : null;
+	}
+
+	public final static String OBJECT_UUID = {type}.OBJECT_UUID;
+
+{definitions}
+{fields}
+	public {type}Record() {
+	}
+
+	public {type}Record(byte[] bytes) throws IOException {
+		this(ByteBuffer.wrap(bytes), null);
+	}
+
+	public {type}Record(byte[] bytes, FileDataReader fileDataReader) throws IOException {
+		this(ByteBuffer.wrap(bytes), fileDataReader);
+	}
+
+	public {type}Record(ByteBuffer buffer, FileDataReader fileDataReader) throws IOException {
+		MessageFormat format = Message.readHeader(buffer, getModel());
+		int attributesCount = MessageUtils.readShort(buffer, format);
+		for (int i = 0; i < attributesCount; i++) {
+			int type = buffer.get();
+			int key = MessageUtils.readShort(buffer, format);
+			switch ((key << 8) | type) {
+{decodeCases}				default -> {
+					AttributeType attributeType = AttributeType.getById(type);
+					if (getModel().getAttributeDefinitionByKey(key) != null) {
+						throw new RuntimeException("Message parsing error - property type mismatch: " + attributeType + " for key " + key);
+					}
+					MessageUtils.skipValue(buffer, attributeType, format);
+				}
+			}
+		}
+	}
+
+	public {type} toMessage() {
+		return {type}.remap(this);
+	}
+
+	@Override
+	public MessageModel getModel() {
+		return {type}.getMessageModel();
+	}
+
+	@Override
+	public String getMessageDefUuid() {
+		return OBJECT_UUID;
+	}
+
+	@Override
+	public String getMessageDefName() {
+		return getModel().getName();
+	}
+
+	@Override
+	public List<MessageAttribute> getAttributes() {
+		List<MessageAttribute> attributes = new ArrayList<>();
+{attributes}		return attributes;
+	}
+
+	@Override
+	public MessageAttribute getAttribute(String name) {
+		if (name == null) {
+			return null;
+		}
+		return switch (name) {
+{attributeCases}			default -> null;
+		};
+	}
+
+	@Override
+	public void write(ByteBuffer buffer, MessageFormat format) {
+		MessageUtils.writeMessageHeader(buffer, getModel(), getAttributeCount(), format);
+{writes}	}
+
+	@Override
+	public int getSerializedSize(MessageFormat format) {
+		int size = MessageUtils.getMessageHeaderSize(getModel(), getAttributeCount(), format);
+{sizes}		return size;
+	}
+
+	private int getAttributeCount() {
+		int count = 0;
+{counts}		return count;
+	}
+
+	@Override
+	public byte[] toBytes() throws IOException {
+		return toBytes(null);
+	}
+
+	@Override
+	public byte[] toBytes(FileDataWriter fileDataWriter) throws IOException {
+		return toBytes(fileDataWriter, false);
+	}
+
+	@Override
+	public byte[] toBytes(FileDataWriter fileDataWriter, boolean updateFileData) throws IOException {
+		return toBytes(fileDataWriter, updateFileData, MessageFormat.FIXED_WIDTH);
+	}
+
+	/**
+	 * With a file data writer the record is written as {@link {type}}, updated file data is not taken over by the record.
+	 */
+	public byte[] toBytes(FileDataWriter fileDataWriter, boolean updateFileData, MessageFormat format) throws IOException {
+		if (fileDataWriter != null) {
+			return toMessage().toBytes(fileDataWriter, updateFileData, format);
+		}
+		byte[] bytes = new byte[getSerializedSize(format)];
+		write(ByteBuffer.wrap(bytes), format);
+		return bytes;
+	}
+
+	@Override
+	public String toXml() throws IOException {
+		return toMessage().toXml();
+	}
+
+{methods}
+	@Override
+	public String toString() {
+		return toMessage().toString();
+	}
+
+}
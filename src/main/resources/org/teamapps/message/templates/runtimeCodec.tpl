@@ -0,0 +1,47 @@
+package org.teamapps.message.protocol.builder;
+
+import org.teamapps.message.protocol.message.*;
+import org.teamapps.message.protocol.model.*;
+import org.teamapps.message.protocol.file.*;
+import org.teamapps.message.protocol.utils.MessageUtils;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+public final class RuntimeMessageCodec extends CompiledMessageCodec {
+
+{definitions}
+	public RuntimeMessageCodec(MessageModel model, ModelRegistry modelRegistry) {
+		super(model, modelRegistry);
+{assignments}	}
+
+	@Override
+	public void readAttributes(Message message, ByteBuffer buffer, FileDataReader fileDataReader, PojoObjectDecoderRegistry decoderRegistry, MessageFormat format) throws IOException {
+		MessageModel model = getModel();
+		int attributesCount = MessageUtils.readShort(buffer, format);
+		int i = 0;
+{predictedDecodes}		for (; i < attributesCount; i++) {
+			int attributeStart = buffer.position();
+			int type = buffer.get();
+			int key = MessageUtils.readShort(buffer, format);
+			switch ((key << 8) | type) {
+{decodeCases}				default -> {
+					buffer.position(attributeStart);
+					message.addDecodedAttribute(new MessageAttributeImpl(buffer, model, fileDataReader, decoderRegistry, format));
+				}
+			}
+		}
+	}
+
+	@Override
+	public void writeAttributes(Message message, ByteBuffer buffer, MessageFormat format) {
+		List<MessageAttribute> attributes = message.getAttributes();
+		int attributesCount = attributes.size();
+		int i = 0;
+		MessageAttribute attribute;
+{predictedWrites}		for (; i < attributesCount; i++) {
+			attributes.get(i).write(buffer, format);
+		}
+	}
+
+}
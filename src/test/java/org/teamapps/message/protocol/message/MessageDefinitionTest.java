@@ -40,6 +40,36 @@ public class MessageDefinitionTest {
 		assertEquals(messageModel.toString(), definition.toString());
 	}
 
+	@Test
+	public void encodingSurvivesSerialization() throws IOException {
+		MessageDefinition definition = new MessageDefinition("uuid", "arrays", true, 1);
+		definition.addIntArray("delta", 1).setEncoding(AttributeEncoding.DELTA_VARINT);
+		definition.addLongArray("frame", 2).setEncoding(AttributeEncoding.FRAME_OF_REFERENCE);
+		definition.addIntArray("plain", 3);
+		MessageDefinition copy = new MessageDefinition(definition.toBytes());
+		assertEquals(AttributeEncoding.DELTA_VARINT, copy.getAttributeDefinitionByKey(1).getEncoding());
+		assertEquals(AttributeEncoding.FRAME_OF_REFERENCE, copy.getAttributeDefinitionByKey(2).getEncoding());
+		assertEquals(AttributeEncoding.DEFAULT, copy.getAttributeDefinitionByKey(3).getEncoding());
+		assertEquals(AttributeType.INT_ARRAY, copy.getAttributeDefinitionByKey(1).getType());
+		assertEquals(AttributeType.LONG_ARRAY, copy.getAttributeDefinitionByKey(2).getType());
+	}
+
+	@Test
+	public void getAttributeDefinitionByKey() {
+		MessageDefinition definition = new MessageDefinition("uuid", "keys", true, 1);
+		definition.addString("low", 1);
+		definition.addString("high", 4_000);
+		assertEquals("low", definition.getAttributeDefinitionByKey(1).getName());
+		assertEquals("high", definition.getAttributeDefinitionByKey(4_000).getName());
+		assertEquals(MessageDefinition.META_RECORD_ID, definition.getAttributeDefinitionByKey(16_000).getName());
+		assertEquals(MessageDefinition.META_MODIFIED_BY, definition.getAttributeDefinitionByKey(16_004).getName());
+		assertNull(definition.getAttributeDefinitionByKey(2));
+		assertNull(definition.getAttributeDefinitionByKey(-1));
+		assertNull(definition.getAttributeDefinitionByKey(100_000));
+		assertThrows(RuntimeException.class, () -> definition.addString("duplicate", 4_000));
+		assertThrows(RuntimeException.class, () -> definition.addString("outOfRange", 40_000));
+	}
+
 	@Test
 	public void xmlTest() throws IOException {
 		String xml = new XmlTest().setIntVal(1).setIntVal2(2).setStringVal("abc").toXml(true, null);
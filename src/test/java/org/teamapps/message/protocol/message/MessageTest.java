@@ -20,15 +20,52 @@
 package org.teamapps.message.protocol.message;
 
 import org.junit.Test;
+import org.teamapps.message.protocol.message.AttributeEncoding;
 import org.teamapps.message.protocol.message.Message;
 import org.teamapps.message.protocol.message.MessageAttribute;
+import org.teamapps.message.protocol.builder.MessageCodecCompiler;
+import org.teamapps.message.protocol.model.AttributeDefinition;
+import org.teamapps.message.protocol.model.MessageCodec;
+import org.teamapps.message.protocol.model.MessageModel;
 import org.teamapps.protocol.test.*;
 
+import org.teamapps.message.protocol.file.FileDataType;
+import org.teamapps.message.protocol.file.GenericFileData;
+import org.teamapps.message.protocol.utils.MessageEncoder;
+import org.teamapps.message.protocol.utils.MessageFieldReader;
+import org.teamapps.message.protocol.utils.MessageReader;
+import org.teamapps.message.protocol.utils.MessageStreamWriter;
+import org.teamapps.message.protocol.utils.MessageUtils;
+import org.teamapps.message.protocol.utils.MessageVisitor;
+import org.teamapps.message.protocol.utils.MessageWalker;
+import org.teamapps.message.protocol.utils.MessageWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.time.Instant;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class MessageTest {
 
@@ -152,6 +189,1147 @@ public class MessageTest {
 		assertEquals("Smith", Employee.remap(c2.getEmbeddedMessage()).getLastName());
 	}
 
+	@Test
+	public void testNestedGenericMessages() throws Exception {
+		AllTypes message = new AllTypes().setStringValue("level 0");
+		for (int level = 1; level < 200; level++) {
+			message = new AllTypes()
+					.setStringValue("level " + level)
+					.setByteArrayValue(new byte[level])
+					.setGenericMessageValue(message);
+		}
+		for (MessageFormat format : MessageFormat.values()) {
+			int size = message.getSerializedSize(format);
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			message.write(new DataOutputStream(bos), fileData -> fileData, false, format);
+			byte[] bytes = bos.toByteArray();
+			assertEquals(size, bytes.length);
+			assertArrayEquals(bytes, message.toBytes(null, false, format));
+
+			ByteBuffer buffer = ByteBuffer.allocate(size + 100_000);
+			message.write(buffer, format);
+			assertEquals(size, buffer.position());
+			assertArrayEquals(bytes, Arrays.copyOf(buffer.array(), size));
+
+			for (AllTypes decoded : Arrays.asList(new AllTypes(bytes), new AllTypes(new DataInputStream(new ByteArrayInputStream(bytes)), null))) {
+				for (int level = 199; level > 0; level--) {
+					assertEquals("level " + level, decoded.getStringValue());
+					assertEquals(level, decoded.getByteArrayValue().length);
+					decoded = AllTypes.remap(decoded.getGenericMessageValue());
+				}
+				assertEquals("level 0", decoded.getStringValue());
+				assertNull(decoded.getGenericMessageValue());
+			}
+		}
+	}
+
+	@Test
+	public void testGenericMessageLengthMismatch() throws Exception {
+		Employee employee = new Employee().setFirstName("John").setLastName("Smith");
+		for (MessageFormat format : MessageFormat.values()) {
+			byte[] message = employee.toBytes(null, false, format);
+			ByteBuffer buffer = ByteBuffer.allocate(message.length + 10);
+			MessageUtils.writeLength(buffer, message.length + 1, format);
+			buffer.put(message).put((byte) 0).flip();
+			byte[] bytes = Arrays.copyOf(buffer.array(), buffer.limit());
+			assertThrows(RuntimeException.class, () -> MessageUtils.readGenericMessage(ByteBuffer.wrap(bytes), null, format));
+			assertThrows(RuntimeException.class, () -> MessageUtils.readGenericMessage(new DataInputStream(new ByteArrayInputStream(bytes)), null, format));
+		}
+	}
+
+	@Test
+	public void testNestedMessageChains() throws Exception {
+		AllTypes deepest = new AllTypes().setStringValue("deepest");
+		AllTypes root = deepest;
+		for (int i = 0; i < 200; i++) {
+			root = new AllTypes().setIntValue(i).setGenericMessageValue(root).setSingleReference(new Employee().setFirstName("e" + i));
+		}
+		int genericKey = root.getAttribute("genericMessageValue").getAttributeDefinition().getKey();
+		int stringKey = deepest.getAttribute("stringValue").getAttributeDefinition().getKey();
+		for (MessageFormat format : MessageFormat.values()) {
+			for (String value : List.of("first", "second value")) {
+				deepest.setStringValue(value);
+				byte[] bytes = root.toBytes(null, false, format);
+				assertEquals(bytes.length, root.getSerializedSize(format));
+				Message decoded = new AllTypes(bytes);
+				Message streamed = new Message(new DataInputStream(new ByteArrayInputStream(bytes)), null);
+				for (int i = 0; i < 200; i++) {
+					decoded = decoded.getAttributeByKey(genericKey).getGenericMessageAttribute();
+					streamed = streamed.getAttributeByKey(genericKey).getGenericMessageAttribute();
+				}
+				assertEquals(value, decoded.getAttributeByKey(stringKey).getStringAttribute());
+				assertEquals(value, streamed.getAttributeByKey(stringKey).getStringAttribute());
+			}
+		}
+	}
+
+	@Test
+	public void testCompactFormat() throws Exception {
+		AllTypes message = createAllTypesMessage();
+		byte[] fixedBytes = message.toBytes();
+		byte[] compactBytes = message.toBytes(null, false, MessageFormat.COMPACT);
+		assertTrue(compactBytes.length < fixedBytes.length);
+		assertEquals(MessageFormat.COMPACT, Message.readMessageFormat(compactBytes));
+		assertEquals(MessageFormat.FIXED_WIDTH, Message.readMessageFormat(fixedBytes));
+		assertEquals("col.allTypes", Message.readMessageUuid(compactBytes));
+
+		assertAllTypesEquals(message, new AllTypes(compactBytes));
+		assertAllTypesEquals(message, AllTypes.remap(new Message(compactBytes)));
+
+		Company company = new Company().setName("company").setType("standard").setCeo(new Employee().setLastName("Smith"));
+		company.setRecordId(-17);
+		Company fixedCompany = new Company(company.toBytes());
+		Company compactCompany = new Company(company.toBytes(null, false, MessageFormat.COMPACT));
+		assertEquals(company.toString(), fixedCompany.toString());
+		assertEquals(company.toString(), compactCompany.toString());
+		assertEquals(-17, compactCompany.getRecordId());
+	}
+
+	@Test
+	public void testCompactMessageWriter() throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		MessageWriter messageWriter = new MessageWriter(bos, null, MessageFormat.COMPACT);
+		messageWriter.writeMessage(new Person1().setName("p1").setEmail("p1@test.org"));
+		messageWriter.writeMessage(new Employee().setFirstName("John").setGender(Gender.MALE));
+		messageWriter.close();
+
+		MessageReader messageReader = new MessageReader(new ByteArrayInputStream(bos.toByteArray()), null, NewTestModel.MODEL_COLLECTION);
+		Person1 person = (Person1) messageReader.readNextMessage();
+		Employee employee = (Employee) messageReader.readNextMessage();
+		assertNull(messageReader.readNextMessage());
+		messageReader.close();
+		assertEquals("p1@test.org", person.getEmail());
+		assertEquals(Gender.MALE, employee.getGender());
+	}
+
+	@Test
+	public void testFramedFormat() throws Exception {
+		AllTypes message = createAllTypesMessage();
+		byte[] framedBytes = message.toBytes(null, false, MessageFormat.FRAMED);
+		assertEquals(MessageFormat.FRAMED, Message.readMessageFormat(framedBytes));
+		assertArrayEquals(framedBytes, message.toBytes(fileData -> fileData, false, MessageFormat.FRAMED));
+
+		assertAllTypesEquals(message, new AllTypes(framedBytes));
+		assertAllTypesEquals(message, new AllTypes(new DataInputStream(new ByteArrayInputStream(framedBytes))));
+		assertAllTypesEquals(message, AllTypes.remap(new Message(framedBytes)));
+		assertAllTypesEquals(message, AllTypes.remap(new Message(new DataInputStream(new ByteArrayInputStream(framedBytes)), null)));
+
+		ByteBuffer buffer = ByteBuffer.wrap(framedBytes);
+		MessageUtils.skipMessage(buffer);
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	public void testFramedFormatWithFileDataWriter() throws Exception {
+		MessageDefinition documentModel = new MessageDefinition("test.document", "document", true, 1);
+		documentModel.addFile("file", 1);
+		MessageDefinition folderModel = new MessageDefinition("test.folder", "folder", true, 1);
+		folderModel.addMultiReference("documents", 1, documentModel);
+		folderModel.addSingleReference("folder", 2, folderModel);
+		Message document = new Message(documentModel).setFileData("file", new GenericFileData(FileDataType.CLUSTER_STORE, "a.txt", 10, "a"));
+		Message folder = new Message(folderModel);
+		folder.addReference("documents", document);
+		folder.addReference("documents", document);
+		Message root = new Message(folderModel);
+		root.addReference("folder", folder);
+		root.addReference("documents", new Message(documentModel).setFileData("file", new GenericFileData(FileDataType.CLUSTER_STORE, "b.txt", 20, "b")));
+
+		List<String> writtenFiles = new ArrayList<>();
+		byte[] bytes = root.toBytes(fileData -> {
+			writtenFiles.add(fileData.getFileName());
+			return new GenericFileData(fileData.getType(), fileData.getFileName(), fileData.getLength(), "/cluster/store/" + fileData.getDescriptor());
+		}, false, MessageFormat.FRAMED);
+		assertEquals(List.of("a.txt", "b.txt"), writtenFiles);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		MessageUtils.skipMessage(buffer);
+		assertFalse(buffer.hasRemaining());
+
+		Message decoded = new Message(bytes, folderModel, null, null);
+		List<Message> documents = decoded.getAttribute("folder").getReferencedObject().getAttribute("documents").getReferencedObjects();
+		assertEquals(2, documents.size());
+		assertEquals("/cluster/store/a", documents.get(1).getAttribute("file").getFileData().getDescriptor());
+		assertEquals("/cluster/store/b", decoded.getAttribute("documents").getReferencedObjects().get(0).getAttribute("file").getFileData().getDescriptor());
+		assertEquals("a", document.getAttribute("file").getFileData().getDescriptor());
+	}
+
+	@Test
+	public void testProjection() throws Exception {
+		AllTypes message = createAllTypesMessage();
+		MessageModel model = NewTestModel.MODEL_COLLECTION.getModel(AllTypes.OBJECT_UUID);
+		for (MessageFormat format : MessageFormat.values()) {
+			byte[] bytes = message.toBytes(null, false, format);
+			Message projected = Message.decode(bytes, model, Projection.of("recordId", "stringValue", "multiReference.mentor.lastName", "singleReference"));
+			assertEquals(4, projected.getAttributes().size());
+			assertEquals(message.getStringValue(), projected.getStringAttribute("stringValue"));
+			assertEquals(42, projected.getRecordId());
+			assertTrue(projected.isEmpty("intValue"));
+			assertEquals("single", projected.getReferencedObject("singleReference").getStringAttribute("firstName"));
+
+			AllTypes typed = new AllTypes(ByteBuffer.wrap(bytes), null, Projection.of("multiReference.mentor.lastName").addKey(3));
+			assertEquals(message.getIntValue(), typed.getIntValue());
+			assertNull(typed.getStringValue());
+			List<Employee> employees = typed.getMultiReference();
+			assertEquals(2, employees.size());
+			assertNull(employees.get(0).getMentor());
+			assertNull(employees.get(1).getFirstName());
+			assertEquals("mentor", employees.get(1).getMentor().getLastName());
+		}
+	}
+
+	@Test
+	public void testFieldReader() throws Exception {
+		AllTypes message = createAllTypesMessage();
+		MessageModel model = NewTestModel.MODEL_COLLECTION.getModel(AllTypes.OBJECT_UUID);
+		for (MessageFormat format : MessageFormat.values()) {
+			byte[] bytes = message.toBytes(null, false, format);
+			assertEquals(42, MessageFieldReader.readInt(bytes, model, "recordId"));
+			assertEquals(message.getIntValue(), MessageFieldReader.readInt(bytes, 3));
+			assertEquals(Gender.FEMALE.getId(), MessageFieldReader.readInt(bytes, model, "enumValue"));
+			assertEquals(message.getLongValue(), MessageFieldReader.readLong(bytes, model, "longValue"));
+			assertEquals(message.getFloatValue(), MessageFieldReader.readFloat(bytes, model, "floatValue"), 0);
+			assertEquals(message.getDoubleValue(), MessageFieldReader.readDouble(bytes, model, "doubleValue"), 0);
+			assertEquals(message.getByteValue(), MessageFieldReader.readByte(bytes, model, "byteValue"));
+			assertTrue(MessageFieldReader.readBoolean(bytes, model, "booleanValue"));
+			assertEquals(message.getStringValue(), MessageFieldReader.readString(bytes, model, "stringValue"));
+			assertThrows(RuntimeException.class, () -> MessageFieldReader.readInt(bytes, model, "stringValue"));
+
+			byte[] emptyBytes = new AllTypes().setStringValue("x").toBytes(null, false, format);
+			assertFalse(MessageFieldReader.containsAttribute(emptyBytes, 3));
+			assertEquals(0, MessageFieldReader.readInt(emptyBytes, model, "intValue"));
+			assertNull(MessageFieldReader.readString(emptyBytes, 4_711));
+			assertEquals("x", MessageFieldReader.readString(emptyBytes, model, "stringValue"));
+
+			byte[] employeeBytes = new Employee().setFirstName("first").toBytes(null, false, format);
+			assertEquals("first", MessageFieldReader.readString(employeeBytes, 1));
+			assertThrows(RuntimeException.class, () -> MessageFieldReader.readString(employeeBytes, model, "stringValue"));
+			assertThrows(RuntimeException.class, () -> MessageFieldReader.readInt(employeeBytes, model, "recordId"));
+		}
+	}
+
+	@Test
+	public void testByteBufferDecoding() throws Exception {
+		AllTypes message = createAllTypesMessage();
+		byte[] compactBytes = message.toBytes(null, false, MessageFormat.COMPACT);
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(compactBytes.length);
+		direct.put(compactBytes).flip();
+		assertAllTypesEquals(message, new AllTypes(direct, null));
+		assertFalse(direct.hasRemaining());
+
+		ByteBuffer buffer = ByteBuffer.allocate(compactBytes.length * 2 + 5);
+		buffer.position(5);
+		buffer.put(compactBytes).put(compactBytes).position(5);
+		assertAllTypesEquals(message, AllTypes.getMessageDecoder().decode(buffer, null));
+		assertAllTypesEquals(message, AllTypes.remap(new Message(buffer, null)));
+		assertEquals(compactBytes.length * 2 + 5, buffer.position());
+
+		Company company = new Company().setName("company").setType("standard").setCeo(new Employee().setLastName("Smith"));
+		Company decoded = new Company(ByteBuffer.wrap(company.toBytes()), null);
+		assertEquals(company.toString(), decoded.toString());
+	}
+
+	@Test
+	public void testSerializedSize() throws Exception {
+		AllTypes message = createAllTypesMessage();
+		message.setStringValue("emoji \uD83D\uDE00, lone \uD800 surrogate, \u20AC");
+		for (MessageFormat format : MessageFormat.values()) {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DataOutputStream dos = new DataOutputStream(bos);
+			message.write(dos, null, false, format);
+			byte[] streamBytes = bos.toByteArray();
+			assertEquals(streamBytes.length, message.getSerializedSize(format));
+			assertArrayEquals(streamBytes, message.toBytes(null, false, format));
+
+			ByteBuffer buffer = ByteBuffer.allocate(streamBytes.length + 3);
+			buffer.position(3);
+			message.write(buffer, format);
+			assertFalse(buffer.hasRemaining());
+			assertArrayEquals(streamBytes, Arrays.copyOfRange(buffer.array(), 3, buffer.capacity()));
+			for (MessageAttribute attribute : message.getAttributes()) {
+				assertEquals(attribute.toBytes(null, false, format).length, attribute.getSerializedSize(format));
+			}
+		}
+	}
+
+	@Test
+	public void testBulkArrays() throws Exception {
+		AllTypes message = new AllTypes();
+		int length = 5_000;
+		int[] intArray = new int[length];
+		long[] longArray = new long[length];
+		float[] floatArray = new float[length];
+		double[] doubleArray = new double[length];
+		for (int i = 0; i < length; i++) {
+			intArray[i] = i * 31 - 77_000;
+			longArray[i] = Long.MIN_VALUE + i * 1_000_003L;
+			floatArray[i] = i / 3f;
+			doubleArray[i] = -i / 7d;
+		}
+		message.setIntArrayValue(intArray);
+		message.setLongArrayValue(longArray);
+		message.setFloatArrayValue(floatArray);
+		message.setDoubleArrayValue(doubleArray);
+		for (MessageFormat format : MessageFormat.values()) {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			message.write(new DataOutputStream(bos), null, false, format);
+			byte[] streamBytes = bos.toByteArray();
+			ByteBuffer buffer = ByteBuffer.allocate(message.getSerializedSize(format));
+			message.write(buffer, format);
+			assertArrayEquals(streamBytes, buffer.array());
+
+			AllTypes fromStream = new AllTypes(new DataInputStream(new ByteArrayInputStream(streamBytes)), null);
+			AllTypes fromBuffer = new AllTypes(ByteBuffer.wrap(streamBytes), null);
+			for (AllTypes decoded : Arrays.asList(fromStream, fromBuffer)) {
+				assertArrayEquals(intArray, decoded.getIntArrayValue());
+				assertArrayEquals(longArray, decoded.getLongArrayValue());
+				assertArrayEquals(floatArray, decoded.getFloatArrayValue(), 0);
+				assertArrayEquals(doubleArray, decoded.getDoubleArrayValue(), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testBitSetEncodings() throws Exception {
+		BitSet sparse = new BitSet();
+		sparse.set(3);
+		sparse.set(70_000);
+		sparse.set(1_000_000);
+		BitSet dense = new BitSet();
+		for (int i = 0; i < 100_000; i += 3) {
+			dense.set(i);
+		}
+		BitSet runs = new BitSet();
+		runs.set(10, 500_000);
+		runs.set(600_000, 1_000_000);
+		for (BitSet bitSet : Arrays.asList(sparse, dense, runs, new BitSet())) {
+			AllTypes message = new AllTypes().setBitSetValue(bitSet);
+			for (MessageFormat format : MessageFormat.values()) {
+				byte[] bytes = message.toBytes(null, false, format);
+				assertEquals(bytes.length, message.getSerializedSize(format));
+				BitSet expected = bitSet.isEmpty() ? null : bitSet;
+				assertEquals(expected, new AllTypes(bytes).getBitSetValue());
+				assertEquals(expected, new AllTypes(new DataInputStream(new ByteArrayInputStream(bytes)), null).getBitSetValue());
+				assertEquals(expected, new AllTypes(bytes, null, true).getBitSetValue());
+				assertFalse(MessageFieldReader.containsAttribute(bytes, 7));
+			}
+		}
+		int emptySize = new AllTypes().getSerializedSize(MessageFormat.COMPACT);
+		assertTrue(new AllTypes().setBitSetValue(dense).getSerializedSize(MessageFormat.COMPACT) - emptySize < 12_520);
+		assertTrue(new AllTypes().setBitSetValue(runs).getSerializedSize(MessageFormat.COMPACT) - emptySize < 16);
+	}
+
+	@Test
+	public void testArrayEncodingHints() throws Exception {
+		int[] sortedIds = new int[10_000];
+		long[] timestamps = new long[10_000];
+		for (int i = 0; i < sortedIds.length; i++) {
+			sortedIds[i] = 1_000_000 + i * 7 + (i % 3);
+			timestamps[i] = 1_700_000_000_000L + i * 1_000L + (i % 5);
+		}
+		List<int[]> intArrays = Arrays.asList(sortedIds, new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE, 0, -1, Integer.MAX_VALUE});
+		List<long[]> longArrays = Arrays.asList(timestamps, new long[]{Long.MAX_VALUE, Long.MIN_VALUE, 0, -1, 42}, new long[]{5, 5, 5});
+		for (int i = 0; i < intArrays.size(); i++) {
+			AllTypes message = new AllTypes()
+					.setIntArrayValue(intArrays.get(i))
+					.setLongArrayValue(longArrays.get(i))
+					.setStringValue("after arrays");
+			for (MessageFormat format : MessageFormat.values()) {
+				byte[] bytes = message.toBytes(null, false, format);
+				assertEquals(bytes.length, message.getSerializedSize(format));
+				for (AllTypes decoded : Arrays.asList(new AllTypes(bytes), new AllTypes(bytes, null, true), new AllTypes(new DataInputStream(new ByteArrayInputStream(bytes)), null))) {
+					assertArrayEquals(intArrays.get(i), decoded.getIntArrayValue());
+					assertArrayEquals(longArrays.get(i), decoded.getLongArrayValue());
+					assertEquals("after arrays", decoded.getStringValue());
+				}
+				assertEquals("after arrays", MessageFieldReader.readString(bytes, 7));
+			}
+		}
+		for (AttributeEncoding encoding : AttributeEncoding.values()) {
+			int size = MessageUtils.getLongArraySize(new long[]{5, 5, 5}, MessageFormat.COMPACT, encoding);
+			ByteBuffer buffer = ByteBuffer.allocate(size);
+			MessageUtils.writeLongArray(buffer, new long[]{5, 5, 5}, MessageFormat.COMPACT, encoding);
+			assertFalse(buffer.hasRemaining());
+			assertArrayEquals(new long[]{5, 5, 5}, MessageUtils.readLongArray(buffer.flip(), MessageFormat.COMPACT));
+		}
+		int rawSize = MessageUtils.getIntArraySize(sortedIds, MessageFormat.COMPACT);
+		assertTrue(MessageUtils.getIntArraySize(sortedIds, MessageFormat.COMPACT, AttributeEncoding.DELTA_VARINT) * 3 < rawSize);
+		assertTrue(MessageUtils.getLongArraySize(timestamps, MessageFormat.COMPACT, AttributeEncoding.FRAME_OF_REFERENCE) * 3 < MessageUtils.getLongArraySize(timestamps, MessageFormat.COMPACT));
+		assertTrue(MessageUtils.getLongArraySize(timestamps, MessageFormat.COMPACT, AttributeEncoding.DELTA_VARINT) * 3 < MessageUtils.getLongArraySize(timestamps, MessageFormat.COMPACT));
+	}
+
+	@Test
+	public void testMessageEncoder() throws Exception {
+		AllTypes message = createAllTypesMessage();
+		MessageEncoder encoder = new MessageEncoder(16);
+		for (MessageFormat format : MessageFormat.values()) {
+			byte[] expected = message.toBytes(null, false, format);
+			for (int i = 0; i < 2; i++) {
+				ByteBuffer encoded = encoder.encode(message, format);
+				assertEquals(expected.length, encoded.remaining());
+				assertArrayEquals(expected, Arrays.copyOfRange(encoded.array(), encoded.arrayOffset(), encoded.arrayOffset() + encoded.remaining()));
+				assertEquals(expected.length, encoder.encode(message, fileData -> fileData, false, format).remaining());
+			}
+			ByteBuffer frame = encoder.encodeFrame(message, null, format);
+			assertEquals(expected.length, frame.getInt());
+			assertEquals(ByteBuffer.wrap(expected), frame);
+			assertEquals(ByteBuffer.wrap(expected), encoder.encodeFrame(message, fileData -> fileData, format).position(4));
+
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			encoder.encodeTo(message, format, Channels.newChannel(bos));
+			assertArrayEquals(expected, bos.toByteArray());
+		}
+		try (MessageEncoder pooled = MessageEncoder.acquire()) {
+			assertEquals(message.getSerializedSize(), pooled.encode(message).remaining());
+		}
+	}
+
+	@Test
+	public void testUtf8Strings() throws Exception {
+		List<String> values = Arrays.asList("plain ascii", "caf\u00e9 na\u00efve", "\u65e5\u672c\u8a9e", "emoji \uD83D\uDE00!", "lone \uD800 high", "lone \uDC00 low", "end \uD83D", "x".repeat(10_000) + "\u20AC");
+		for (String value : values) {
+			byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+			assertEquals(expected.length, MessageUtils.getUtf8Length(value));
+			for (ByteBuffer buffer : Arrays.asList(ByteBuffer.allocate(expected.length + 8).position(3).slice(), ByteBuffer.allocateDirect(expected.length))) {
+				MessageUtils.writeUtf8(buffer, value);
+				assertEquals(expected.length, buffer.position());
+				assertEquals(ByteBuffer.wrap(expected), buffer.flip());
+			}
+			for (MessageFormat format : MessageFormat.values()) {
+				ByteBuffer buffer = ByteBuffer.allocate(MessageUtils.getStringSize(value, format));
+				MessageUtils.writeString(buffer, value, format);
+				assertFalse(buffer.hasRemaining());
+				assertEquals(new String(expected, StandardCharsets.UTF_8), MessageUtils.readString(buffer.flip(), format));
+			}
+		}
+	}
+
+	@Test
+	public void testStreamedMultiReference() throws Exception {
+		AllTypes parent = new AllTypes().setStringValue("report").setIntValue(7);
+		List<Employee> employees = new ArrayList<>();
+		for (int i = 0; i < 1_000; i++) {
+			employees.add(new Employee().setFirstName("first " + i).setLastName("last " + i));
+		}
+		for (MessageFormat format : Arrays.asList(MessageFormat.FIXED_WIDTH, MessageFormat.COMPACT)) {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			new MessageStreamWriter(bos, null, format).writeMessage(parent, "multiReference", employees.size(), employees.iterator());
+			AllTypes expected = new AllTypes().setStringValue("report").setIntValue(7).setMultiReference(employees);
+			assertArrayEquals(expected.toBytes(null, false, format), bos.toByteArray());
+		}
+		try {
+			new MessageStreamWriter(new ByteArrayOutputStream(), null, MessageFormat.FRAMED).writeMessage(parent, "multiReference", employees.iterator());
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+
+		File file = File.createTempFile("stream", ".msg");
+		try {
+			for (MessageFormat format : MessageFormat.values()) {
+				try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					new MessageStreamWriter(channel, null, format).writeMessage(parent, "multiReference", employees.stream());
+				}
+				AllTypes decoded = new AllTypes(Files.readAllBytes(file.toPath()));
+				assertEquals("report", decoded.getStringValue());
+				assertEquals(7, decoded.getIntValue());
+				assertEquals(1_000, decoded.getMultiReference().size());
+				assertEquals("last 999", decoded.getMultiReference().get(999).getLastName());
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testMessageVisitor() throws Exception {
+		AllTypes message = createAllTypesMessage();
+		MessageModel model = NewTestModel.MODEL_COLLECTION.getModel(AllTypes.OBJECT_UUID);
+		for (MessageFormat format : MessageFormat.values()) {
+			byte[] bytes = message.toBytes(null, false, format);
+			Map<String, Object> values = new HashMap<>();
+			List<String> events = new ArrayList<>();
+			MessageWalker.walk(bytes, model, new MessageVisitor() {
+				@Override
+				public void onMessageStart(MessageModel model) {
+					events.add("start " + model.getName());
+				}
+
+				@Override
+				public boolean onReferenceStart(AttributeDefinition definition, int count) {
+					events.add(definition.getName() + " " + count);
+					return true;
+				}
+
+				@Override
+				public void onInt(AttributeDefinition definition, int value) {
+					values.put(definition.getName(), value);
+				}
+
+				@Override
+				public void onString(AttributeDefinition definition, CharSequence value) {
+					values.put(definition.getName(), value.toString());
+				}
+
+				@Override
+				public void onLongArray(AttributeDefinition definition, long[] value) {
+					values.put(definition.getName(), value);
+				}
+
+				@Override
+				public void onByteArray(AttributeDefinition definition, ByteBuffer value) {
+					byte[] array = new byte[value.remaining()];
+					value.get(array);
+					values.put(definition.getName(), array);
+				}
+
+				@Override
+				public void onTimestamp(AttributeDefinition definition, Instant value) {
+					values.put(definition.getName(), value);
+				}
+
+				@Override
+				public void onGenericMessage(AttributeDefinition definition, ByteBuffer value) {
+					values.put(definition.getName(), value);
+				}
+			});
+			assertEquals(message.getIntValue(), values.get("intValue"));
+			assertEquals(42, values.get("recordId"));
+			assertEquals(Gender.FEMALE.getId(), values.get("enumValue"));
+			assertEquals(message.getStringValue(), values.get("stringValue"));
+			assertArrayEquals(message.getLongArrayValue(), (long[]) values.get("longArrayValue"));
+			assertArrayEquals(message.getByteArrayValue(), (byte[]) values.get("byteArrayValue"));
+			assertEquals(message.getLongTimestampValue(), values.get("longTimestampValue"));
+			assertEquals("generic", Person1.remap(new Message((ByteBuffer) values.get("genericMessageValue"), null)).getName());
+			assertEquals("multi2", values.get("firstName"));
+			assertEquals("mentor", values.get("lastName"));
+			assertEquals(List.of("start allTypes", "singleReference 1", "start employee", "multiReference 2", "start employee", "start employee", "mentor 1", "start employee"), events);
+
+			List<String> skipped = new ArrayList<>();
+			MessageWalker.walk(bytes, model, new MessageVisitor() {
+				@Override
+				public boolean onReferenceStart(AttributeDefinition definition, int count) {
+					return false;
+				}
+
+				@Override
+				public void onString(AttributeDefinition definition, CharSequence value) {
+					skipped.add(value.toString());
+				}
+			});
+			assertEquals(List.of(message.getStringValue()), skipped);
+		}
+	}
+
+	@Test
+	public void testGeneratedCodec() throws Exception {
+		AllTypes message = createAllTypesMessage();
+		for (MessageFormat format : MessageFormat.values()) {
+			byte[] bytes = message.toBytes(null, false, format);
+			AllTypes decoded = AllTypesCodec.decode(ByteBuffer.wrap(bytes), null, NewTestModel.MODEL_COLLECTION);
+			assertAllTypesEquals(message, decoded);
+			assertEquals(Employee.class, decoded.getMultiReference().get(1).getMentor().getClass());
+			assertArrayEquals(bytes, decoded.toBytes(null, false, format));
+			Message generic = new Message(ByteBuffer.wrap(bytes), AllTypes.getMessageModel(), null, null);
+			assertArrayEquals(bytes, generic.toBytes(null, false, format));
+		}
+
+		Person1 person1 = new Person1(new Person2().setName("name").setPhone("phone").toBytes(null, false, MessageFormat.COMPACT));
+		assertEquals("name", person1.getName());
+		assertEquals("phone", new Person2(person1.toBytes()).getPhone());
+	}
+
+	@Test
+	public void testGeneratedCodecAttributeOrder() throws Exception {
+		Employee mentor = new Employee().setFirstName("mentor");
+		Employee inOrder = new Employee().setFirstName("first").setLastName("last").setVegan(true).setMentor(mentor);
+		Employee reversed = new Employee().setMentor(mentor).setVegan(true).setLastName("last").setFirstName("first");
+		reversed.setRecordId(7);
+		for (MessageFormat format : MessageFormat.values()) {
+			for (Employee employee : Arrays.asList(inOrder, reversed)) {
+				byte[] bytes = employee.toBytes(null, false, format);
+				Employee decoded = EmployeeCodec.decode(ByteBuffer.wrap(bytes), null, NewTestModel.MODEL_COLLECTION);
+				assertEquals("first", decoded.getFirstName());
+				assertEquals("last", decoded.getLastName());
+				assertTrue(decoded.isVegan());
+				assertEquals("mentor", decoded.getMentor().getFirstName());
+				assertEquals(employee.getRecordId(), decoded.getRecordId());
+				assertArrayEquals(bytes, decoded.toBytes(null, false, format));
+			}
+		}
+	}
+
+	@Test
+	public void testGeneratedCodecWrites() throws Exception {
+		AllTypes message = createAllTypesMessage();
+		AllTypes reversed = new AllTypes();
+		List<MessageAttribute> attributes = new ArrayList<>(message.getAttributes());
+		Collections.reverse(attributes);
+		attributes.forEach(reversed::addDecodedAttribute);
+		for (MessageFormat format : MessageFormat.values()) {
+			for (AllTypes allTypes : Arrays.asList(message, reversed)) {
+				int size = allTypes.getSerializedSize(format);
+				ByteBuffer codecBuffer = ByteBuffer.allocate(size);
+				ByteBuffer genericBuffer = ByteBuffer.allocate(size);
+				AllTypesCodec.writeAttributes(allTypes, codecBuffer, format);
+				for (MessageAttribute attribute : allTypes.getAttributes()) {
+					attribute.write(genericBuffer, format);
+				}
+				assertEquals(genericBuffer.position(), codecBuffer.position());
+				assertArrayEquals(genericBuffer.array(), codecBuffer.array());
+			}
+		}
+	}
+
+	@Test
+	public void testPrimitiveSetterTypes() {
+		AllTypes message = new AllTypes();
+		assertThrows(ClassCastException.class, () -> message.setIntAttribute("floatValue", 5));
+		assertThrows(ClassCastException.class, () -> message.setLongAttribute("intValue", 5));
+		assertThrows(ClassCastException.class, () -> message.setDoubleAttribute("floatValue", 5));
+		assertThrows(ClassCastException.class, () -> message.setBooleanAttribute("byteValue", true));
+		assertThrows(ClassCastException.class, () -> message.setIntAttribute("stringValue", 5));
+		assertNull(message.getAttribute("floatValue"));
+
+		message.setFloatAttribute("floatValue", 5);
+		message.setIntAttribute("enumValue", Gender.FEMALE.getId());
+		assertEquals(5f, message.getFloatValue(), 0);
+		assertEquals(Gender.FEMALE, message.getEnumValue());
+	}
+
+	@Test
+	public void testTimestampPrecision() throws Exception {
+		Instant instant = Instant.ofEpochSecond(1_700_000_000, 123_456_789);
+		AllTypes message = new AllTypes().setTimestampValue(instant).setLongTimestampValue(instant);
+		assertEquals(Instant.ofEpochSecond(1_700_000_000), message.getTimestampValue());
+		assertEquals(Instant.ofEpochMilli(1_700_000_000_123L), message.getLongTimestampValue());
+		AllTypes decoded = new AllTypes(message.toBytes());
+		assertEquals(message.getTimestampValue(), decoded.getTimestampValue());
+		assertEquals(message.getLongTimestampValue(), decoded.getLongTimestampValue());
+
+		message.setTimestampValue(Instant.EPOCH).setLongTimestampValue(Instant.EPOCH);
+		assertNull(message.getTimestampValue());
+		assertNull(message.getLongTimestampValue());
+		assertNull(new AllTypes(message.toBytes()).getLongTimestampValue());
+	}
+
+	@Test
+	public void testStreamDecodedPrimitives() throws Exception {
+		AllTypes message = createAllTypesMessage();
+		for (MessageFormat format : MessageFormat.values()) {
+			byte[] bytes = message.toBytes(null, false, format);
+			AllTypes decoded = new AllTypes(new DataInputStream(new ByteArrayInputStream(bytes)));
+			assertAllTypesEquals(message, decoded);
+			assertArrayEquals(bytes, decoded.toBytes(null, false, format));
+		}
+	}
+
+	@Test
+	public void testAttributeSlots() throws Exception {
+		MessageModel model = Employee.getMessageModel();
+		AttributeDefinition lastName = model.getAttributeDefinitionByName("lastName");
+		assertSame(lastName, model.getAttributeDefinitions().get(lastName.getOrdinal()));
+
+		Employee employee = new Employee().setFirstName("first").setLastName("last").setVegan(true);
+		MessageAttribute attribute = employee.getAttributeByOrdinal(lastName.getOrdinal());
+		assertEquals("last", attribute.getStringAttribute());
+		assertSame(attribute, employee.getAttributeByKey(lastName.getKey()));
+		assertSame(attribute, employee.getAttribute(lastName));
+
+		employee.setLastName("changed");
+		assertEquals("changed", employee.getLastName());
+		assertEquals(Arrays.asList("firstName", "lastName", "vegan"), employee.getAttributes().stream().map(a -> a.getAttributeDefinition().getName()).toList());
+
+		employee.setFirstName(null);
+		assertNull(employee.getAttribute("firstName"));
+		assertTrue(employee.isVegan());
+		employee.setAttributeByKey(lastName.getKey(), "key");
+		assertEquals("key", employee.getLastName());
+		assertEquals(2, employee.getAttributes().size());
+
+		Message generic = new Message(employee.toBytes());
+		assertEquals("key", generic.getAttributeByKey(lastName.getKey()).getStringAttribute());
+		assertNull(generic.getAttributeByKey(99));
+		assertArrayEquals(employee.toBytes(), generic.toBytes());
+	}
+
+	@Test
+	public void testPrimitiveAttributes() throws Exception {
+		AllTypes message = new AllTypes()
+				.setBooleanValue(true)
+				.setByteValue((byte) -3)
+				.setIntValue(-42)
+				.setLongValue(Long.MIN_VALUE)
+				.setFloatValue(-1.5f)
+				.setDoubleValue(Double.NaN)
+				.setTimestampValue(Instant.ofEpochSecond(1_700_000_000))
+				.setEnumValue(Gender.FEMALE);
+		message.setIntValue(7).setDoubleValue(0.25);
+		assertEquals(7, message.getIntValue());
+		assertEquals(0.25, message.getDoubleValue(), 0);
+		assertThrows(RuntimeException.class, () -> message.setIntAttribute("stringValue", 1));
+
+		for (MessageFormat format : MessageFormat.values()) {
+			byte[] bytes = message.toBytes(null, false, format);
+			for (AllTypes decoded : Arrays.asList(new AllTypes(bytes), AllTypes.remap(new Message(ByteBuffer.wrap(bytes), AllTypes.getMessageModel(), null, null, true)))) {
+				assertTrue(decoded.isBooleanValue());
+				assertEquals(-3, decoded.getByteValue());
+				assertEquals(7, decoded.getIntValue());
+				assertEquals(Long.MIN_VALUE, decoded.getLongValue());
+				assertEquals(-1.5f, decoded.getFloatValue(), 0);
+				assertEquals(0.25, decoded.getDoubleValue(), 0);
+				assertEquals(Instant.ofEpochSecond(1_700_000_000), decoded.getTimestampValue());
+				assertEquals(Gender.FEMALE, decoded.getEnumValue());
+				assertArrayEquals(bytes, decoded.toBytes(null, false, format));
+			}
+		}
+		AllTypes fromXml = new AllTypes(message.toXml(), null);
+		assertEquals(-1.5f, fromXml.getFloatValue(), 0);
+		assertEquals(Instant.ofEpochSecond(1_700_000_000), fromXml.getTimestampValue());
+		assertEquals(Gender.FEMALE, fromXml.getEnumValue());
+	}
+
+	@Test
+	public void testRuntimeCodec() throws Exception {
+		MessageModelRegistry registry = new MessageModelRegistry(new MessageModelCollection(NewTestModel.MODEL_COLLECTION.toBytes()));
+		MessageModel model = registry.getLatestModel(AllTypes.OBJECT_UUID);
+		assertNull(registry.getMessageCodec(model));
+		MessageCodecCompiler.enable(registry, Runnable::run);
+		MessageCodec codec = registry.getMessageCodec(model);
+		assertNotNull(codec);
+		assertSame(codec, registry.getMessageCodec(model));
+
+		AllTypes message = createAllTypesMessage();
+		for (MessageFormat format : MessageFormat.values()) {
+			byte[] bytes = message.toBytes(null, false, format);
+			Message decoded = codec.decode(ByteBuffer.wrap(bytes), null, registry);
+			assertSame(model, decoded.getModel());
+			assertEquals("mentor", decoded.getReferencedObjects("multiReference").get(1).getReferencedObject("mentor").getStringAttribute("lastName"));
+			assertAllTypesEquals(message, AllTypes.remap(decoded));
+			byte[] genericBytes = new Message(ByteBuffer.wrap(bytes), model, null, null).toBytes(null, false, format);
+			assertArrayEquals(genericBytes, codec.toBytes(decoded, format));
+			assertArrayEquals(genericBytes, new Message(bytes, registry, null, registry).toBytes(null, false, format));
+		}
+	}
+
+	@Test
+	public void testFieldBackedRecords() throws Exception {
+		AllTypes message = createAllTypesMessage();
+		for (MessageFormat format : MessageFormat.values()) {
+			byte[] bytes = message.toBytes(null, false, format);
+			AllTypesRecord record = new AllTypesRecord(bytes);
+			assertEquals(message.getIntValue(), record.getIntValue());
+			assertEquals(message.getStringValue(), record.getStringValue());
+			assertEquals(Gender.FEMALE, record.getEnumValue());
+			assertEquals(42, record.getRecordId());
+			assertEquals("mentor", record.getMultiReference().get(1).getMentor().getLastName());
+
+			byte[] recordBytes = record.toBytes(null, false, format);
+			assertEquals(recordBytes.length, record.getSerializedSize(format));
+			assertAllTypesEquals(message, new AllTypes(recordBytes));
+			assertAllTypesEquals(message, record.toMessage());
+		}
+		AllTypesRecord remapped = AllTypesRecord.remap(message);
+		assertSame(remapped, AllTypesRecord.remap(remapped));
+		assertEquals(message.getLongValue(), remapped.getLongValue());
+
+		CompanyRecord company = new CompanyRecord().setName("company").setCeo(new EmployeeRecord().setLastName("Smith"));
+		company.addEmployee(new EmployeeRecord().setFirstName("first")).setRecordId(7);
+		assertEquals(4, company.getAttributes().size());
+		assertEquals("company", company.getAttribute("name").getStringAttribute());
+		assertEquals(7, company.getAttribute("recordId").getIntAttribute());
+		assertNull(company.getAttribute("type"));
+		assertNull(company.getAttribute("unknown"));
+		assertNull(company.getAttribute(null));
+		Company decoded = new Company(company.toBytes());
+		assertEquals("Smith", decoded.getCeo().getLastName());
+		assertEquals("first", decoded.getEmployee().get(0).getFirstName());
+		assertEquals(7, decoded.getRecordId());
+		assertNull(decoded.getType());
+		assertEquals("company", Company.remap(company).getName());
+	}
+
+	@Test
+	public void testLazyDecoding() throws Exception {
+		AllTypes message = createAllTypesMessage();
+		message.setMultiReference(new ArrayList<>(message.getMultiReference()));
+		for (MessageFormat format : MessageFormat.values()) {
+			byte[] bytes = message.toBytes(null, false, format);
+			AllTypes lazy = new AllTypes(bytes, null, true);
+			assertEquals(42, lazy.getRecordId());
+			byte[] lazyBytes = lazy.toBytes(null, false, format);
+			assertArrayEquals(bytes, lazyBytes);
+			assertNotSame(bytes, lazyBytes);
+			lazyBytes[lazyBytes.length - 1]++;
+			assertAllTypesEquals(message, lazy);
+			assertArrayEquals(bytes, lazy.toBytes(null, false, format));
+			assertEquals(bytes.length, lazy.getSerializedSize(format));
+			MessageFormat otherFormat = format.isCompact() ? MessageFormat.FIXED_WIDTH : MessageFormat.COMPACT;
+			assertAllTypesEquals(message, new AllTypes(lazy.toBytes(null, false, otherFormat)));
+
+			AllTypes parentChange = new AllTypes(bytes, null, true);
+			assertEquals("single", parentChange.getSingleReference().getFirstName());
+			parentChange.setIntValue(7);
+			AllTypes decoded = new AllTypes(parentChange.toBytes(null, false, format));
+			assertEquals(7, decoded.getIntValue());
+			assertEquals("single", decoded.getSingleReference().getFirstName());
+
+			AllTypes nestedChange = new AllTypes(bytes, null, true);
+			nestedChange.getMultiReference().get(1).getMentor().setLastName("changed");
+			decoded = new AllTypes(nestedChange.toBytes(null, false, format));
+			assertEquals("changed", decoded.getMultiReference().get(1).getMentor().getLastName());
+
+			AllTypes added = new AllTypes(bytes, null, true);
+			added.getMultiReference().add(new Employee().setFirstName("multi3"));
+			decoded = new AllTypes(added.toBytes(null, false, format));
+			assertEquals("multi3", decoded.getMultiReference().get(2).getFirstName());
+		}
+	}
+
+	@Test
+	public void testContentHash() throws Exception {
+		AllTypes message = createAllTypesMessage();
+		long hash = message.contentHash();
+		for (MessageFormat format : MessageFormat.values()) {
+			byte[] bytes = message.toBytes(null, false, format);
+			assertEquals(hash, Message.contentHash(bytes));
+			AllTypes decoded = new AllTypes(bytes);
+			assertEquals(message, decoded);
+			assertEquals(message.hashCode(), decoded.hashCode());
+			assertEquals(hash, decoded.contentHash());
+			assertEquals(hash, new AllTypes(bytes, null, true).contentHash());
+			assertEquals(hash, new Message(bytes).contentHash());
+			assertTrue(Message.contentEquals(message, new Message(bytes)));
+
+			decoded.getMultiReference().get(0).setLastName("changed");
+			assertNotEquals(message, decoded);
+			assertNotEquals(hash, decoded.contentHash());
+		}
+
+		AllTypes first = new AllTypes().setIntValue(1).setStringValue("a");
+		AllTypes second = new AllTypes().setStringValue("a").setIntValue(1);
+		assertEquals(first, second);
+		assertEquals(first.contentHash(), second.contentHash());
+		assertEquals(1, new HashSet<>(Arrays.asList(first, second)).size());
+		second.setIntValue(2);
+		assertNotEquals(first, second);
+		assertNotEquals(first.contentHash(), second.contentHash());
+	}
+
+	@Test
+	public void testEncodingCache() throws Exception {
+		for (MessageFormat format : MessageFormat.values()) {
+			AllTypes message = createAllTypesMessage();
+			byte[] bytes = message.toBytes(null, false, format);
+			assertFalse(isEncodingCached(message));
+			assertTrue(isEncodingCached(message.getSingleReference()));
+			bytes[bytes.length - 1]++;
+			assertFalse(Arrays.equals(bytes, message.toBytes(null, false, format)));
+
+			Employee mentor = new Employee().setFirstName("mentor");
+			Company company = new Company().setName("company").setCeo(new Employee().setFirstName("ceo").setMentor(mentor));
+			byte[] companyBytes = company.toBytes(null, false, format);
+			assertTrue(isEncodingCached(company));
+			assertTrue(isEncodingCached(mentor));
+			assertArrayEquals(companyBytes, company.toBytes(null, false, format));
+			mentor.setLastName("changed");
+			assertFalse(isEncodingCached(company));
+			assertEquals("changed", new Company(company.toBytes(null, false, format)).getCeo().getMentor().getLastName());
+			assertTrue(isEncodingCached(company));
+			company.addEmployee(new Employee().setFirstName("employee"));
+			assertFalse(isEncodingCached(company));
+			assertEquals(1, new Company(company.toBytes(null, false, format)).getEmployee().size());
+			company.removeField(company.getModel().getAttributeDefinitionByName("ceo"));
+			assertFalse(isEncodingCached(company));
+			assertNull(new Company(company.toBytes(null, false, format)).getCeo());
+
+			message.freeze();
+			byte[] frozenBytes = message.toBytes(null, false, format);
+			assertTrue(isEncodingCached(message));
+			assertTrue(isEncodingCached(message.getSingleReference()));
+			assertTrue(isEncodingCached(message.getMultiReference().get(1).getMentor()));
+			byte[] cachedBytes = message.toBytes(null, false, format);
+			assertNotSame(frozenBytes, cachedBytes);
+			assertArrayEquals(frozenBytes, cachedBytes);
+			frozenBytes[frozenBytes.length - 1]++;
+			assertArrayEquals(cachedBytes, message.toBytes(null, false, format));
+			assertAllTypesEquals(message, new AllTypes(cachedBytes));
+
+			AllTypes changed = (AllTypes) message.with("stringValue", "changed");
+			assertEquals("changed", new AllTypes(changed.toBytes(null, false, format)).getStringValue());
+			assertArrayEquals(cachedBytes, message.toBytes(null, false, format));
+
+			ByteBuffer buffer = ByteBuffer.allocate(message.getSerializedSize(format));
+			message.write(buffer, format);
+			assertArrayEquals(cachedBytes, buffer.array());
+
+			Employee shared = new Employee().setFirstName("shared");
+			Company first = new Company().setName("first").setCeo(shared);
+			Company second = new Company().setName("second").setCeo(shared);
+			first.toBytes(null, false, format);
+			second.toBytes(null, false, format);
+			shared.setFirstName("changed");
+			assertEquals("changed", new Company(first.toBytes(null, false, format)).getCeo().getFirstName());
+			assertEquals("changed", new Company(second.toBytes(null, false, format)).getCeo().getFirstName());
+		}
+	}
+
+	@Test
+	public void testEncodingCacheOfLazyMessages() throws Exception {
+		for (MessageFormat format : MessageFormat.values()) {
+			byte[] bytes = createAllTypesMessage().toBytes(null, false, format);
+
+			AllTypes reordered = new AllTypes(bytes, null, true);
+			List<Employee> references = reordered.getMultiReference();
+			assertTrue(isEncodingCached(reordered));
+			Collections.swap(references, 0, 1);
+			assertFalse(isEncodingCached(reordered));
+			assertEquals(Arrays.asList("multi2", "multi1"), new AllTypes(reordered.toBytes(null, false, format)).getMultiReference().stream().map(Employee::getFirstName).toList());
+
+			AllTypes nested = new AllTypes(bytes, null, true);
+			nested.getMultiReference().get(1).getMentor().setLastName("changed");
+			assertFalse(isEncodingCached(nested));
+			assertEquals("changed", new AllTypes(nested.toBytes(null, false, format)).getMultiReference().get(1).getMentor().getLastName());
+
+			AllTypes intArray = new AllTypes(bytes, null, true);
+			intArray.getIntArrayValue()[0] = 99;
+			assertFalse(isEncodingCached(intArray));
+			assertEquals(99, new AllTypes(intArray.toBytes(null, false, format)).getIntArrayValue()[0]);
+
+			AllTypes bitSet = new AllTypes(bytes, null, true);
+			bitSet.getBitSetValue().set(5);
+			assertFalse(isEncodingCached(bitSet));
+			assertTrue(new AllTypes(bitSet.toBytes(null, false, format)).getBitSetValue().get(5));
+
+			AllTypes unchanged = new AllTypes(bytes, null, true);
+			assertEquals("single", unchanged.getSingleReference().getFirstName());
+			assertTrue(isEncodingCached(unchanged));
+			assertArrayEquals(bytes, unchanged.toBytes(null, false, format));
+		}
+	}
+
+	@Test
+	public void testFrozenMessages() throws Exception {
+		AllTypes message = createAllTypesMessage();
+		byte[] bytes = message.toBytes();
+		assertSame(message, message.freeze());
+		assertTrue(message.isFrozen());
+		assertTrue(message.getMultiReference().get(1).getMentor().isFrozen());
+		assertThrows(RuntimeException.class, () -> message.setIntValue(1));
+		assertThrows(RuntimeException.class, () -> message.getSingleReference().setFirstName("changed"));
+		assertThrows(UnsupportedOperationException.class, () -> message.getMultiReference().add(new Employee()));
+		assertArrayEquals(bytes, message.toBytes());
+		assertEquals(Message.contentHash(bytes), message.contentHash());
+
+		AllTypes changed = message.withIntValue(7).withStringValue("changed");
+		assertTrue(changed.isFrozen());
+		assertEquals(7, changed.getIntValue());
+		assertEquals("changed", changed.getStringValue());
+		assertEquals(-123_456, message.getIntValue());
+		assertSame(message.getSingleReference(), changed.getSingleReference());
+		assertSame(message.getMultiReference().get(0), changed.getMultiReference().get(0));
+		AllTypes decoded = new AllTypes(changed.toBytes());
+		assertEquals(changed, decoded);
+		assertEquals(decoded.contentHash(), changed.contentHash());
+		assertNull(((AllTypes) changed.without("stringValue")).getStringValue());
+		assertEquals("changed", changed.getStringValue());
+
+		Employee mentor = new Employee().setFirstName("mentor");
+		AllTypes withReference = changed.withSingleReference(mentor);
+		assertFalse(mentor.isFrozen());
+		mentor.setFirstName("changed");
+		assertEquals("mentor", withReference.getSingleReference().getFirstName());
+		assertEquals("mentor", new AllTypes(withReference.toBytes()).getSingleReference().getFirstName());
+
+		AllTypes mutable = createAllTypesMessage();
+		AllTypes renamed = mutable.withStringValue("renamed");
+		assertFalse(mutable.isFrozen());
+		assertFalse(mutable.getSingleReference().isFrozen());
+		assertTrue(renamed.getSingleReference().isFrozen());
+		mutable.setStringValue("changed");
+		mutable.getSingleReference().setFirstName("changed");
+		mutable.getMultiReference().get(1).getMentor().setFirstName("changed");
+		mutable.getIntArrayValue()[0] = 42;
+		mutable.setMultiReference(new ArrayList<>(mutable.getMultiReference())).addMultiReference(new Employee());
+		assertEquals("renamed", renamed.getStringValue());
+		assertEquals(message.getSingleReference().getFirstName(), renamed.getSingleReference().getFirstName());
+		assertEquals(message.getMultiReference().get(1).getMentor(), renamed.getMultiReference().get(1).getMentor());
+		assertArrayEquals(message.getIntArrayValue(), renamed.getIntArrayValue());
+		assertEquals(message.getMultiReference().size(), renamed.getMultiReference().size());
+		assertSame(mutable.freeze().getSingleReference(), mutable.withStringValue("frozen").getSingleReference());
+
+		AllTypes lazy = new AllTypes(bytes, null, true).freeze();
+		assertEquals(message, lazy);
+		assertArrayEquals(bytes, lazy.toBytes());
+
+		List<byte[]> encodings = IntStream.range(0, 64).parallel()
+				.mapToObj(i -> {
+					try {
+						return changed.toBytes(null, false, MessageFormat.values()[i % MessageFormat.values().length]);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				})
+				.toList();
+		for (int i = 0; i < encodings.size(); i++) {
+			assertArrayEquals(decoded.toBytes(null, false, MessageFormat.values()[i % MessageFormat.values().length]), encodings.get(i));
+		}
+	}
+
+	@Test
+	public void testMessageDiff() throws Exception {
+		AllTypes oldMessage = createAllTypesMessage();
+		AllTypes newMessage = new AllTypes(oldMessage.toBytes());
+		newMessage.setIntValue(7).setStringValue(null);
+		newMessage.getSingleReference().setLastName("last");
+		newMessage.getMultiReference().get(1).getMentor().setFirstName("mentor");
+		newMessage.setMultiReference(List.of(newMessage.getMultiReference().get(1), new Employee().setFirstName("multi3")));
+
+		MessageDiff diff = MessageDiff.compute(oldMessage, newMessage);
+		Map<String, MessageDiff.ChangeType> changeTypes = new HashMap<>();
+		diff.getChanges().forEach(change -> changeTypes.put(change.getAttributeDefinition().getName(), change.getType()));
+		assertEquals(Map.of("intValue", MessageDiff.ChangeType.SET, "stringValue", MessageDiff.ChangeType.REMOVE,
+				"singleReference", MessageDiff.ChangeType.REFERENCE, "multiReference", MessageDiff.ChangeType.REFERENCES), changeTypes);
+		byte[] patch = diff.toBytes();
+		assertTrue(patch.length < newMessage.toBytes(null, false, MessageFormat.COMPACT).length);
+
+		AllTypes patched = (AllTypes) MessageDiff.apply(new AllTypes(oldMessage.toBytes()), patch, NewTestModel.MODEL_COLLECTION);
+		assertEquals(newMessage, patched);
+		assertEquals("multi3", patched.getMultiReference().get(1).getFirstName());
+		assertArrayEquals(newMessage.toBytes(), patched.toBytes());
+
+		AllTypes frozen = new AllTypes(oldMessage.toBytes()).freeze();
+		AllTypes patchedFrozen = (AllTypes) MessageDiff.apply(frozen, patch, NewTestModel.MODEL_COLLECTION);
+		assertTrue(patchedFrozen.isFrozen());
+		assertEquals(newMessage, patchedFrozen);
+		assertEquals(oldMessage, frozen);
+		assertSame(frozen.getAttribute("longValue"), patchedFrozen.getAttribute("longValue"));
+		assertTrue(MessageDiff.compute(oldMessage, new AllTypes(oldMessage.toBytes())).isEmpty());
+		assertEquals(1, MessageDiff.compute(frozen, frozen.withLongValue(3)).getChanges().size());
+
+		Company company = new Company().setName("company");
+		for (int i = 1; i <= 100; i++) {
+			company.addEmployee(createEmployee(i, "employee" + i));
+		}
+		company.freeze();
+		List<Employee> employees = new ArrayList<>(company.getEmployee());
+		employees.set(50, employees.get(50).withFirstName("changed"));
+		employees.add(0, employees.remove(99));
+		employees.remove(10);
+		Company changedCompany = company.withEmployee(employees);
+		MessageDiff companyDiff = MessageDiff.compute(company, changedCompany);
+		List<MessageDiff.ElementChange> elementChanges = companyDiff.getChanges().get(0).getElementChanges();
+		assertEquals(List.of(MessageDiff.ElementChangeType.KEEP, MessageDiff.ElementChangeType.KEEP, MessageDiff.ElementChangeType.KEEP,
+				MessageDiff.ElementChangeType.PATCH, MessageDiff.ElementChangeType.KEEP), elementChanges.stream().map(MessageDiff.ElementChange::getType).toList());
+		assertTrue(companyDiff.toBytes().length * 10 < changedCompany.toBytes(null, false, MessageFormat.COMPACT).length);
+		Company patchedCompany = (Company) MessageDiff.apply(company, companyDiff.toBytes(), NewTestModel.MODEL_COLLECTION);
+		assertEquals(changedCompany, patchedCompany);
+		assertSame(company.getEmployee().get(99), patchedCompany.getEmployee().get(0));
+		assertThrows(RuntimeException.class, () -> MessageDiff.apply(oldMessage, companyDiff.toBytes(), NewTestModel.MODEL_COLLECTION));
+	}
+
+	@Test
+	public void testMessageDiffOfNewerModel() throws Exception {
+		MessageDefinition oldContact = new MessageDefinition("diff.contact", "contact", true, 1);
+		oldContact.addString("name", 1);
+		MessageDefinition newContact = new MessageDefinition("diff.contact", "contact", true, 1);
+		newContact.addString("name", 1);
+		newContact.addInteger("age", 2);
+		newContact.addSingleReference("partner", 3, newContact);
+		newContact.addMultiReference("children", 4, newContact);
+
+		Message oldMessage = new Message(newContact)
+				.setStringAttribute("name", "contact")
+				.setReferencedObject("partner", new Message(newContact).setStringAttribute("name", "partner"))
+				.setReferencedObjects("children", List.of(new Message(newContact).setStringAttribute("name", "child1")));
+		Message newMessage = new Message(oldMessage.toBytes(), newContact, null, null)
+				.setStringAttribute("name", "changed")
+				.setIntAttribute("age", 40);
+		newMessage.getReferencedObject("partner").setIntAttribute("age", 41);
+		newMessage.getReferencedObjects("children").get(0).setStringAttribute("name", "changedChild");
+		newMessage.addReference("children", new Message(newContact).setStringAttribute("name", "child2"));
+		MessageDiff diff = MessageDiff.compute(oldMessage, newMessage);
+		assertEquals(4, diff.getChanges().size());
 
+		Message receiver = new Message(oldMessage.toBytes(), oldContact, null, null).freeze();
+		ByteBuffer patch = ByteBuffer.wrap(diff.toBytes());
+		Message patched = MessageDiff.apply(receiver, patch, null, null);
+		assertFalse(patch.hasRemaining());
+		assertEquals("changed", patched.getStringAttribute("name"));
+		assertNull(patched.getAttribute("age"));
+		assertEquals(receiver.getAttributes().size(), patched.getAttributes().size());
+		assertSame(receiver.getAttributes().get(1), patched.getAttributes().get(1));
+	}
+
+	private static Employee createEmployee(int recordId, String firstName) {
+		Employee employee = new Employee().setFirstName(firstName);
+		employee.setRecordId(recordId);
+		return employee;
+	}
 
+	private static boolean isEncodingCached(Message message) {
+		return message.isEncodingCached();
+	}
+
+	static AllTypes createAllTypesMessage() {
+		BitSet bitSet = new BitSet();
+		bitSet.set(3);
+		bitSet.set(70);
+		bitSet.set(1_000);
+		AllTypes message = new AllTypes()
+				.setBooleanValue(true)
+				.setByteValue((byte) -3)
+				.setIntValue(-123_456)
+				.setLongValue(Long.MAX_VALUE)
+				.setFloatValue(1.5f)
+				.setDoubleValue(-2.25)
+				.setStringValue("äöü - text")
+				.setBitSetValue(bitSet)
+				.setByteArrayValue(new byte[]{1, 2, 3})
+				.setIntArrayValue(new int[]{1, -2, Integer.MAX_VALUE})
+				.setLongArrayValue(new long[]{Long.MIN_VALUE, 0, 42})
+				.setFloatArrayValue(new float[]{0.5f, -1f})
+				.setDoubleArrayValue(new double[]{Math.PI, -Math.E})
+				.setStringArrayValue(new String[]{"a", "bc", "äöü"})
+				.setFileValue(new GenericFileData(FileDataType.CLUSTER_STORE, "file.txt", 1_234, "/store/file.txt"))
+				.setEnumValue(Gender.FEMALE)
+				.setTimestampValue(Instant.ofEpochSecond(1_700_000_000))
+				.setLongTimestampValue(Instant.ofEpochMilli(1_700_000_000_123L))
+				.setDateTimeValue(LocalDateTime.of(2024, 2, 29, 12, 30, 15))
+				.setDateValue(LocalDate.of(2024, 2, 29))
+				.setTimeValue(LocalTime.of(23, 59, 58))
+				.setGenericMessageValue(new Person1().setName("generic"))
+				.setSingleReference(new Employee().setFirstName("single").setGender(Gender.DIVERSE))
+				.setMultiReference(List.of(new Employee().setFirstName("multi1"), new Employee().setFirstName("multi2").setMentor(new Employee().setLastName("mentor"))));
+		message.setRecordId(42);
+		return message;
+	}
+
+	static void assertAllTypesEquals(AllTypes expected, AllTypes actual) {
+		assertEquals(expected.isBooleanValue(), actual.isBooleanValue());
+		assertEquals(expected.getByteValue(), actual.getByteValue());
+		assertEquals(expected.getIntValue(), actual.getIntValue());
+		assertEquals(expected.getLongValue(), actual.getLongValue());
+		assertEquals(expected.getFloatValue(), actual.getFloatValue(), 0);
+		assertEquals(expected.getDoubleValue(), actual.getDoubleValue(), 0);
+		assertEquals(expected.getStringValue(), actual.getStringValue());
+		assertEquals(expected.getBitSetValue(), actual.getBitSetValue());
+		assertArrayEquals(expected.getByteArrayValue(), actual.getByteArrayValue());
+		assertArrayEquals(expected.getIntArrayValue(), actual.getIntArrayValue());
+		assertArrayEquals(expected.getLongArrayValue(), actual.getLongArrayValue());
+		assertArrayEquals(expected.getFloatArrayValue(), actual.getFloatArrayValue(), 0);
+		assertArrayEquals(expected.getDoubleArrayValue(), actual.getDoubleArrayValue(), 0);
+		assertArrayEquals(expected.getStringArrayValue(), actual.getStringArrayValue());
+		assertEquals(expected.getFileValue().getDescriptor(), actual.getFileValue().getDescriptor());
+		assertEquals(expected.getFileValue().getLength(), actual.getFileValue().getLength());
+		assertEquals(expected.getEnumValue(), actual.getEnumValue());
+		assertEquals(expected.getTimestampValue(), actual.getTimestampValue());
+		assertEquals(expected.getLongTimestampValue(), actual.getLongTimestampValue());
+		assertEquals(expected.getDateTimeValue(), actual.getDateTimeValue());
+		assertEquals(expected.getDateValue(), actual.getDateValue());
+		assertEquals(expected.getTimeValue(), actual.getTimeValue());
+		assertEquals("generic", Person1.remap(actual.getGenericMessageValue()).getName());
+		assertEquals(expected.getSingleReference().toString(), actual.getSingleReference().toString());
+		assertEquals(expected.getMultiReference().size(), actual.getMultiReference().size());
+		assertEquals("mentor", actual.getMultiReference().get(1).getMentor().getLastName());
+		assertEquals(expected.getRecordId(), actual.getRecordId());
+	}
 }
@@ -17,6 +17,7 @@
  * limitations under the License.
  * =========================LICENSE_END==================================
  */
+import org.teamapps.message.protocol.message.AttributeEncoding;
 import org.teamapps.message.protocol.message.AttributeType;
 import org.teamapps.message.protocol.message.MessageDefinition;
 import org.teamapps.message.protocol.message.MessageModelCollection;
@@ -30,8 +31,8 @@ public class MessageProtocol implements ModelCollectionProvider {
 	public ModelCollection getModelCollection() {
 		MessageModelCollection modelCollection = new MessageModelCollection("newTestModel", "org.teamapps.protocol.test", 1);
 
-		MessageDefinition employee = modelCollection.createModel("employee", "col.employee", true);
-		MessageDefinition company = modelCollection.createModel("company", "col.company", true);
+		MessageDefinition employee = modelCollection.createModel("employee", "col.employee", true).setFieldBacked(true);
+		MessageDefinition company = modelCollection.createModel("company", "col.company", true).setFieldBacked(true);
 		MessageDefinition person1 = modelCollection.createModel("person1", "col.person", true);
 
 		EnumDefinition employeeType = modelCollection.createEnum("employeeType", "fullTime", "partTime", "seasonal", "temporary");
@@ -62,6 +63,32 @@ public class MessageProtocol implements ModelCollectionProvider {
 		person1.addString("name", 1);
 		person1.addString("email", 2);
 
+		MessageDefinition allTypes = modelCollection.createModel("allTypes", "col.allTypes", true).setFieldBacked(true);
+		allTypes.addBoolean("booleanValue", 1);
+		allTypes.addByte("byteValue", 2);
+		allTypes.addInteger("intValue", 3);
+		allTypes.addLong("longValue", 4);
+		allTypes.addFloat("floatValue", 5);
+		allTypes.addDouble("doubleValue", 6);
+		allTypes.addString("stringValue", 7);
+		allTypes.addAttribute("bitSetValue", 8, AttributeType.BITSET);
+		allTypes.addByteArray("byteArrayValue", 9);
+		allTypes.addIntArray("intArrayValue", 10).setEncoding(AttributeEncoding.DELTA_VARINT);
+		allTypes.addLongArray("longArrayValue", 11).setEncoding(AttributeEncoding.FRAME_OF_REFERENCE);
+		allTypes.addFloatArray("floatArrayValue", 12);
+		allTypes.addDoubleArray("doubleArrayValue", 13);
+		allTypes.addStringArray("stringArrayValue", 14);
+		allTypes.addFile("fileValue", 15);
+		allTypes.addEnum("enumValue", gender, 16);
+		allTypes.addTimestamp("timestampValue", 17);
+		allTypes.addLongTimestamp("longTimestampValue", 18);
+		allTypes.addDateTime("dateTimeValue", 19);
+		allTypes.addDate("dateValue", 20);
+		allTypes.addTime("timeValue", 21);
+		allTypes.addGenericMessage("genericMessageValue", 22);
+		allTypes.addSingleReference("singleReference", 23, employee);
+		allTypes.addMultiReference("multiReference", 24, employee);
+
 		ServiceProtocol testService = modelCollection.createService("testService");
 		testService.addMethod("method1", company, employee);
 		testService.addBroadcastMethod("broadcastMethod1", employee);